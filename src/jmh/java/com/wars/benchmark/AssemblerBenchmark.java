@@ -0,0 +1,63 @@
+package com.wars.benchmark;
+
+import com.wars.engine.assembler.Assembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBenchmark {
+    public static final String MIPS_PROGRAMS = "src/main/resources/mips programs/";
+
+    @Param({"KernelMips", "ROM", "condition", "copyms", "readms", "writems"})
+    public String program;
+
+    private String source;
+    private IntBuffer buffer;
+    private WritableByteChannel sink;
+
+    @Setup
+    public void setUp() throws IOException {
+        source = Files.readString(Path.of(MIPS_PROGRAMS + program));
+        buffer = IntBuffer.allocate(new Assembler(source, 0).toIntCodeArray().length);
+        sink = Channels.newChannel(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public int[] toIntCodeArray() {
+        return new Assembler(source, 0).toIntCodeArray();
+    }
+
+    @Benchmark
+    public int assembleToIntBuffer() {
+        buffer.clear();
+        return new Assembler(source, 0).assembleTo(buffer);
+    }
+
+    @Benchmark
+    public long assembleToChannel() throws IOException {
+        return new Assembler(source, 0).assembleTo(sink);
+    }
+}
@@ -0,0 +1,51 @@
+package com.wars.benchmark;
+
+import com.wars.compiler.dk.DK1;
+import com.wars.compiler.dk.GenerateAutomaton;
+import com.wars.compiler.dk.ParseTable;
+import com.wars.compiler.grammar.Grammar;
+import com.wars.engine.util.CodeTranslation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// building the automaton takes seconds, so every invocation is timed on its own
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AutomatonBenchmark {
+    @Param({"false", "true"})
+    public boolean tokenClasses;
+
+    private Grammar grammar;
+
+    @Setup
+    public void setUp() throws Exception {
+        grammar = new Grammar(CodeTranslation.grammarFilePath, CodeTranslation.terminalsFilePath, tokenClasses);
+    }
+
+    // construction alone, without the LR(1) check and the files
+    @Benchmark
+    public DK1 buildAutomaton() {
+        return new DK1(grammar);
+    }
+
+    // also runs the LR(1) check and rewrites the cached tables of the grammar
+    @Benchmark
+    public ParseTable generateForGrammar() {
+        return GenerateAutomaton.generateForGrammar(grammar);
+    }
+}
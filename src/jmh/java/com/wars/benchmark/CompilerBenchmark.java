@@ -0,0 +1,78 @@
+package com.wars.benchmark;
+
+import com.wars.compiler.codegen.CompilationCache;
+import com.wars.compiler.config.MemoryLayout;
+import com.wars.compiler.dk.ParseTable;
+import com.wars.compiler.tree.DTE;
+import com.wars.engine.c0program.C0Program;
+import com.wars.engine.util.CodeTranslation;
+import com.wars.engine.util.Initialize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+    public static final String C0_PROGRAMS = "src/main/resources/c0 programs/";
+
+    @Param({"FetchKernel.c0", "AbstractKernel.c0"})
+    public String program;
+
+    @Param({"true", "false"})
+    public boolean tokenClasses;
+
+    private ParseTable parseTable;
+    private String code;
+    private String grammarCode;
+    private MemoryLayout layout;
+    private CompilationCache cache;
+
+    @Setup
+    public void setUp() throws Exception {
+        CodeTranslation.setTokenClasses(tokenClasses);
+        parseTable = CodeTranslation.getParseTable();
+        code = Files.readString(Path.of(C0_PROGRAMS + program));
+        grammarCode = C0Program.toC0Grammar(code);
+        layout = new MemoryLayout(Initialize.SBASE, Initialize.SMAX, Initialize.HBASE, Initialize.HMAX);
+        // every function of the program is in the cache, as after an edit that only touched formatting
+        cache = new CompilationCache();
+        CodeTranslation.C0Translation(grammarCode, layout, cache);
+    }
+
+    @Benchmark
+    public DTE parseString() {
+        return parseTable.parseString(grammarCode);
+    }
+
+    @Benchmark
+    public String translateProgram() {
+        return CodeTranslation.C0Translation(grammarCode, layout);
+    }
+
+    @Benchmark
+    public String translateUnchangedProgram() {
+        return CodeTranslation.C0Translation(grammarCode, layout, cache);
+    }
+
+    @Benchmark
+    public C0Program compileProgram() {
+        return new C0Program(Initialize.SBASE, Initialize.SMAX, Initialize.HBASE, Initialize.HMAX, code);
+    }
+}
@@ -0,0 +1,121 @@
+package com.wars.benchmark;
+
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.ExecutionEngine;
+import com.wars.engine.simulator.MemoryMode;
+import com.wars.engine.simulator.SimulationOptions;
+import com.wars.engine.simulator.SimulationResult;
+import com.wars.engine.simulator.Simulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// scores are guest instructions per second
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-D" + ExecutionEngine.EXPERIMENTAL_PROPERTY + "=true")
+public class SimulatorBenchmark {
+    public static final String KERNEL_MIPS = "src/main/resources/mips programs/KernelMips";
+    private static final int LOOP_ITERATIONS = 16 << 16;
+    private static final int LOOP_STEPS = 2 + 2 * LOOP_ITERATIONS;
+    // the kernel image never halts, every run ends on the step budget
+    private static final int KERNEL_STEPS = 1 << 20;
+    // lw/sw heavy sweeps: 64 passes of Macro.zero over 4096 words, and of the copyms loop over 2048 words
+    private static final int SWEEPS = 64;
+    private static final int ZERO_STEPS = 2 + SWEEPS * (4 + 4 * 4096);
+    private static final int COPY_STEPS = 2 + SWEEPS * (5 + 6 * 2048);
+
+    @Param({"REFERENCE", "SWITCH", "TRANSLATING"})
+    public ExecutionEngine engine;
+
+    @Param({"PAGED", "FLAT"})
+    public MemoryMode memoryMode;
+
+    private int[] loop;
+    private int[] kernel;
+    private int[] zero;
+    private int[] copy;
+
+    @Setup
+    public void setUp() throws IOException {
+        loop = new Assembler(String.join("\n",
+                "lui 1 16",
+                "addi 1 1 -1",
+                "bgtz 1 -1",
+                "sysc"), 0).toIntCodeArray();
+        kernel = new Assembler(Files.readString(Path.of(KERNEL_MIPS)), 0).toIntCodeArray();
+        zero = new Assembler(String.join("\n",
+                "addi 3 0 " + SWEEPS,
+                "_sweep:",
+                "addi 1 0 16384",
+                "addi 2 0 4096",
+                "macro: zero 1 2",
+                "addi 3 3 -1",
+                "bgtz 3 _sweep",
+                "sysc"), 0).toIntCodeArray();
+        copy = new Assembler(String.join("\n",
+                "addi 3 0 " + SWEEPS,
+                "_sweep:",
+                "addi 1 0 16384",
+                "addi 2 0 24576",
+                "addi 4 0 2048",
+                "_copy:",
+                "lw 5 1 0",
+                "sw 5 2 0",
+                "addi 1 1 4",
+                "addi 2 2 4",
+                "addi 4 4 -1",
+                "bgtz 4 _copy",
+                "addi 3 3 -1",
+                "bgtz 3 _sweep",
+                "sysc"), 0).toIntCodeArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOP_STEPS)
+    public SimulationResult tightLoop() {
+        return run(loop, SimulationOptions.builder().unlimitedSteps().engine(engine).build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KERNEL_STEPS)
+    public SimulationResult kernelImage() {
+        return run(kernel, SimulationOptions.builder().maxSteps(KERNEL_STEPS).engine(engine).build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ZERO_STEPS)
+    public SimulationResult zeroSweep() {
+        return run(zero, SimulationOptions.builder().unlimitedSteps().engine(engine).build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COPY_STEPS)
+    public SimulationResult copySweep() {
+        return run(copy, SimulationOptions.builder().unlimitedSteps().engine(engine).build());
+    }
+
+    private SimulationResult run(int[] image, SimulationOptions options) {
+        Configuration c = new Configuration(memoryMode);
+        c.setWordArray(image, 0);
+        return Simulator.run(c, options);
+    }
+}
@@ -3,7 +3,6 @@ package com.wars.compiler;
 import com.wars.engine.c0program.AbstractKernel;
 import com.wars.engine.c0program.BootLoader;
 import com.wars.engine.c0program.C0Program;
-import com.wars.compiler.util.Context;
 import com.wars.engine.simulator.Configuration;
 import com.wars.engine.simulator.Simulator;
 import com.wars.engine.util.CodeTranslation;
@@ -11,8 +10,6 @@ import com.wars.engine.util.Initialize;
 
 public class Compiler {
     public static void main(String[] args) {
-        Context.DEBUG = false;
-
         BootLoader bt = BootLoader.generateBootLoader();
         AbstractKernel ab = AbstractKernel.generateAbstractKernel();
 
@@ -2,6 +2,7 @@ package com.wars.compiler.codegen;
 
 import com.wars.compiler.config.Configuration;
 import com.wars.compiler.config.FunctionCall;
+import com.wars.compiler.config.MemoryLayout;
 import com.wars.compiler.exceptions.function.FunctionException;
 import com.wars.compiler.exceptions.memory.MemoryStructException;
 import com.wars.compiler.grammar.Grammar;
@@ -29,7 +30,8 @@ import static com.wars.compiler.util.TypeUtils.checkSameTypes;
 import static com.wars.compiler.util.TypeUtils.checkTokenType;
 
 public class CodeGenerator {
-    private static CodeGenerator INSTANCE = null;
+    // one generator per compiling thread, like the tables
+    private static final ThreadLocal<CodeGenerator> INSTANCE = new ThreadLocal<>();
     private int retainedRegister = -1;
 
     private CodeGenerator() {
@@ -112,9 +114,26 @@ public class CodeGenerator {
         this.g = g;
     }
 
+    // reuses the code of unchanged functions from earlier programs, every function is generated without one
+    private CompilationCache cache;
+    // functions generated for this program, stored in the cache once the whole program was generated
+    private final Map<String, CompiledFunction> compiled = new HashMap<>();
+    // what the functions being generated read, the innermost on top
+    private final Deque<CompiledFunction.Builder> recording = new ArrayDeque<>();
+    private final Map<String, String> declarations = new HashMap<>();
+    private String globalDeclarations;
+
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
     public static CodeGenerator getInstance() {
-        if (INSTANCE == null) INSTANCE = new CodeGenerator();
-        return INSTANCE;
+        CodeGenerator instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new CodeGenerator();
+            INSTANCE.set(instance);
+        }
+        return instance;
     }
 
     public void generateCode() {
@@ -123,14 +142,149 @@ public class CodeGenerator {
         log("starting generation for `main`");
 
         try {
-            FunctionCall mainCall = Configuration.getInstance().callFunction("main");
-            functionInstructions.put("main", new LinkedList<>());
-            generateCodeForFunctionCall(mainCall);
+            generateFunction("main", false);
+            if (cache != null) {
+                cache.store(compiled.values());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // Generates a function at its first call. With a cache, the code generated for an earlier program is reused
+    // when the source of the function, the declarations it reads and the state it starts from are unchanged.
+    private void generateFunction(String functionName, boolean isVoid) throws Exception {
+        Configuration configuration = Configuration.getInstance();
+        if (cache == null) {
+            functionInstructions.put(functionName, new LinkedList<>());
+            generateFunctionCall(configuration.callFunction(functionName), isVoid);
+            return;
+        }
+
+        boolean[] entryRegisters = configuration.getOccupiedRegisters();
+        Set<String> entryGenerated = Set.copyOf(functionInstructions.keySet());
+        Fun function = FunctionTable.getInstance().getFunction(functionName);
+        String key = CompilationCache.hash(functionName, String.valueOf(isVoid), globalDeclarations(function),
+                configuration.getLayout().toString(), getDeclaration(function).getBorderWord());
+
+        CompiledFunction previous = cache.get(functionName);
+        if (previous != null && previous.matches(key, entryRegisters, entryGenerated, this::declarationHash)
+                && reuse(previous)) {
+            cache.countReused();
+        } else {
+            CompiledFunction.Builder builder = new CompiledFunction.Builder(functionName, key, entryRegisters, entryGenerated);
+            recording.push(builder);
+            try {
+                functionInstructions.put(functionName, new LinkedList<>());
+                generateFunctionCall(configuration.callFunction(functionName), isVoid);
+            } finally {
+                recording.pop();
+            }
+            compiled.put(functionName, builder.build(functionInstructions.get(functionName),
+                    instructionsRealSize.getOrDefault(functionName, 0), configuration.getOccupiedRegisters()));
+            cache.countGenerated();
+        }
+
+        if (!recording.isEmpty()) {
+            recording.peek().addNested(new CompiledFunction.NestedCall(functionName, isVoid, entryRegisters,
+                    configuration.getOccupiedRegisters(), Set.copyOf(functionInstructions.keySet())));
+        }
+    }
+
+    private void generateFunctionCall(FunctionCall call, boolean isVoid) throws Exception {
+        if (isVoid) {
+            generateCodeVoidFunctionCall(call);
+        } else {
+            generateCodeForFunctionCall(call);
+        }
+    }
+
+    // Copies the code of a function and generates the functions first called inside it again, in the state they
+    // were generated in before. They may reuse their code in turn. Returns false, leaving the functions generated
+    // as they were, as soon as one of them leaves a different state behind than when the code was generated.
+    private boolean reuse(CompiledFunction previous) throws Exception {
+        Configuration configuration = Configuration.getInstance();
+        boolean[] entryRegisters = configuration.getOccupiedRegisters();
+        Set<String> entryGenerated = Set.copyOf(functionInstructions.keySet());
+
+        functionInstructions.put(previous.name, previous.copyInstructions());
+        instructionsRealSize.put(previous.name, previous.realSize);
+        if (!previous.nested.isEmpty()) {
+            // the nested functions are read by the reused code, not by a function being generated
+            recording.push(new CompiledFunction.Builder(previous.name, previous.key, entryRegisters, entryGenerated));
+            configuration.callFunction(previous.name);
+            try {
+                for (CompiledFunction.NestedCall nested : previous.nested) {
+                    configuration.setOccupiedRegisters(nested.registersBefore());
+                    generateFunction(nested.function(), nested.isVoid());
+                    if (!Arrays.equals(configuration.getOccupiedRegisters(), nested.registersAfter())
+                            || !functionInstructions.keySet().equals(nested.generatedAfter())) {
+                        functionInstructions.keySet().retainAll(entryGenerated);
+                        instructionsRealSize.keySet().retainAll(entryGenerated);
+                        configuration.setOccupiedRegisters(entryRegisters);
+                        return false;
+                    }
+                }
+            } finally {
+                configuration.popStack();
+                recording.pop();
+            }
+        }
+        configuration.setOccupiedRegisters(previous.exitRegisters);
+        return true;
+    }
+
+    // Records that the function being generated reads the declaration of a function it calls.
+    private void readDeclaration(Fun function) {
+        if (!recording.isEmpty()) {
+            recording.peek().addCallee(function.getName(), declarationHash(function.getName()));
+        }
+    }
+
+    // Returns the hash of the declaration of a function without its body, which is all its callers read,
+    // or null if there is no such function.
+    private String declarationHash(String functionName) {
+        Fun function;
+        try {
+            function = FunctionTable.getInstance().getFunction(functionName);
+        } catch (FunctionException e) {
+            return null;
+        }
+        return declarations.computeIfAbsent(functionName, name -> {
+            List<String> parts = new LinkedList<>();
+            for (DTE son = getDeclaration(function).getFirstSon(); son != null; son = son.getBrother()) {
+                if (!son.equals(function.getBody())) {
+                    parts.add(son.getBorderWord());
+                }
+            }
+            return CompilationCache.hash(parts.toArray(String[]::new));
+        });
+    }
+
+    // Returns the hash of the type and global variable declarations of the program holding the function.
+    private String globalDeclarations(Fun function) {
+        if (globalDeclarations == null) {
+            DTE program = getDeclaration(function);
+            while (program.getFather() != null) {
+                program = program.getFather();
+            }
+            List<String> parts = new LinkedList<>();
+            for (DTE son = program.getFirstSon(); son != null; son = son.getBrother()) {
+                if (son.isType("<TyDS>") || son.isType("<VaDS>")) {
+                    parts.add(son.labelContent());
+                    parts.add(son.getBorderWord());
+                }
+            }
+            globalDeclarations = CompilationCache.hash(parts.toArray(String[]::new));
+        }
+        return globalDeclarations;
+    }
+
+    // <FuD> -> <Ty> <Na>(<PaDS>){<VaDS>;<body>} | ... , the body is a son of the declaration
+    private static DTE getDeclaration(Fun function) {
+        return function.getBody().getFather();
+    }
+
     private void generateCodeForFunctionCall(FunctionCall call) throws Exception {
         DTE body = call.getFunction().getBody();
         checkTokenType(body, "<body>");
@@ -237,6 +391,7 @@ public class CodeGenerator {
             String functionName = fun.getBorderWord();
 
             Fun function = FunctionTable.getInstance().getFunction(functionName);
+            readDeclaration(function);
             List<Integer> registers = new LinkedList<>();
 
             if (fun.getNthBrother(2).isType("<PaS>")) {
@@ -259,9 +414,7 @@ public class CodeGenerator {
             addInstruction(Instruction.jal("_" + functionName));            
 
             if (!functionInstructions.containsKey(functionName)) {
-                functionInstructions.put(functionName, new LinkedList<>());
-                FunctionCall call = Configuration.getInstance().callFunction(functionName);
-                generateCodeVoidFunctionCall(call);
+                generateFunction(functionName, true);
             }
 
         }
@@ -360,6 +513,7 @@ public class CodeGenerator {
             log("function call: " + functionName);
 
             Fun function = FunctionTable.getInstance().getFunction(functionName);
+            readDeclaration(function);
             List<Integer> registers = new LinkedList<>();
 
             if (value.getNthBrother(2).isType("<PaS>")) {
@@ -385,9 +539,7 @@ public class CodeGenerator {
             addInstruction(Instruction.jal("_" + functionName));
 
             if (!functionInstructions.containsKey(functionName)) {
-                functionInstructions.put(functionName, new LinkedList<>());
-                FunctionCall call = Configuration.getInstance().callFunction(functionName);
-                generateCodeForFunctionCall(call);
+                generateFunction(functionName, false);
             }
 
             return;
@@ -434,13 +586,14 @@ public class CodeGenerator {
         }
         
         if (program){
-            System.out.println("macro: gpr(" + HPT + ") = enc(" + HBASE + ", uint)");
-            System.out.println("macro: gpr(" + BPT + ") = enc(" + SBASE + ", uint)");
+            MemoryLayout layout = Configuration.getInstance().getLayout();
+            System.out.println("macro: gpr(" + HPT + ") = enc(" + layout.hbase() + ", uint)");
+            System.out.println("macro: gpr(" + BPT + ") = enc(" + layout.sbase() + ", uint)");
             System.out.println("addiu " + SPT + " " + BPT + " " + (function.getSize() + 8 + gmSize));
             System.out.println("subu 1 " + SPT + " " + BPT);
             System.out.println("srl 1 1 2");
             System.out.println("macro: zero(" + BPT + ", 1)");  
-            System.out.println("macro: gpr(" + BPT + ") = enc(" + SBASE + ", uint)");
+            System.out.println("macro: gpr(" + BPT + ") = enc(" + layout.sbase() + ", uint)");
             System.out.println("j _" + headFunction);
             System.out.println();
         }
@@ -476,13 +629,14 @@ public class CodeGenerator {
 
         StringBuilder res = new StringBuilder();
         if (program){
-            res.append("macro: gpr(" + HPT + ") = enc(" + HBASE + ", uint)\n");
-            res.append("macro: gpr(" + BPT + ") = enc(" + SBASE + ", uint)\n");
+            MemoryLayout layout = Configuration.getInstance().getLayout();
+            res.append("macro: gpr(" + HPT + ") = enc(" + layout.hbase() + ", uint)\n");
+            res.append("macro: gpr(" + BPT + ") = enc(" + layout.sbase() + ", uint)\n");
             res.append("addiu " + SPT + " " + BPT + " " + (function.getSize() + 8 + gmSize) + "\n");
             res.append("subu 1 " + SPT + " " + BPT + "\n");
             res.append("srl 1 1 2\n");
             res.append("macro: zero(" + BPT + ", 1)\n");
-            res.append("macro: gpr(" + BPT + ") = enc(" + SBASE + ", uint)\n");
+            res.append("macro: gpr(" + BPT + ") = enc(" + layout.sbase() + ", uint)\n");
             res.append("j _" + headFunction + "\n\n");
         }
 
@@ -793,6 +947,6 @@ public class CodeGenerator {
     }
 
     public static void reset() {
-        INSTANCE = null;
+        INSTANCE.remove();
     }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.wars.compiler.codegen;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The code generated for the functions of earlier programs, by function name.
+// A function is generated again only when its source, the type and global declarations, the declarations of the
+// functions it calls or the state it is generated from changed; otherwise its instructions are copied.
+// Only the latest version of every function is kept. Programs translated in parallel may share a cache.
+public class CompilationCache {
+    private final Map<String, CompiledFunction> functions = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger generated = new AtomicInteger();
+
+    CompiledFunction get(String function) {
+        return functions.get(function);
+    }
+
+    // Stores the functions of a program whose generation completed.
+    void store(Collection<CompiledFunction> compiled) {
+        for (CompiledFunction function : compiled) {
+            functions.put(function.name, function);
+        }
+    }
+
+    void countReused() {
+        reused.incrementAndGet();
+    }
+
+    void countGenerated() {
+        generated.incrementAndGet();
+    }
+
+    // Returns how many functions had their code copied from the cache.
+    public int getReusedCount() {
+        return reused.get();
+    }
+
+    // Returns how many functions were generated while the cache was in use.
+    public int getGeneratedCount() {
+        return generated.get();
+    }
+
+    public int size() {
+        return functions.size();
+    }
+
+    public void clear() {
+        functions.clear();
+    }
+
+    // Returns the hex SHA-256 of the parts, each prefixed by its length.
+    static String hash(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
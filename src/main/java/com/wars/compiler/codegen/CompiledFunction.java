@@ -0,0 +1,94 @@
+package com.wars.compiler.codegen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+// The code generated for one function, together with everything its generation read apart from the function itself:
+// the registers occupied when it started, the functions generated before it, the declarations of the functions it
+// calls and the state left behind by the functions first called, and so generated, inside it.
+final class CompiledFunction {
+
+    // A function first called inside this one, with the registers around its generation
+    // and the functions generated once it was done.
+    record NestedCall(String function, boolean isVoid, boolean[] registersBefore, boolean[] registersAfter,
+                      Set<String> generatedAfter) {
+    }
+
+    final String name;
+    // Hash of the source of the function, the type and global declarations and the memory layout.
+    final String key;
+    final boolean[] entryRegisters;
+    final Set<String> entryGenerated;
+    // Declaration hash of every function called, by name.
+    final Map<String, String> callees;
+    final List<NestedCall> nested;
+    final List<String> instructions;
+    final int realSize;
+    final boolean[] exitRegisters;
+
+    private CompiledFunction(Builder builder, List<String> instructions, int realSize, boolean[] exitRegisters) {
+        this.name = builder.name;
+        this.key = builder.key;
+        this.entryRegisters = builder.entryRegisters;
+        this.entryGenerated = builder.entryGenerated;
+        this.callees = Map.copyOf(builder.callees);
+        this.nested = List.copyOf(builder.nested);
+        this.instructions = List.copyOf(instructions);
+        this.realSize = realSize;
+        this.exitRegisters = exitRegisters;
+    }
+
+    // Returns true if the function generated from the given state would produce this code again,
+    // as long as the functions first called inside it leave the same state as before.
+    boolean matches(String key, boolean[] registers, Set<String> generated, Function<String, String> declarations) {
+        if (!this.key.equals(key) || !Arrays.equals(entryRegisters, registers) || !entryGenerated.equals(generated)) {
+            return false;
+        }
+        for (Map.Entry<String, String> callee : callees.entrySet()) {
+            if (!Objects.equals(callee.getValue(), declarations.apply(callee.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns a fresh copy of the instructions, which the code generator may still insert into.
+    List<String> copyInstructions() {
+        return new LinkedList<>(instructions);
+    }
+
+    // Collects what the generation of a function reads while it runs.
+    static final class Builder {
+        private final String name;
+        private final String key;
+        private final boolean[] entryRegisters;
+        private final Set<String> entryGenerated;
+        private final Map<String, String> callees = new HashMap<>();
+        private final List<NestedCall> nested = new LinkedList<>();
+
+        Builder(String name, String key, boolean[] entryRegisters, Set<String> entryGenerated) {
+            this.name = name;
+            this.key = key;
+            this.entryRegisters = entryRegisters;
+            this.entryGenerated = entryGenerated;
+        }
+
+        void addCallee(String function, String declaration) {
+            callees.put(function, declaration);
+        }
+
+        void addNested(NestedCall call) {
+            nested.add(call);
+        }
+
+        CompiledFunction build(List<String> instructions, int realSize, boolean[] exitRegisters) {
+            return new CompiledFunction(this, instructions, realSize, exitRegisters);
+        }
+    }
+}
@@ -10,7 +10,7 @@ public class MemoryHelper {
     public static void increaseHeapPointer(int size) {
         List.of(
                 Instruction.addi(HPT, HPT, size),
-                Instruction.subi(1, HPT, HMAX),
+                Instruction.subi(1, HPT, Configuration.getInstance().getLayout().hmax()),
                 Instruction.bltz(1, 4),
                 "macro: gpr(1) = enc(42, int)",
                 Instruction.sysc(),
@@ -24,7 +24,7 @@ public class MemoryHelper {
         int reg = Configuration.getInstance().getFirstFreeRegister();
         List.of(
                 Instruction.addi(reg, SPT, size),
-                Instruction.subi(reg, reg, SMAX),
+                Instruction.subi(reg, reg, Configuration.getInstance().getLayout().smax()),
                 Instruction.blez(reg, 4),
                 "macro: gpr(1) = enc(41, int)",
                 Instruction.sysc(),
@@ -37,7 +37,7 @@ public class MemoryHelper {
         int reg = Configuration.getInstance().getFirstFreeRegister();
         List.of(
                 Instruction.addi(reg, SPT, size),
-                Instruction.subi(reg, reg, SMAX),
+                Instruction.subi(reg, reg, Configuration.getInstance().getLayout().smax()),
                 Instruction.blez(reg, 4),
                 "macro: gpr(1) = enc(41, uint)",
                 Instruction.sysc(),
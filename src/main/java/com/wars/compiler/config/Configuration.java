@@ -11,18 +11,46 @@ public class Configuration {
     private int recursionDepth;
     private final Stack<FunctionCall> stack;
     private boolean[] occupiedRegisters = new boolean[32];
+    private MemoryLayout layout = MemoryLayout.DEFAULT;
+    // prints the tables and every reduction of the compilation
+    private boolean debug;
 
     private Configuration() {
         this.stack = new Stack<>();
     }
 
-    private static Configuration INSTANCE = null;
+    // one configuration per compiling thread, like the tables
+    private static final ThreadLocal<Configuration> INSTANCE = new ThreadLocal<>();
 
     public static Configuration getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new Configuration();
+        Configuration instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new Configuration();
+            INSTANCE.set(instance);
         }
-        return INSTANCE;
+        return instance;
+    }
+
+    public MemoryLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(MemoryLayout layout) {
+        this.layout = layout;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    // whether the calling thread compiles with debugging on, without creating its configuration
+    public static boolean isDebugging() {
+        Configuration instance = INSTANCE.get();
+        return instance != null && instance.debug;
     }
 
     public FunctionCall top() {
@@ -65,6 +93,15 @@ public class Configuration {
         return -1;
     }
 
+    // copies of the occupied registers, compared and restored when the code of a function is reused
+    public boolean[] getOccupiedRegisters() {
+        return occupiedRegisters.clone();
+    }
+
+    public void setOccupiedRegisters(boolean[] registers) {
+        occupiedRegisters = registers.clone();
+    }
+
     public void occupyRegister(int index) {
         index --; 
         if (index >= 0 && index <= occupiedRegisters.length){
@@ -99,6 +136,6 @@ public class Configuration {
     }
 
     public static void reset() {
-        INSTANCE = null;
+        INSTANCE.remove();
     }
 }
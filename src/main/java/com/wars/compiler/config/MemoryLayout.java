@@ -0,0 +1,6 @@
+package com.wars.compiler.config;
+
+// where the stack and the heap of a compiled program start and end
+public record MemoryLayout(int sbase, int smax, int hbase, int hmax) {
+    public static final MemoryLayout DEFAULT = new MemoryLayout(0, 4 * (1 << 10), 8 * (1 << 10), 12 * (1 << 10));
+}
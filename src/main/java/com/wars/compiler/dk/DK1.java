@@ -9,9 +9,7 @@ import java.util.*;
 
 import static com.wars.compiler.util.Logger.log;
 
-import java.io.Serializable;
-
-public class DK1 implements Serializable {
+public class DK1 {
 
     // A ‘State’ object representing the start state of the automaton.
     private final State start;
@@ -22,38 +20,41 @@ public class DK1 implements Serializable {
     // A ‘Grammar’ object representing the input CFG.
     private final Grammar g;
 
+    // The ACTION/GOTO tables derived from the states.
+    private ParseTable table;
+
     // Creates the DK_1 automaton for the given CFG, grammar.
     public DK1(Grammar grammar) {
         // Initialize the Grammar
         this.g = grammar;
+        GrammarIndex index = new GrammarIndex(grammar);
 
         // Initialize the Start State
-        start = new State();
-        for (Production production : grammar.getProductions()) {
-            if (production.getLeft().equals(grammar.getStart())) {
-                start.addItem(new Item(production, 0, grammar.getTerminals()));
-            }
+        start = new State(index);
+        for (Production production : index.productionsFor(grammar.getStart())) {
+            start.addItem(new Item(production, 0, grammar.getTerminals()));
         }
 
         // Make Epsilon Moves from the Start State
-        start.makeEpsilonMoves(grammar);
+        start.makeEpsilonMoves();
 
-        // Put the start state in the states
+        // Put the start state in the states, every other state is also registered under its kernel
         states = new HashSet<>();
         states.add(start);
+        Map<GrammarIndex.KernelKey, State> statesByKernel = new HashMap<>();
 
         // Make Transitions and Find all States
         Queue<State> queue = new LinkedList<>();
-        Queue<State> queueCheck = new LinkedList<>();
+        Set<State> queued = Collections.newSetFromMap(new IdentityHashMap<>());
         queue.add(start);
-        queueCheck.add(start);
+        queued.add(start);
 
         // Variable completionPercentage to display the progress of the automaton creation
         int completionPercentage = 0;
 
         while (!queue.isEmpty()) {
             State currentState = queue.remove();
-            currentState.makeShiftMoves(states, grammar);
+            currentState.makeShiftMoves(states, statesByKernel);
 
             if ((int) (states.size() / 31.97) > completionPercentage) {
                 completionPercentage = (int) (states.size() / 31.97);
@@ -62,18 +63,9 @@ public class DK1 implements Serializable {
 
             for (Map.Entry<Symbol, State> entry : currentState.getTransitionFunction().entrySet()) {
                 State newState = entry.getValue();
-
-                boolean flag = false;
-                for (State state : queueCheck) {
-                    if (state.getItems().size() == newState.getItems().size() && state.sameItems(newState)) {
-                        flag = true;
-                        break;
-                    }
+                if (queued.add(newState)) {
+                    queue.add(newState);
                 }
-                if (flag) continue;
-
-                queue.add(newState);
-                queueCheck.add(newState);
             }
         }
     }
@@ -114,105 +106,16 @@ public class DK1 implements Serializable {
     }
 
     // Returns a derivation tree for the given valid string.
-    public DTE parseString(String validString) {
-
-        ArrayList<Symbol> validStringArray = Grammar.stringIntoSymbols(validString, g.getTerminals(), g.getNonterminals());
-        validStringArray = Grammar.eliminateExtraWhitespace(validStringArray);
-
-        // Initialize The parse tree with the validStringArray and after the parsing only the root will be in the array
-        ArrayList<DTE> parseTree = new ArrayList<>();
-
-        for (Symbol symbol : validStringArray) {
-            parseTree.add(new DTE(symbol));
-        }
-
-        // Parsing Process
-        Item handle;
-
-        while (!validStringArray.get(0).equals(g.getStart())) {
-            handle = findHandle(validStringArray);
-
-            log(validStringArray + "     [handle: " + handle.getProduction() +"]");
-
-            validStringArray = makeReduction(validStringArray, handle.getProduction(), handle.getDotIndex());
-
-            // Update the parse Tree
-            parseTree = DTE.updateTheParseTree(parseTree, handle);
-        }
-
-        log(validStringArray);
-
-        return parseTree.get(0);
-
+    public DTE parseString(CharSequence validString) {
+        return getParseTable().parseString(validString);
     }
 
-    // Returns the handle for the given valid string.
-    public Item findHandle(ArrayList<Symbol> validStringArray) {
-
-        State currentState = start;
-        int dotIndex = 0;
-        Symbol currentSymbol = validStringArray.get(dotIndex);
-
-        while (currentState != null) {
-
-            //Remove
-            //log(currentState);
-            //log("\n");
-
-            // If complete Item Check if it is the handle
-            if (!currentState.getCompleteItems().isEmpty()) {
-                Symbol lookahead = validStringArray.size() > dotIndex ? validStringArray.get(dotIndex) : null;
-
-                for (Item item : currentState.getCompleteItems()) {
-                    if (lookahead != null && !item.getLookaheads().contains(lookahead)) continue;
-                    return new Item(item.getProduction(), dotIndex, new HashSet<>());
-                }
-            }
-
-            // Make transition
-            boolean madeTransition = false;
-            for (Map.Entry<Symbol, State> entry : currentState.getTransitionFunction().entrySet()) {
-                Symbol transitionSymbol = entry.getKey();
-                State transitionState = entry.getValue();
-
-                if (transitionSymbol.equals(currentSymbol)) {
-                    dotIndex++;
-                    currentState = transitionState;
-                    currentSymbol = validStringArray.size() > dotIndex ? validStringArray.get(dotIndex) : null;
-                    madeTransition = true;
-                    break;
-                }
-            }
-
-            if (!madeTransition) {
-                return null;
-            }
+    // Returns the ACTION/GOTO tables of this automaton, building them on first use.
+    public ParseTable getParseTable() {
+        if (table == null) {
+            table = new ParseTable(this);
         }
-
-        return null;
-    }
-
-    // Makes a reduction of the valid string based on the provided handle.
-    public ArrayList<Symbol> makeReduction(ArrayList<Symbol> validStringArray, Production handle, int dotIndex) {
-
-        int handleIndex = dotIndex - handle.getRight().size();
-
-        // If the find Handle, make a reduction
-        if (handleIndex != -1) {
-            ArrayList<Symbol> newValidStringArray = new ArrayList<>();
-
-            for (int i = 0; i < handleIndex; i++) {
-                newValidStringArray.add(validStringArray.get(i));
-            }
-            newValidStringArray.add(handle.getLeft());
-            for (int i = handleIndex + handle.getRight().size(); i < validStringArray.size(); i++) {
-                newValidStringArray.add(validStringArray.get(i));
-            }
-
-            return newValidStringArray;
-        }
-
-        return null;
+        return table;
     }
 
     @Override
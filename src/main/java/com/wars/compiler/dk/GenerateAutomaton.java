@@ -1,124 +1,178 @@
 package com.wars.compiler.dk;
 
 import com.wars.compiler.grammar.Grammar;
+import com.wars.compiler.grammar.Production;
+import com.wars.compiler.grammar.Symbol;
 import com.wars.engine.util.Log;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 import static com.wars.compiler.util.Logger.log;
 
+// Builds the DK1 automaton of a grammar and caches its parse tables.
+// Tables are stored under the SHA-256 of the terminals, the productions and the generator version, so a table is
+// only ever used for the grammar it was built from. They are looked up on the classpath first, where the build
+// bundles the tables of 'Grammar.txt', then in the cache directory, and only then is the automaton built.
 public class GenerateAutomaton {
-    private static final String BINARYFILE = "src/main/java/com/wars/compiler/dk/DK1.bin";
-    private static final String TerminalsFile = "src/main/java/com/wars/compiler/dk/DoNotTouchGrammar.txt";
-    private static final String GrammarFile = "src/main/java/com/wars/compiler/dk/DoNotTouchTerminals.txt";
-    private static DK1 AUTOMATON;
+    // Bumped whenever DK1 or ParseTable build different tables for the same grammar.
+    public static final int GENERATOR_VERSION = 2;
 
-    public static DK1 generateAutomaton(String grammarFilePath, String terminalFilePath, Grammar g) {
+    // System property overriding the cache directory.
+    public static final String CACHE_PROPERTY = "wars.dk1.cache";
+    private static final String DEFAULT_CACHE = "target/dk1-cache";
+    private static final String RESOURCE_DIRECTORY = "/com/wars/compiler/dk/tables/";
+    private static final String TABLE_SUFFIX = ".table";
 
-        String modifiedGrammar = readFromFile(grammarFilePath);
-        String modifiedTerminals = readFromFile(terminalFilePath);
-
-        String oldGrammar = readFromFile(GrammarFile);
-        String oldTerminals = readFromFile(TerminalsFile);
-
-        boolean modified = false;
+    // Builds the DK1 automaton for the grammar.
+    public static DK1 generateAutomaton(Grammar g) {
+        long startTime = System.currentTimeMillis();
+        DK1 automaton = new DK1(g);
+        long endTime = System.currentTimeMillis();
 
-        if (!modifiedGrammar.equals(oldGrammar)) {
-            modified = true;
-            writeToFile(modifiedGrammar, GrammarFile);
-        }
+        log("Generation completed in " + (endTime - startTime) + "ms");
+        log("number of states: " + automaton.getStates().size());
+        log("-----------------------");
+        log("DK1 test passed = " + automaton.dk1Test());
+        log("-----------------------");
+        log("\n");
+        return automaton;
+    }
 
-        if (modifiedTerminals.equals(oldTerminals)) {
-            modified = true;
-            writeToFile(modifiedTerminals, TerminalsFile);
-        }
+    // Returns the parse tables for the grammar, from the classpath or the cache directory if they were built before.
+    // Otherwise the automaton is built and its tables are stored in the cache directory for the next start.
+    public static ParseTable generateParseTable(Grammar g) {
+        String key = cacheKey(g);
+        long fingerprint = fingerprint(key);
 
-        if (modified) {
-            generateForGrammar(g);
-        } else {
-            loadFromBinary();
+        long startTime = System.currentTimeMillis();
+        try {
+            ParseTable table = loadResource(key, fingerprint);
+            if (table == null && Files.exists(cacheFile(key))) {
+                table = ParseTable.load(cacheFile(key), fingerprint);
+            }
+            if (table != null) {
+                long endTime = System.currentTimeMillis();
+                log("Parse tables loaded in " + (endTime - startTime) + "ms");
+                return table;
+            }
+        } catch (IOException e) {
+            Log.error("Error loading parse tables: " + e.getMessage());
         }
 
-        return AUTOMATON;
+        return generateForGrammar(g);
     }
 
-    public static String readFromFile(String fileName) {
+    // Builds the automaton and stores its tables in the cache directory, replacing any tables stored before.
+    public static ParseTable generateForGrammar(Grammar g) {
+        ParseTable table = generateAutomaton(g).getParseTable();
+        String key = cacheKey(g);
         try {
-            return Files.readString(Paths.get(fileName));
+            store(table, cacheFile(key), fingerprint(key));
         } catch (IOException e) {
-            Log.error("Error reading file: " + e.getMessage());
+            Log.error("Error saving parse tables: " + e.getMessage());
         }
-        return "";
+        return table;
     }
 
-    public static void writeToFile(String content, String fileName) {
+    // Returns the hex SHA-256 of the generator version, the sorted terminals and the productions in order.
+    public static String cacheKey(Grammar g) {
+        MessageDigest digest;
         try {
-            Files.writeString(Paths.get(fileName), content);
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            out.writeInt(GENERATOR_VERSION);
+            out.writeInt(ParseTable.VERSION);
+            String[] terminals = g.getTerminals().stream().map(Symbol::getContent).sorted().toArray(String[]::new);
+            out.writeInt(terminals.length);
+            for (String terminal : terminals) {
+                out.writeUTF(terminal);
+            }
+            out.writeInt(g.getProductions().size());
+            for (Production production : g.getProductions()) {
+                out.writeUTF(production.getLeft().getContent());
+                out.writeInt(production.getRight().size());
+                for (Symbol symbol : production.getRight()) {
+                    out.writeBoolean(symbol.isTerminal());
+                    out.writeUTF(symbol.getContent());
+                }
+            }
         } catch (IOException e) {
-            Log.error("Error writing file: " + e.getMessage());
+            throw new IllegalStateException(e);
         }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
-    public static void generateForGrammar(Grammar g) {
-
-        long startTime = System.currentTimeMillis();
-        AUTOMATON = new DK1(g);
-        long endTime = System.currentTimeMillis();
-
-        log("Generation completed in " + (endTime - startTime) + "ms");
-        log("number of states: " + AUTOMATON.getStates().size());
-        log("-----------------------");
-        log("DK1 test passed = " + AUTOMATON.dk1Test());
-        log("-----------------------");
-        log("\n");
-
-        saveToBinaryFile();
+    // The first 8 bytes of the key, written into the table file and checked when it is read.
+    static long fingerprint(String key) {
+        return Long.parseUnsignedLong(key.substring(0, 16), 16);
     }
 
+    public static Path cacheDirectory() {
+        return Paths.get(System.getProperty(CACHE_PROPERTY, DEFAULT_CACHE));
+    }
 
-    public static void loadFromBinary() {
+    private static Path cacheFile(String key) {
+        return cacheDirectory().resolve(key + TABLE_SUFFIX);
+    }
 
-        long startTime = System.currentTimeMillis();
+    private static ParseTable loadResource(String key, long fingerprint) throws IOException {
+        try (InputStream in = GenerateAutomaton.class.getResourceAsStream(RESOURCE_DIRECTORY + key + TABLE_SUFFIX)) {
+            return in == null ? null : ParseTable.read(ByteBuffer.wrap(in.readAllBytes()), fingerprint);
+        }
+    }
 
+    // Writes the table next to its destination and moves it into place, so concurrent readers never map a partial file.
+    private static void store(ParseTable table, Path path, long fingerprint) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
         try {
-            FileInputStream fis = new FileInputStream(BINARYFILE);
-            ObjectInputStream ois = new ObjectInputStream(fis);
-
-            Object obj = ois.readObject();
-            if (obj instanceof DK1) {
-                AUTOMATON = (DK1) obj;
+            table.writeTo(temporary, fingerprint);
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
             }
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading from binary: " + e.getMessage());
-            e.printStackTrace();
-
+        } finally {
+            Files.deleteIfExists(temporary);
         }
-
-        long endTime = System.currentTimeMillis();
-
-        log("Loading completed in " + (endTime - startTime) + "ms");
-        log("number of states: " + AUTOMATON.getStates().size());
-        log("-----------------------");
-        log("\n");
     }
 
-    private static void saveToBinaryFile() {
-        try (FileOutputStream fos = new FileOutputStream(BINARYFILE);
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(AUTOMATON);
-            oos.flush();
-        } catch (IOException e) {
-            System.err.println("Error saving to binary: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save automaton to binary", e);
+    // Writes the tables of the grammar, character by character and reduced to token classes, into the given
+    // directory under their cache keys. Run by the build to bundle them as classpath resources.
+    // Arguments: <grammar file> <terminals file> <output directory>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: GenerateAutomaton <grammar file> <terminals file> <output directory>");
         }
-    }
+        Path directory = Paths.get(args[2]);
+        for (boolean tokenClasses : new boolean[]{false, true}) {
+            Grammar g = new Grammar(args[0], args[1], tokenClasses);
+            String key = cacheKey(g);
+            Path path = directory.resolve(key + TABLE_SUFFIX);
+            if (Files.exists(path) && ParseTable.load(path, fingerprint(key)) != null) {
+                continue;
+            }
 
+            ParseTable table = generateParseTable(g);
+            store(table, path, fingerprint(key));
+            Log.info("Bundled parse tables " + path);
+        }
+    }
 }
-
@@ -0,0 +1,128 @@
+package com.wars.compiler.dk;
+
+import com.wars.compiler.grammar.Grammar;
+import com.wars.compiler.grammar.Production;
+import com.wars.compiler.grammar.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-grammar lookup structures used while the 'DK1' automaton is built:
+// dense ids for productions and symbols, the productions of every nonterminal and the FIRST set of every symbol.
+class GrammarIndex {
+
+    private final Map<Production, Integer> productionIds = new IdentityHashMap<>();
+    private final Map<Symbol, Integer> symbolIds = new HashMap<>();
+    private final Map<Symbol, List<Production>> productionsByLeft = new HashMap<>();
+    private final Map<Symbol, HashSet<Symbol>> firstSets = new HashMap<>();
+
+    // Numbers the productions (equal productions share an id) and symbols, and computes the FIRST sets once.
+    GrammarIndex(Grammar g) {
+        Map<Production, Integer> equalProductions = new HashMap<>();
+        for (Production production : g.getProductions()) {
+            Integer id = equalProductions.putIfAbsent(production, equalProductions.size());
+            productionIds.put(production, id == null ? equalProductions.size() - 1 : id);
+            productionsByLeft.computeIfAbsent(production.getLeft(), k -> new ArrayList<>()).add(production);
+        }
+
+        for (Symbol terminal : g.getTerminals()) {
+            symbolIds.put(terminal, symbolIds.size());
+            firstSets.put(terminal, new HashSet<>(List.of(terminal)));
+        }
+        for (Symbol nonterminal : g.getNonterminals()) {
+            symbolIds.put(nonterminal, symbolIds.size());
+            firstSets.put(nonterminal, new HashSet<>());
+        }
+
+        // FIRST(A) is the union of FIRST of the leading symbol of every production of A, iterated to a fixed point
+        boolean changed;
+        do {
+            changed = false;
+            for (Production production : g.getProductions()) {
+                HashSet<Symbol> first = firstSets.get(production.getLeft());
+                HashSet<Symbol> leading = firstSets.get(production.getRight().get(0));
+                if (leading != null && first.addAll(leading)) {
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    // Returns the id of a production of the grammar.
+    int productionId(Production production) {
+        return productionIds.get(production);
+    }
+
+    // Returns the id of a symbol of the grammar.
+    int symbolId(Symbol symbol) {
+        return symbolIds.get(symbol);
+    }
+
+    // Returns the productions with the given left-hand side, in grammar order.
+    List<Production> productionsFor(Symbol left) {
+        return productionsByLeft.getOrDefault(left, Collections.emptyList());
+    }
+
+    // Returns the terminals that can begin a string derived from the given symbol. The set must not be modified.
+    HashSet<Symbol> first(Symbol symbol) {
+        return firstSets.get(symbol);
+    }
+
+    // Returns a canonical key for a set of items: items sorted by (production, dot), each followed by its sorted lookaheads.
+    KernelKey kernelKey(Iterable<Item> items) {
+        List<int[]> encoded = new ArrayList<>();
+        int size = 0;
+        for (Item item : items) {
+            int[] lookaheads = new int[item.getLookaheads().size()];
+            int i = 0;
+            for (Symbol lookahead : item.getLookaheads()) {
+                lookaheads[i++] = symbolId(lookahead);
+            }
+            Arrays.sort(lookaheads);
+
+            int[] entry = new int[3 + lookaheads.length];
+            entry[0] = productionId(item.getProduction());
+            entry[1] = item.getDotIndex();
+            entry[2] = lookaheads.length;
+            System.arraycopy(lookaheads, 0, entry, 3, lookaheads.length);
+            encoded.add(entry);
+            size += entry.length;
+        }
+        encoded.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+
+        int[] key = new int[size];
+        int position = 0;
+        for (int[] entry : encoded) {
+            System.arraycopy(entry, 0, key, position, entry.length);
+            position += entry.length;
+        }
+        return new KernelKey(key);
+    }
+
+    // An immutable int array with its hash computed once.
+    static final class KernelKey {
+        private final int[] items;
+        private final int hash;
+
+        KernelKey(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof KernelKey key && hash == key.hash && Arrays.equals(items, key.items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
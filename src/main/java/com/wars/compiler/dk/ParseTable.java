@@ -0,0 +1,458 @@
+package com.wars.compiler.dk;
+
+import com.wars.compiler.config.Configuration;
+import com.wars.compiler.grammar.Grammar;
+import com.wars.compiler.grammar.Lexer;
+import com.wars.compiler.grammar.Production;
+import com.wars.compiler.grammar.Symbol;
+import com.wars.compiler.tree.DTE;
+import com.wars.compiler.tree.ParseTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static com.wars.compiler.util.Logger.log;
+
+// The ACTION/GOTO tables of a 'DK1' automaton with states, symbols and productions numbered densely.
+// A table entry is 0 for an error, s + 1 to shift (or go) to state s and -(p + 1) to reduce by production p.
+// The state x symbol table is stored comb-vector compressed: the entries of state s live at base[s] + symbol
+// in one shared vector, and check records which state owns each slot.
+public class ParseTable {
+
+    public static final int ERROR = 0;
+
+    private static final int MAGIC = 0x444B3154; // "DK1T"
+    static final int VERSION = 1;
+
+    // Symbols in id order, followed by the id of every symbol.
+    private final List<Symbol> symbols;
+    private final Map<Symbol, Integer> symbolIds;
+    // Splits input strings into symbol ids of this table.
+    private final Lexer lexer;
+    // Productions in id order.
+    private final List<Production> productions;
+    // Left-hand side symbol id and right-hand side length of every production.
+    private final int[] productionLeft;
+    private final int[] productionLength;
+    // Comb-vector compressed table, either on the heap or a view of a mapped file.
+    private final IntBuffer base;
+    private final IntBuffer entries;
+    private final IntBuffer check;
+    // Action of every state once the input is exhausted.
+    private final IntBuffer endActions;
+    private final int startState;
+    private final int startSymbol;
+
+    // Numbers the states of the automaton and fills the ACTION/GOTO tables from their items and transitions.
+    // Reductions take precedence over shifts on the same lookahead, as in the original handle search.
+    public ParseTable(DK1 automaton) {
+        Grammar g = automaton.getGrammar();
+
+        List<Symbol> symbolList = new ArrayList<>(g.getTerminals());
+        symbolList.addAll(g.getNonterminals());
+        Map<Symbol, Integer> ids = new HashMap<>();
+        for (int i = 0; i < symbolList.size(); i++) {
+            ids.put(symbolList.get(i), i);
+        }
+
+        List<Production> productionList = new ArrayList<>(g.getProductions());
+        Map<Production, Integer> productionIds = new HashMap<>();
+        for (int i = 0; i < productionList.size(); i++) {
+            productionIds.putIfAbsent(productionList.get(i), i);
+        }
+
+        // States are numbered breadth-first from the start state, following transitions in symbol id order,
+        // so the numbering does not depend on the hash order of the automaton's sets.
+        List<State> states = new ArrayList<>();
+        Map<State, Integer> stateIds = new HashMap<>();
+        states.add(automaton.getStart());
+        stateIds.put(automaton.getStart(), 0);
+        for (int s = 0; s < states.size(); s++) {
+            for (Map.Entry<Symbol, State> entry : transitions(states.get(s), ids)) {
+                if (stateIds.putIfAbsent(entry.getValue(), states.size()) == null) {
+                    states.add(entry.getValue());
+                }
+            }
+        }
+
+        int width = symbolList.size();
+        int[][] rows = new int[states.size()][width];
+        int[] ends = new int[states.size()];
+
+        for (int s = 0; s < states.size(); s++) {
+            State state = states.get(s);
+            int[] row = rows[s];
+
+            // Of two complete items on the same lookahead, the one with the lower production id is reduced.
+            List<Item> completeItems = new ArrayList<>(state.getCompleteItems());
+            completeItems.sort(Comparator.comparingInt(item -> productionIds.get(item.getProduction())));
+            for (Item item : completeItems) {
+                int reduce = -(productionIds.get(item.getProduction()) + 1);
+                if (ends[s] == ERROR) {
+                    ends[s] = reduce;
+                }
+                for (Symbol lookahead : item.getLookaheads()) {
+                    Integer symbol = ids.get(lookahead);
+                    if (symbol != null && row[symbol] == ERROR) {
+                        row[symbol] = reduce;
+                    }
+                }
+            }
+
+            for (Map.Entry<Symbol, State> entry : transitions(state, ids)) {
+                int symbol = ids.get(entry.getKey());
+                if (row[symbol] == ERROR) {
+                    row[symbol] = stateIds.get(entry.getValue()) + 1;
+                }
+            }
+        }
+
+        int[] rowBase = new int[rows.length];
+        int[][] comb = compress(rows, rowBase);
+
+        this.symbols = symbolList;
+        this.symbolIds = ids;
+        this.lexer = new Lexer(symbolList);
+        this.productions = productionList;
+        this.productionLeft = new int[productionList.size()];
+        this.productionLength = new int[productionList.size()];
+        for (int i = 0; i < productionList.size(); i++) {
+            productionLeft[i] = ids.get(productionList.get(i).getLeft());
+            productionLength[i] = productionList.get(i).getRight().size();
+        }
+        this.base = IntBuffer.wrap(rowBase);
+        this.entries = IntBuffer.wrap(comb[0]);
+        this.check = IntBuffer.wrap(comb[1]);
+        this.endActions = IntBuffer.wrap(ends);
+        this.startState = 0;
+        this.startSymbol = ids.get(g.getStart());
+    }
+
+    // Rebuilds a table from the buffers of a serialized table file.
+    private ParseTable(List<Symbol> symbols, List<Production> productions, IntBuffer base, IntBuffer entries,
+                       IntBuffer check, IntBuffer endActions, int startState, int startSymbol) {
+        this.symbols = symbols;
+        this.symbolIds = new HashMap<>();
+        for (int i = 0; i < symbols.size(); i++) {
+            symbolIds.put(symbols.get(i), i);
+        }
+        this.lexer = new Lexer(symbols);
+        this.productions = productions;
+        this.productionLeft = new int[productions.size()];
+        this.productionLength = new int[productions.size()];
+        for (int i = 0; i < productions.size(); i++) {
+            productionLeft[i] = symbolIds.get(productions.get(i).getLeft());
+            productionLength[i] = productions.get(i).getRight().size();
+        }
+        this.base = base;
+        this.entries = entries;
+        this.check = check;
+        this.endActions = endActions;
+        this.startState = startState;
+        this.startSymbol = startSymbol;
+    }
+
+    // Returns the transitions of the state sorted by the ids of their symbols.
+    private static List<Map.Entry<Symbol, State>> transitions(State state, Map<Symbol, Integer> ids) {
+        List<Map.Entry<Symbol, State>> transitions = new ArrayList<>(state.getTransitionFunction().entrySet());
+        transitions.sort(Comparator.comparingInt(entry -> ids.get(entry.getKey())));
+        return transitions;
+    }
+
+    // Places every row at the lowest offset where its non-error entries fall on free slots.
+    // Dense rows are placed first since they are the hardest to fit.
+    private static int[][] compress(int[][] rows, int[] rowBase) {
+        int width = rows.length == 0 ? 0 : rows[0].length;
+        int[][] columns = new int[rows.length][];
+        Integer[] order = new Integer[rows.length];
+        for (int s = 0; s < rows.length; s++) {
+            int[] row = rows[s];
+            columns[s] = IntStream.range(0, width).filter(symbol -> row[symbol] != ERROR).toArray();
+            order[s] = s;
+        }
+        Arrays.sort(order, (a, b) -> columns[b].length - columns[a].length);
+
+        int[] entries = new int[2 * width];
+        int[] check = new int[entries.length];
+        Arrays.fill(check, -1);
+        int length = width;
+        int firstFree = 0;
+
+        for (int s : order) {
+            int offset = firstFree;
+            while (!fits(columns[s], check, offset)) {
+                offset++;
+            }
+
+            if (offset + width > entries.length) {
+                int grown = Math.max(2 * entries.length, offset + width);
+                entries = Arrays.copyOf(entries, grown);
+                check = Arrays.copyOf(check, grown);
+                Arrays.fill(check, length, grown, -1);
+            }
+
+            rowBase[s] = offset;
+            for (int symbol : columns[s]) {
+                entries[offset + symbol] = rows[s][symbol];
+                check[offset + symbol] = s;
+            }
+            // every lookup must stay inside the vector, so it spans the last base plus a full row
+            length = Math.max(length, offset + width);
+            while (firstFree < check.length && check[firstFree] != -1) {
+                firstFree++;
+            }
+        }
+
+        return new int[][]{Arrays.copyOf(entries, length), Arrays.copyOf(check, length)};
+    }
+
+    private static boolean fits(int[] columns, int[] check, int offset) {
+        for (int symbol : columns) {
+            if (offset + symbol < check.length && check[offset + symbol] != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns a derivation tree for the given valid string.
+    // Runs a shift/reduce driver over the ACTION/GOTO tables in a single left to right pass,
+    // with the derivation tree nodes kept on a stack parallel to the state stack.
+    // The lexer numbers symbols like the table, so its ids are the input of the driver and the labels of the tree.
+    public DTE parseString(CharSequence validString) {
+
+        boolean debug = Configuration.isDebugging();
+        Lexer.Tokens input = lexer.tokenize(validString);
+        ParseTree tree = new ParseTree(symbols, input);
+
+        int[] stateStack = new int[16];
+        int[] nodeStack = new int[16];
+        int top = 0;
+        stateStack[0] = startState;
+        int position = 0;
+
+        while (true) {
+            int state = stateStack[top];
+            int action = position < input.size() ? action(state, input.id(position)) : endAction(state);
+
+            if (isShift(action)) {
+                if (++top == stateStack.length) {
+                    stateStack = Arrays.copyOf(stateStack, 2 * top);
+                    nodeStack = Arrays.copyOf(nodeStack, 2 * top);
+                }
+                stateStack[top] = targetState(action);
+                nodeStack[top] = tree.addLeaf(position);
+                position++;
+            } else if (isReduce(action)) {
+                int production = reducedProduction(action);
+                int left = productionLeft[production];
+                int length = productionLength[production];
+
+                if (debug) {
+                    log("[reduce: " + productions.get(production) + "]");
+                }
+
+                int father = tree.addFather(left, nodeStack, top - length + 1, top + 1, position);
+                top -= length;
+
+                if (top == 0 && left == startSymbol) {
+                    return tree.node(father);
+                }
+
+                stateStack[top + 1] = targetState(action(stateStack[top], left));
+                nodeStack[top + 1] = father;
+                top++;
+            } else {
+                if (position == input.size()) {
+                    throw new IllegalArgumentException("Syntax error at symbol " + position + ": end of input");
+                }
+                throw new IllegalArgumentException("Syntax error at symbol " + position + " (offset "
+                        + input.offset(position) + "): " + input.symbol(position).getContent());
+            }
+        }
+    }
+
+    // Returns the entry for the given state and symbol id.
+    public int action(int state, int symbol) {
+        int index = base.get(state) + symbol;
+        return check.get(index) == state ? entries.get(index) : ERROR;
+    }
+
+    // Returns the entry for the given state when no input is left.
+    public int endAction(int state) {
+        return endActions.get(state);
+    }
+
+    // Returns the id of the given symbol, or -1 if it is not part of the grammar.
+    public int symbolId(Symbol symbol) {
+        Integer id = symbolIds.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    // Writes the table in the binary table format, tagged with the given grammar fingerprint.
+    public void writeTo(Path path, long fingerprint) throws IOException {
+        int size = 4 * 4 + 8;
+        List<byte[]> names = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            byte[] name = symbol.getContent().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += 1 + 4 + name.length;
+        }
+        size += 4;
+        for (Production production : productions) {
+            size += 8 + 4 * production.getRight().size();
+        }
+        size += 4 * 4 + 4 * (base.limit() + endActions.limit() + 2 * entries.limit());
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putLong(fingerprint);
+
+        out.putInt(symbols.size());
+        for (int i = 0; i < symbols.size(); i++) {
+            out.put((byte) (symbols.get(i).isTerminal() ? 1 : 0));
+            out.putInt(names.get(i).length).put(names.get(i));
+        }
+
+        out.putInt(productions.size());
+        for (int i = 0; i < productions.size(); i++) {
+            out.putInt(productionLeft[i]).putInt(productionLength[i]);
+            for (Symbol symbol : productions.get(i).getRight()) {
+                out.putInt(symbolIds.get(symbol));
+            }
+        }
+
+        out.putInt(startState).putInt(startSymbol).putInt(base.limit()).putInt(entries.limit());
+        for (int i = 0; i < base.limit(); i++) out.putInt(base.get(i));
+        for (int i = 0; i < endActions.limit(); i++) out.putInt(endActions.get(i));
+        for (int i = 0; i < entries.limit(); i++) out.putInt(entries.get(i));
+        for (int i = 0; i < check.limit(); i++) out.putInt(check.get(i));
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    // Maps a table file into memory. The ACTION/GOTO vectors are read straight from the mapping.
+    // Returns null if the file is not a table file or was written for a different grammar fingerprint.
+    public static ParseTable load(Path path, long fingerprint) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(in, fingerprint);
+    }
+
+    // Reads a table in the binary table format from the buffer, e.g. the bytes of a classpath resource.
+    // Returns null if the buffer does not hold a table or the table was written for a different grammar fingerprint.
+    public static ParseTable read(ByteBuffer in, long fingerprint) {
+        if (in.remaining() < 16 || in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != fingerprint) {
+            return null;
+        }
+
+        int symbolCount = in.getInt();
+        List<Symbol> symbols = new ArrayList<>(symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            boolean terminal = in.get() == 1;
+            byte[] name = new byte[in.getInt()];
+            in.get(name);
+            symbols.add(new Symbol(new String(name, StandardCharsets.UTF_8),
+                    terminal ? Symbol.SymbolType.Terminal : Symbol.SymbolType.Nonterminal));
+        }
+
+        int productionCount = in.getInt();
+        List<Production> productions = new ArrayList<>(productionCount);
+        for (int i = 0; i < productionCount; i++) {
+            Symbol left = symbols.get(in.getInt());
+            ArrayList<Symbol> right = new ArrayList<>();
+            for (int length = in.getInt(); length > 0; length--) {
+                right.add(symbols.get(in.getInt()));
+            }
+            productions.add(new Production(left, right));
+        }
+
+        int startState = in.getInt();
+        int startSymbol = in.getInt();
+        int stateCount = in.getInt();
+        int entryCount = in.getInt();
+        IntBuffer base = slice(in, stateCount);
+        IntBuffer endActions = slice(in, stateCount);
+        IntBuffer entries = slice(in, entryCount);
+        IntBuffer check = slice(in, entryCount);
+
+        return new ParseTable(symbols, productions, base, entries, check, endActions, startState, startSymbol);
+    }
+
+    private static IntBuffer slice(ByteBuffer in, int count) {
+        IntBuffer view = in.slice().limit(4 * count).asIntBuffer();
+        in.position(in.position() + 4 * count);
+        return view;
+    }
+
+    public static boolean isShift(int action) {
+        return action > 0;
+    }
+
+    public static boolean isReduce(int action) {
+        return action < 0;
+    }
+
+    public static int targetState(int action) {
+        return action - 1;
+    }
+
+    public static int reducedProduction(int action) {
+        return -action - 1;
+    }
+
+    public Symbol getSymbol(int id) {
+        return symbols.get(id);
+    }
+
+    public Production getProduction(int id) {
+        return productions.get(id);
+    }
+
+    public int getProductionLeft(int production) {
+        return productionLeft[production];
+    }
+
+    public int getProductionLength(int production) {
+        return productionLength[production];
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    public int getStartSymbol() {
+        return startSymbol;
+    }
+
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    public int getStateCount() {
+        return base.limit();
+    }
+
+    public int getEntryCount() {
+        return entries.limit();
+    }
+}
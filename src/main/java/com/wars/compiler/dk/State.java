@@ -1,6 +1,5 @@
 package com.wars.compiler.dk;
 
-import com.wars.compiler.grammar.Grammar;
 import com.wars.compiler.grammar.Production;
 import com.wars.compiler.grammar.Symbol;
 
@@ -8,9 +7,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.io.Serializable;
 
-public class State implements Serializable {
+public class State {
 
     // A set of ‘Item’ objects that represents all the items / dotted rules for this state.
     private final HashSet<Item> items = new HashSet<>();
@@ -22,18 +20,27 @@ public class State implements Serializable {
     //A set of ‘Item’ objects to represent all the completed rules.
     private final HashSet<Item> completeItems = new HashSet<>();
 
+    // The grammar lookups and the items indexed by (production, dotIndex), only needed while the automaton is built.
+    private final GrammarIndex index;
+    private final HashMap<Long, Item> itemsByProductionAndDot = new HashMap<>();
+
+    State(GrammarIndex index) {
+        this.index = index;
+    }
+
     // adds a new ‘Item’ object to the items. If a similar item with the same production and dotIndex already exists, the function simply merges the lookaheads.
     public boolean addItem(Item newItem) {
 
-        for (Item item : items) {
-            if (item.sameProductionAndDot(newItem)) {
-                int size = item.getLookaheads().size();
-                item.addLookaheads(newItem.getLookaheads());
-                return size < item.getLookaheads().size();
-            }
+        long key = (long) index.productionId(newItem.getProduction()) << 32 | newItem.getDotIndex();
+        Item item = itemsByProductionAndDot.get(key);
+        if (item != null) {
+            int size = item.getLookaheads().size();
+            item.addLookaheads(newItem.getLookaheads());
+            return size < item.getLookaheads().size();
         }
 
         items.add(newItem);
+        itemsByProductionAndDot.put(key, newItem);
         if (newItem.isComplete()) {
             completeItems.add(newItem);
         }
@@ -41,7 +48,7 @@ public class State implements Serializable {
     }
 
     // Implements the ε-transitions process as described in the book.
-    public void makeEpsilonMoves(Grammar g) {
+    void makeEpsilonMoves() {
 
         boolean newItems;
         do {
@@ -61,14 +68,12 @@ public class State implements Serializable {
                     if (nextSymbol == null) {
                         lookaheads = new HashSet<>(currentitem.getLookaheads());
                     } else {
-                        lookaheads = State.lookaheadsFromSymbol(nextSymbol, new HashSet<>(), g);
+                        lookaheads = new HashSet<>(index.first(nextSymbol));
                     }
 
-                    for (Production production : g.getProductions()) {
-                        if (production.getLeft().equals(currentSymbol)) {
-                            Item newItem = new Item(production, 0, lookaheads);
-                            newItems = newItems || addItem(newItem);
-                        }
+                    for (Production production : index.productionsFor(currentSymbol)) {
+                        Item newItem = new Item(production, 0, lookaheads);
+                        newItems = newItems || addItem(newItem);
                     }
                 }
             }
@@ -76,31 +81,8 @@ public class State implements Serializable {
         } while (newItems);
     }
 
-    // Calculates and returns all the terminal symbols that can be the first symbol of the valid strings derivable from the given symbol within this grammar. As this function is also recursive, the symbols parameter keeps track of visited symbols to prevent the infinite loops
-    public static HashSet<Symbol> lookaheadsFromSymbol(Symbol symbol, HashSet<Symbol> symbols, Grammar g) {
-        HashSet<Symbol> lookaheads = new HashSet<>();
-        symbols.add(symbol);
-
-        if (symbol.isTerminal()) {
-            lookaheads.add(symbol);
-            return lookaheads;
-        } else {
-            for (Production production : g.getProductions()) {
-                if (production.getLeft().equals(symbol)) {
-                    Symbol derivedSymbol = production.getRight().get(0);
-                    if (!symbols.contains((derivedSymbol))) {
-                        lookaheads.addAll((lookaheadsFromSymbol(derivedSymbol, symbols, g)));
-                    }
-                }
-            }
-        }
-
-        return lookaheads;
-    }
-
-
-    // Implements the shift transitions process specified in the book. This function initializes new states, when necessary. The states parameter ensures we don’t duplicate state creations.
-    public void makeShiftMoves(HashSet<State> states, Grammar g) {
+    // Implements the shift transitions process specified in the book. This function initializes new states, when necessary. The statesByKernel parameter ensures we don’t duplicate state creations.
+    void makeShiftMoves(HashSet<State> states, Map<GrammarIndex.KernelKey, State> statesByKernel) {
         Map<Symbol, Set<Item>> symbolToItemsMap = new HashMap<>();
 
         // Find all transition symbol possibilities and map their items
@@ -116,7 +98,7 @@ public class State implements Serializable {
         for (Map.Entry<Symbol, Set<Item>> entry : symbolToItemsMap.entrySet()) {
             Symbol transitionSymbol = entry.getKey();
             Set<Item> transitionItems = entry.getValue();
-            State transitionState = createTransitionState(transitionItems, states, g);
+            State transitionState = createTransitionState(transitionItems, states, statesByKernel);
             transitionFunction.put(transitionSymbol, transitionState);
         }
     }
@@ -155,24 +137,25 @@ public class State implements Serializable {
     }
 
     // Creates and returns a new ‘State’ object with a given set of items. If the state with the same items already exists, the function doesn’t create a new state and returns existing one. Creating new transition states is necessary in the construction process of the automata.
-    private State createTransitionState(Set<Item> transitionItems, HashSet<State> states, Grammar g) {
-        State transitionState = new State();
+    // The ε-transitions only add items with the dot at 0, so two states are equal exactly when their kernels (the shifted items) are, and existing states are found by kernel key before the ε-transitions are made.
+    private State createTransitionState(Set<Item> transitionItems, HashSet<State> states, Map<GrammarIndex.KernelKey, State> statesByKernel) {
+        State transitionState = new State(index);
 
         for (Item item : transitionItems) {
             Item newItem = new Item(item.getProduction(), item.getDotIndex() + 1, item.getLookaheads());
             transitionState.addItem(newItem);
         }
 
-        transitionState.makeEpsilonMoves(g);
+        GrammarIndex.KernelKey kernel = index.kernelKey(transitionState.getItems());
+        State existing = statesByKernel.get(kernel);
+        if (existing != null) {
+            return existing;
+        }
 
-        for (State state : states) {
+        transitionState.makeEpsilonMoves();
 
-            int itemsSize = transitionState.getItems().size();
-            if (state.getItems().size() == itemsSize && state.sameItems(transitionState)) {
-                return state;
-            }
-        }
         states.add(transitionState);
+        statesByKernel.put(kernel, transitionState);
         return transitionState;
     }
 
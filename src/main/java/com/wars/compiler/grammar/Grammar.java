@@ -6,12 +6,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
-import java.util.function.Predicate;
 import java.io.Serializable;
 
 // Represents a Context-Free Grammar.
 // The main goal of this class is to read grammar information from the text files ('Grammar.txt' and 'Terminal.txt'),
-// manipulate (tokenize, pre-process), and store this information in suitable data structures for further use.
+// manipulate (tokenize with a 'Lexer', pre-process), and store this information in suitable data structures for further use.
 public class Grammar implements Serializable {
 
     // The start symbol of the grammar.
@@ -23,6 +22,8 @@ public class Grammar implements Serializable {
     private final HashSet<Symbol> nonterminals;
     // The list of production rules.
     private final List<Production> productions;
+    // True if names, digit sequences and asm bodies are single 'TokenClass' terminals.
+    private final boolean tokenClasses;
 
     // Receives file paths of 'Grammar.txt' and 'Terminals.txt'.
     // Initializes the set of terminals.
@@ -30,6 +31,14 @@ public class Grammar implements Serializable {
     // Initializes the list of productions.
     // Initializes the start symbol.
     public Grammar(String grammarFilePath, String terminalsFilePath) throws FileNotFoundException {
+        this(grammarFilePath, terminalsFilePath, false);
+    }
+
+    // Reads the grammar, reduced to token classes if tokenClasses is true:
+    // the productions of every 'TokenClass' nonterminal are replaced by one production deriving its terminal,
+    // and the nonterminals and terminals that only spelled them character by character are dropped.
+    public Grammar(String grammarFilePath, String terminalsFilePath, boolean tokenClasses) throws FileNotFoundException {
+        this.tokenClasses = tokenClasses;
         terminals = new HashSet<>();
         nonterminals = new HashSet<>();
         productions = new ArrayList<>();
@@ -43,6 +52,10 @@ public class Grammar implements Serializable {
         // Read Productions.
         readProductions(grammarFilePath);
 
+        if (tokenClasses) {
+            reduceToTokenClasses();
+        }
+
         // Initialize the start symbol.
         start = productions.get(0).getLeft();
     }
@@ -79,130 +92,50 @@ public class Grammar implements Serializable {
     // Multiple productions might be merged by '|' symbol to shorten the record size,
     // we split the line by "->", "|" and save single productions separately.
     private void readProductions(String grammarFilePath) throws FileNotFoundException {
+        List<Symbol> symbols = new ArrayList<>(terminals);
+        symbols.addAll(nonterminals);
+        Lexer lexer = new Lexer(symbols);
+
         Scanner in = new Scanner(new File(grammarFilePath));
         while (in.hasNext()) {
             final String str = in.nextLine();
             // Distinguish left and right attributes
             String[] parts = str.split(" -> ");
             Symbol left = new Symbol(parts[0], Symbol.SymbolType.Nonterminal);
+            if (tokenClasses && TokenClass.SPELLING.contains(left)) {
+                continue;
+            }
+            if (tokenClasses && TokenClass.of(left) != null) {
+                productions.add(new Production(left, new ArrayList<>(List.of(TokenClass.of(left).getTerminal()))));
+                continue;
+            }
             // Decompose merged productions and save separately.
             String[] rightParts = parts[1].split(" \\| ");
             for (String rightStr : rightParts) {
-                ArrayList<Symbol> right = stringIntoSymbols(rightStr, this.getTerminals(), this.getNonterminals());
-                right = eliminateExtraWhitespace(right);
+                Lexer.Tokens tokens = lexer.tokenize(rightStr);
+                ArrayList<Symbol> right = new ArrayList<>(tokens.size());
+                for (int i = 0; i < tokens.size(); i++) {
+                    right.add(tokens.symbol(i));
+                }
                 productions.add(new Production(left, right));
             }
         }
     }
 
-    // Receives a string of symbols, and sets of all terminal and nonterminal symbols.
-    // Decomposes the given string into symbols and returns respective ArrayList.
-    // Basically this function is a tokenization of a string into the respective ArrayList of 'symbols'.
-    public static ArrayList<Symbol> stringIntoSymbols(String str, HashSet<Symbol> terminals, HashSet<Symbol> nonterminals) {
-        ArrayList<Symbol> result = new ArrayList<>();
-        while (!str.isEmpty()) {
-            Symbol symbol = firstSymbolInString(str, terminals, nonterminals);
-            result.add(symbol);
-            str = str.substring(symbol.length());
-        }
-        return result;
-    }
-
-    // Receives a string of symbols, and sets of all terminal and nonterminal symbols.
-    // Returns the longest terminal/nonterminal symbol starting from index = 0.
-    public static Symbol firstSymbolInString(String str, HashSet<Symbol> terminals, HashSet<Symbol> nonterminals) throws IllegalArgumentException {
-        for (int i = 0; i < str.length(); i++) {
-            String subStr = str.substring(0, str.length() - i);
-
-            Symbol nonterminal = new Symbol(subStr, Symbol.SymbolType.Nonterminal);
-            if (nonterminals.contains(nonterminal)) {
-                return nonterminal;
-            }
-
-            Symbol terminal = new Symbol(subStr, Symbol.SymbolType.Terminal);
-            if (terminals.contains(terminal)) {
-                return terminal;
-            }
-        }
-
-        throw new IllegalArgumentException("Can't find the first symbol in this string:  " + str);
-    }
-
-    // Removes all the extra whitespaces in the given validStringArray as specified below
-    // 1) If there are adjacent whitespaces, remove them, and leave only one: [" ", " ", " "] -> [" "]
-    // 2) Erase all the tabs and end-lines: ["\n", "\t", ...]
-    // 3) Erase all surrounding whitespaces of: , ; ( ) + - * / & | ! < > = [ ]
-    public static ArrayList<Symbol> eliminateExtraWhitespace(ArrayList<Symbol> validStringArray) {
-
-        Symbol space = new Symbol(" ", Symbol.SymbolType.Terminal);
-        Symbol tab = new Symbol("\t", Symbol.SymbolType.Terminal);
-        Symbol endLine = new Symbol("\n", Symbol.SymbolType.Terminal);
+    // Drops the spelling nonterminals and every terminal no production uses anymore.
+    // The whitespace terminals stay, the lexer has to recognize them before removing them.
+    private void reduceToTokenClasses() {
+        nonterminals.removeAll(TokenClass.SPELLING);
 
-        HashSet<Symbol> syntaxSymbols = initializeSyntaxSymbols();
-
-
-        Predicate<Symbol> isWhitespace = symbol -> symbol.equals(space) || symbol.equals(tab) || symbol.equals(endLine);
-        Predicate<Symbol> isSyntaxSymbol = syntaxSymbols::contains;
-
-        ArrayList<Symbol> result = new ArrayList<>();
-        // Left to Right loop to remove all the extra whitespace
-        for (int i = 0; i < validStringArray.size() - 1; i++) {
-            Symbol currentSymbol = validStringArray.get(i);
-            Symbol nextSymbol = validStringArray.get(i + 1);
-
-            if (isWhitespace.test(currentSymbol)) {
-                if (currentSymbol.equals(tab) || currentSymbol.equals(endLine)) {
-                    continue;
-                } else {
-                    if (isWhitespace.test(nextSymbol)) {
-                        continue;
-                    }
-                }
-            }
-
-            if (isWhitespace.test(currentSymbol)) {
-                if (isSyntaxSymbol.test(nextSymbol)) {
-                    continue;
-                }
-            }
-
-            if (isWhitespace.test(currentSymbol)) {
-                if (i > 0 && isSyntaxSymbol.test(validStringArray.get(i - 1))) {
-                    continue;
-                }
-            }
-
-            result.add(currentSymbol);
+        HashSet<Symbol> used = new HashSet<>();
+        for (Production production : productions) {
+            used.addAll(production.getRight());
         }
-
-        Symbol lastSymbol = validStringArray.get(validStringArray.size() - 1);
-        if (!isWhitespace.test(lastSymbol)) {
-            result.add(lastSymbol);
+        terminals.removeIf(terminal -> !used.contains(terminal)
+                && !terminal.getContent().equals("\t") && !terminal.getContent().equals("\n"));
+        for (TokenClass tokenClass : TokenClass.values()) {
+            terminals.add(tokenClass.getTerminal());
         }
-
-        return result;
-
-    }
-
-    private static HashSet<Symbol> initializeSyntaxSymbols() {
-        HashSet<Symbol> syntaxSymbols = new HashSet<>();
-        syntaxSymbols.add(new Symbol(",", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol(";", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("+", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("-", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("*", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("/", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("&", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("|", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("!", Symbol.SymbolType.Terminal));
-        syntaxSymbols.add(new Symbol("=", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("[", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("]", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("(", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol(")", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol("<", Symbol.SymbolType.Terminal));
-        //syntaxSymbols.add(new Symbol(">", Symbol.SymbolType.Terminal));
-        return syntaxSymbols;
     }
 
     // Returns a string representation of the entire grammar.
@@ -240,4 +173,8 @@ public class Grammar implements Serializable {
     public List<Production> getProductions() {
         return productions;
     }
+
+    public boolean isTokenClasses() {
+        return tokenClasses;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,403 @@
+package com.wars.compiler.grammar;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+// Splits strings into the terminal and nonterminal symbols of a grammar.
+// The symbols are compiled once into a trie whose nodes are the states of a DFA over the characters,
+// so a string is tokenized by maximal munch in a single left to right pass.
+// Symbols are identified by their index in the list the lexer was built from.
+// If the list holds the terminals of the 'TokenClass'es, names, digit sequences and asm bodies are scanned
+// as single tokens carrying their lexeme, and words spelling a keyword terminal are the keyword.
+public class Lexer {
+
+    // Every symbol of the grammar is made of ASCII characters.
+    private static final int ALPHABET = 128;
+    private static final int NONE = -1;
+
+    private final List<Symbol> symbols;
+    // Child of node n on character c at n * ALPHABET + c, 0 if there is none (the root is never a child).
+    private final int[] next;
+    // Symbol id spelled by the path to every node, or NONE.
+    private final int[] accept;
+    private final boolean[] space;
+    private final boolean[] droppedWhitespace;
+    private final boolean[] syntaxSymbol;
+    // Symbol id of every token class terminal, NONE if the grammar spells the class character by character.
+    private final int[] classIds;
+    private final int unsignedSuffix;
+    private final int asmKeyword;
+    private final int openParenthesis;
+
+    // Builds the trie of the given symbols.
+    // A nonterminal takes precedence over a terminal with the same content.
+    public Lexer(List<Symbol> symbols) {
+        this.symbols = symbols;
+
+        int nodes = 1;
+        for (Symbol symbol : symbols) {
+            nodes += symbol.length();
+        }
+        int[] next = new int[nodes * ALPHABET];
+        int[] accept = new int[nodes];
+        Arrays.fill(accept, NONE);
+        int count = 1;
+
+        this.classIds = new int[TokenClass.values().length];
+        Arrays.fill(classIds, NONE);
+        for (TokenClass tokenClass : TokenClass.values()) {
+            classIds[tokenClass.ordinal()] = symbols.indexOf(tokenClass.getTerminal());
+        }
+
+        for (int id = 0; id < symbols.size(); id++) {
+            if (isClassId(id)) {
+                continue;
+            }
+            String content = symbols.get(id).getContent();
+            int node = 0;
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Symbol is not ASCII: " + content);
+                }
+                if (next[node * ALPHABET + c] == 0) {
+                    next[node * ALPHABET + c] = count++;
+                }
+                node = next[node * ALPHABET + c];
+            }
+            if (accept[node] == NONE || !symbols.get(id).isTerminal()) {
+                accept[node] = id;
+            }
+        }
+
+        this.next = Arrays.copyOf(next, count * ALPHABET);
+        this.accept = Arrays.copyOf(accept, count);
+        this.unsignedSuffix = find("u");
+        this.asmKeyword = find("asm");
+        this.openParenthesis = find("(");
+
+        Symbol blank = new Symbol(" ", Symbol.SymbolType.Terminal);
+        Symbol tab = new Symbol("\t", Symbol.SymbolType.Terminal);
+        Symbol endLine = new Symbol("\n", Symbol.SymbolType.Terminal);
+        HashSet<Symbol> syntaxSymbols = initializeSyntaxSymbols();
+
+        this.space = new boolean[symbols.size()];
+        this.droppedWhitespace = new boolean[symbols.size()];
+        this.syntaxSymbol = new boolean[symbols.size()];
+        for (int id = 0; id < symbols.size(); id++) {
+            Symbol symbol = symbols.get(id);
+            space[id] = symbol.equals(blank);
+            droppedWhitespace[id] = symbol.equals(tab) || symbol.equals(endLine);
+            syntaxSymbol[id] = syntaxSymbols.contains(symbol);
+        }
+    }
+
+    // Returns the symbols of the given string without the extra whitespace.
+    // Every step takes the longest symbol starting at the current offset.
+    public Tokens tokenize(CharSequence str) {
+        int length = str.length();
+        Tokens tokens = new Tokens(str, Math.max(length, 1));
+
+        int position = 0;
+        while (position < length) {
+            char c = str.charAt(position);
+            if (classIds[TokenClass.NAME.ordinal()] != NONE && isLetter(c)) {
+                position = scanWord(str, position, tokens);
+            } else if (classIds[TokenClass.DIGITS.ordinal()] != NONE && isDigit(c)) {
+                position = scanDigits(str, position, tokens);
+            } else {
+                position = scanSymbol(str, position, tokens);
+            }
+        }
+
+        eliminateExtraWhitespace(tokens);
+        return tokens;
+    }
+
+    // Adds the longest symbol of the trie starting at position and returns the offset after it.
+    private int scanSymbol(CharSequence str, int position, Tokens tokens) {
+        int node = 0;
+        int match = NONE;
+        int end = position;
+        for (int i = position; i < str.length(); i++) {
+            char c = str.charAt(i);
+            node = c < ALPHABET ? next[node * ALPHABET + c] : 0;
+            if (node == 0) {
+                break;
+            }
+            if (accept[node] != NONE) {
+                match = accept[node];
+                end = i + 1;
+            }
+        }
+
+        if (match == NONE) {
+            throw new IllegalArgumentException("Can't find the first symbol at offset " + position + " in this string:  "
+                    + str.subSequence(position, str.length()));
+        }
+        tokens.add(match, position, end);
+        return end;
+    }
+
+    // Adds a keyword or a name token for the word of letters and digits starting at position.
+    // An asm keyword is followed by the parenthesis, the blanks and the token of its body.
+    private int scanWord(CharSequence str, int position, Tokens tokens) {
+        int end = position + 1;
+        while (end < str.length() && (isLetter(str.charAt(end)) || isDigit(str.charAt(end)))) {
+            end++;
+        }
+
+        int keyword = end - position > 1 ? find(str, position, end) : NONE;
+        if (keyword == NONE || !symbols.get(keyword).isTerminal()) {
+            tokens.add(classIds[TokenClass.NAME.ordinal()], position, end);
+            return end;
+        }
+
+        tokens.add(keyword, position, end);
+        if (keyword == asmKeyword && classIds[TokenClass.ASM.ordinal()] != NONE
+                && end < str.length() && str.charAt(end) == '(') {
+            return scanAsm(str, end, tokens);
+        }
+        return end;
+    }
+
+    // Adds a digits token, and the unsigned suffix if a single 'u' follows the digits.
+    private int scanDigits(CharSequence str, int position, Tokens tokens) {
+        int end = position + 1;
+        while (end < str.length() && isDigit(str.charAt(end))) {
+            end++;
+        }
+        tokens.add(classIds[TokenClass.DIGITS.ordinal()], position, end);
+
+        if (unsignedSuffix != NONE && end < str.length() && str.charAt(end) == 'u'
+                && (end + 1 == str.length() || !isLetter(str.charAt(end + 1)) && !isDigit(str.charAt(end + 1)))) {
+            tokens.add(unsignedSuffix, end, end + 1);
+            return end + 1;
+        }
+        return end;
+    }
+
+    // Adds "(" and the blanks after it, then the body up to the last " )" among the characters an asm body consists of.
+    // The whitespace of the body is reduced by the same rules as between symbols.
+    private int scanAsm(CharSequence str, int position, Tokens tokens) {
+        tokens.add(openParenthesis, position, position + 1);
+        int start = position + 1;
+        while (start < str.length() && str.charAt(start) == ' ') {
+            tokens.add(find(" "), start, start + 1);
+            start++;
+        }
+
+        int run = start;
+        while (run < str.length() && isAsmCharacter(str.charAt(run))) {
+            run++;
+        }
+        int end = run - 2;
+        while (end > start && !(str.charAt(end) == ' ' && str.charAt(end + 1) == ')')) {
+            end--;
+        }
+        if (end <= start) {
+            return start;
+        }
+
+        StringBuilder body = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c != ' ' || str.charAt(i + 1) != ' ' && !isSyntaxCharacter(str.charAt(i + 1))
+                    && !isSyntaxCharacter(str.charAt(i - 1))) {
+                body.append(c);
+            }
+        }
+        tokens.add(classIds[TokenClass.ASM.ordinal()], start, end);
+        if (body.length() != end - start) {
+            tokens.setText(tokens.size() - 1, body.toString());
+        }
+        return end;
+    }
+
+    // Removes all the extra whitespaces from the tokens in place.
+    // 1) If there are adjacent whitespaces, remove them, and leave only one: [" ", " ", " "] -> [" "]
+    // 2) Erase all the tabs and end-lines: ["\n", "\t", ...]
+    // 3) Erase all surrounding whitespaces of: , ; + / & | ! =
+    // 4) Erase a trailing whitespace.
+    private void eliminateExtraWhitespace(Tokens tokens) {
+        int[] ids = tokens.ids;
+        int[] offsets = tokens.offsets;
+        int[] ends = tokens.ends;
+        String[] texts = tokens.texts;
+        int size = tokens.size;
+        int kept = 0;
+        int previous = NONE;
+        for (int i = 0; i < size; i++) {
+            int current = ids[i];
+            boolean keep;
+            if (droppedWhitespace[current]) {
+                keep = false;
+            } else if (space[current]) {
+                keep = i + 1 < size
+                        && !space[ids[i + 1]] && !droppedWhitespace[ids[i + 1]] && !syntaxSymbol[ids[i + 1]]
+                        && (previous == NONE || !syntaxSymbol[previous]);
+            } else {
+                keep = true;
+            }
+
+            // the rules look at the original neighbours, not the ones left after removal
+            previous = current;
+            if (keep) {
+                ids[kept] = current;
+                offsets[kept] = offsets[i];
+                ends[kept] = ends[i];
+                if (texts != null) {
+                    texts[kept] = texts[i];
+                }
+                kept++;
+            }
+        }
+        tokens.size = kept;
+    }
+
+    private boolean isClassId(int id) {
+        for (int classId : classIds) {
+            if (classId == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the id of the symbol spelled by str[from, to), or NONE.
+    private int find(CharSequence str, int from, int to) {
+        int node = 0;
+        for (int i = from; i < to && node != NONE; i++) {
+            char c = str.charAt(i);
+            node = c < ALPHABET && next[node * ALPHABET + c] != 0 ? next[node * ALPHABET + c] : NONE;
+        }
+        return node == NONE ? NONE : accept[node];
+    }
+
+    private int find(String content) {
+        return find(content, 0, content.length());
+    }
+
+    private boolean isSyntaxCharacter(char c) {
+        int id = find(String.valueOf(c));
+        return id != NONE && syntaxSymbol[id];
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsmCharacter(char c) {
+        return isLetter(c) || isDigit(c) || c == ' ' || c == '(' || c == ')' || c == ',' || c == ':' || c == '-';
+    }
+
+    private static HashSet<Symbol> initializeSyntaxSymbols() {
+        HashSet<Symbol> syntaxSymbols = new HashSet<>();
+        syntaxSymbols.add(new Symbol(",", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol(";", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("+", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("-", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("*", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("/", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("&", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("|", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("!", Symbol.SymbolType.Terminal));
+        syntaxSymbols.add(new Symbol("=", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("[", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("]", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("(", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol(")", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol("<", Symbol.SymbolType.Terminal));
+        //syntaxSymbols.add(new Symbol(">", Symbol.SymbolType.Terminal));
+        return syntaxSymbols;
+    }
+
+    // Returns the symbol with the given id.
+    public Symbol getSymbol(int id) {
+        return symbols.get(id);
+    }
+
+    // The symbol ids of a tokenized string with the source span [offset, end) of each of them.
+    // The text of a token is its source span, except for asm bodies whose whitespace was reduced.
+    public class Tokens {
+
+        private final CharSequence source;
+        private final int[] ids;
+        private final int[] offsets;
+        private final int[] ends;
+        // Allocated with the first token whose text differs from its span.
+        private String[] texts;
+        private int size;
+
+        private Tokens(CharSequence source, int capacity) {
+            this.source = source;
+            this.ids = new int[capacity];
+            this.offsets = new int[capacity];
+            this.ends = new int[capacity];
+        }
+
+        private void add(int id, int offset, int end) {
+            ids[size] = id;
+            offsets[size] = offset;
+            ends[size] = end;
+            size++;
+        }
+
+        private void setText(int index, String text) {
+            if (texts == null) {
+                texts = new String[ids.length];
+            }
+            texts[index] = text;
+        }
+
+        public CharSequence getSource() {
+            return source;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int id(int index) {
+            return ids[index];
+        }
+
+        public int offset(int index) {
+            return offsets[index];
+        }
+
+        public int end(int index) {
+            return ends[index];
+        }
+
+        // Returns true if the text of the token is its source span.
+        public boolean isVerbatim(int index) {
+            return texts == null || texts[index] == null;
+        }
+
+        // Returns true if the token belongs to a token class and its text is a lexeme.
+        public boolean isLexeme(int index) {
+            return isClassId(ids[index]);
+        }
+
+        // Returns the lexeme of a token class token, or the content of the symbol of any other token.
+        public String text(int index) {
+            if (!isVerbatim(index)) {
+                return texts[index];
+            }
+            return isLexeme(index) ? source.subSequence(offsets[index], ends[index]).toString()
+                    : symbols.get(ids[index]).getContent();
+        }
+
+        // Returns the symbol at the given index, shared by every string the lexer tokenizes,
+        // or a terminal labeled by the lexeme for a token of a token class.
+        public Symbol symbol(int index) {
+            return isLexeme(index) ? new Symbol(text(index), Symbol.SymbolType.Terminal) : symbols.get(ids[index]);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.wars.compiler.grammar;
+
+import java.util.Set;
+
+// Nonterminals whose character by character derivations are recognized by the 'Lexer' instead of the parser.
+// In a grammar read with token classes every one of them derives a single terminal standing for all of its lexemes,
+// and the derivation tree keeps the nonterminal with one leaf labeled by the lexeme.
+public enum TokenClass {
+    // Identifiers: a letter followed by letters and digits, unless the whole word is a keyword.
+    NAME("<Na>", "name token"),
+    // Decimal digit sequences, used by constants, array sizes and register numbers.
+    DIGITS("<DiS>", "digits token"),
+    // The instruction text between "asm( " and the last " )" of the statement.
+    ASM("<ASM>", "asm token");
+
+    // Nonterminals that only spell the token classes character by character, dropped together with their productions.
+    static final Set<Symbol> SPELLING = Set.of(
+            new Symbol("<Di>", Symbol.SymbolType.Nonterminal),
+            new Symbol("<Le>", Symbol.SymbolType.Nonterminal),
+            new Symbol("<DiLe>", Symbol.SymbolType.Nonterminal),
+            new Symbol("<DiLeS>", Symbol.SymbolType.Nonterminal),
+            new Symbol("<DiLeCC>", Symbol.SymbolType.Nonterminal),
+            new Symbol("<DiLeCCS>", Symbol.SymbolType.Nonterminal));
+
+    private final Symbol nonterminal;
+    // The content contains a blank, which no terminal read from 'Terminals.txt' can.
+    private final Symbol terminal;
+
+    TokenClass(String nonterminal, String terminal) {
+        this.nonterminal = new Symbol(nonterminal, Symbol.SymbolType.Nonterminal);
+        this.terminal = new Symbol(terminal, Symbol.SymbolType.Terminal);
+    }
+
+    // Returns the token class derived by the given nonterminal, or null.
+    public static TokenClass of(Symbol nonterminal) {
+        for (TokenClass tokenClass : values()) {
+            if (tokenClass.nonterminal.equals(nonterminal)) {
+                return tokenClass;
+            }
+        }
+        return null;
+    }
+
+    public Symbol getNonterminal() {
+        return nonterminal;
+    }
+
+    public Symbol getTerminal() {
+        return terminal;
+    }
+}
@@ -13,20 +13,24 @@ import static com.wars.compiler.util.TypeUtils.checkTokenType;
 
 public class FunctionTable implements Table {
     private final Map<String, Fun> table;
-    private static FunctionTable INSTANCE;
+    // one table per compiling thread, so programs compiled in parallel never see each other's entries
+    private static final ThreadLocal<FunctionTable> INSTANCE = new ThreadLocal<>();
 
     public FunctionTable() {
         table = new HashMap<>();
     }
 
     public static FunctionTable getInstance() {
-        if (INSTANCE == null)
-            INSTANCE = new FunctionTable();
-        return INSTANCE;
+        FunctionTable instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new FunctionTable();
+            INSTANCE.set(instance);
+        }
+        return instance;
     }
 
     public static void reset() {
-        INSTANCE = null;
+        INSTANCE.remove();
     }
 
     public Fun getFunction(String name) throws FunctionException {
@@ -19,20 +19,24 @@ import static com.wars.compiler.util.TypeUtils.checkTokenType;
 
 public class MemoryTable implements Table {
     private final Map<String, Variable> table;
-    private static MemoryTable INSTANCE;
+    // one table per compiling thread, so programs compiled in parallel never see each other's entries
+    private static final ThreadLocal<MemoryTable> INSTANCE = new ThreadLocal<>();
 
     public MemoryTable() {
         table = new HashMap<>();
     }
 
     public static MemoryTable getInstance() {
-        if (INSTANCE == null)
-            INSTANCE = new MemoryTable();
-        return INSTANCE;
+        MemoryTable instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new MemoryTable();
+            INSTANCE.set(instance);
+        }
+        return instance;
     }
 
     public static void reset() {
-        INSTANCE = null;
+        INSTANCE.remove();
     }
 
     public Variable getMemory(String name) throws MemoryStructException {
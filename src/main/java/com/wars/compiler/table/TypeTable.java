@@ -15,7 +15,8 @@ import static com.wars.compiler.util.TypeUtils.checkTokenType;
 
 public class TypeTable implements Table {
     private final Map<String, VarType> table;
-    private static TypeTable INSTANCE;
+    // one table per compiling thread, so programs compiled in parallel never see each other's entries
+    private static final ThreadLocal<TypeTable> INSTANCE = new ThreadLocal<>();
 
     public TypeTable() {
         table = new HashMap<>();
@@ -23,13 +24,16 @@ public class TypeTable implements Table {
     }
 
     public static TypeTable getInstance() {
-        if (INSTANCE == null)
-            INSTANCE = new TypeTable();
-        return INSTANCE;
+        TypeTable instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new TypeTable();
+            INSTANCE.set(instance);
+        }
+        return instance;
     }
 
     public static void reset() {
-        INSTANCE = null;
+        INSTANCE.remove();
     }
 
     public VarType getType(String name) throws TypeNotDefinedException {
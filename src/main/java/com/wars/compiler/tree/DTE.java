@@ -1,64 +1,31 @@
 package com.wars.compiler.tree;
 
-import com.wars.compiler.dk.Item;
 import com.wars.compiler.grammar.Symbol;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import static com.wars.compiler.util.Logger.log;
 
+// A node of a derivation tree, a cursor over the arrays of its 'ParseTree'.
+// Cursors are created on demand while walking the tree, two of them are equal if they point to the same node.
 public class DTE {
 
-    private final Symbol label;
-    private DTE father;
-    private DTE firstSon;
-    private DTE brother;
+    private final ParseTree tree;
+    private final int node;
 
-    public DTE(Symbol label) {
-        this.label = label;
-    }
-
-    public static ArrayList<DTE> updateTheParseTree(ArrayList<DTE> parseTree, Item handle) {
-
-        Symbol parentSymbol = handle.getProduction().getLeft();
-        int rightIndex = handle.getDotIndex();
-        int leftIndex = rightIndex - handle.getProduction().getRight().size();
-
-        // Make Brothers
-        for (int i = leftIndex; i < rightIndex - 1; i++) {
-            parseTree.get(i).setBrother(parseTree.get(i + 1));
-        }
-
-        // Create father and make connection
-        DTE father = new DTE(parentSymbol);
-        father.setFirstSon(parseTree.get(leftIndex));
-        for (int i = leftIndex; i < rightIndex; i++) {
-            parseTree.get(i).setFather(father);
-        }
-
-        // Erase Children from the parse tree array and put father in their place
-        ArrayList<DTE> newParseTree = new ArrayList<>();
-
-        for (int i = 0; i < leftIndex; i++) {
-            newParseTree.add(parseTree.get(i));
-        }
-        newParseTree.add(father);
-        for (int i = rightIndex; i < parseTree.size(); i++) {
-            newParseTree.add(parseTree.get(i));
-        }
-
-        return newParseTree;
+    DTE(ParseTree tree, int node) {
+        this.tree = tree;
+        this.node = node;
     }
 
     public boolean isType(String type) {
-        return labelContent().equals(type);
+        return tree.isType(node, type);
     }
 
     public List<DTE> getFlattenedSequence() {
-        if (label == null) return null;
         List<DTE> result = new LinkedList<>();
+        DTE firstSon = getFirstSon();
 
         // XS -> XS; X
         if (firstSon.getBrother() == null) {
@@ -71,14 +38,9 @@ public class DTE {
         return result;
     }
 
+    // Served from the source when the derived tokens are adjacent there, rebuilt from the tokens otherwise.
     public String getBorderWord() {
-        if (label.isTerminal()) return labelContent();
-        StringBuilder sb = new StringBuilder();
-        for (DTE dte = firstSon; dte != null; dte = dte.brother) {
-            sb.append(dte.getBorderWord());
-        }
-
-        return sb.toString();
+        return tree.getBorderWord(node);
     }
 
     public List<List<String>> extractComponentPairs() {
@@ -101,18 +63,18 @@ public class DTE {
 
     public int getChildrenSize() {
         int result = 0;
-        var curr = this;
+        int curr = node;
         //
-        while (curr != null && curr.firstSon != null) {
+        while (curr != -1 && tree.getFirstSon(curr) != -1) {
             result++;
-            curr = curr.firstSon.brother;
+            curr = tree.getBrother(tree.getFirstSon(curr));
         }
         return result;
     }
 
     public int getSiblingCount() {
         int result = 0;
-        for (DTE curr = this; curr != null; curr = curr.brother) {
+        for (int curr = node; curr != -1; curr = tree.getBrother(curr)) {
             result++;
         }
         return result;
@@ -123,12 +85,11 @@ public class DTE {
 
         StringBuilder sb = new StringBuilder();
 
-        if (label == null) return "";
-        if (label.isTerminal()) return labelContent();
+        if (tree.getFirstSon(node) == -1) return labelContent();
 
         sb.append(labelContent());
-        for (DTE dte = firstSon; dte != null; dte = dte.brother) {
-            sb.append("\n\t|- ").append(dte);
+        for (int son = tree.getFirstSon(node); son != -1; son = tree.getBrother(son)) {
+            sb.append("\n\t|- ").append(tree.node(son));
         }
         return sb.toString();
 
@@ -147,39 +108,33 @@ public class DTE {
         }
 
         System.out.println(builder + labelContent());
-        if (firstSon != null) {
-            firstSon.printTree(level + 1, brother == null);
+        if (tree.getFirstSon(node) != -1) {
+            tree.node(tree.getFirstSon(node)).printTree(level + 1, tree.getBrother(node) == -1);
         }
 
-        if (brother != null) {
-            brother.printTree(level, false);
+        if (tree.getBrother(node) != -1) {
+            tree.node(tree.getBrother(node)).printTree(level, false);
         }
     }
 
     public Symbol getLabel() {
-        return label;
+        return tree.getLabel(node);
     }
 
     public DTE getFather() {
-        return father;
-    }
-
-    private void setFather(DTE father) {
-        this.father = father;
+        return tree.node(tree.getFather(node));
     }
 
     public DTE getFirstSon() {
-        return firstSon;
-    }
-
-    private void setFirstSon(DTE firstSon) {
-        this.firstSon = firstSon;
+        return tree.node(tree.getFirstSon(node));
     }
 
     public DTE getBrother() {
-        DTE res = brother;
-        if (res == null || !res.isType(" ")) return res;
-        return res.getBrother();
+        int res = tree.getBrother(node);
+        while (res != -1 && tree.isSpace(res)) {
+            res = tree.getBrother(res);
+        }
+        return tree.node(res);
     }
 
     public DTE getNthBrother(int n) {
@@ -197,12 +152,24 @@ public class DTE {
         return result.getNthBrother(n - 1);
     }
 
-    private void setBrother(DTE brother) {
-        this.brother = brother;
+    public String labelContent() {
+        return tree.labelContent(node);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        DTE dte = (DTE) obj;
+        return tree == dte.tree && node == dte.node;
     }
 
-    public String labelContent() {
-        if (label == null) return null;
-        return label.getContent();
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(tree) + node;
     }
 }
@@ -0,0 +1,167 @@
+package com.wars.compiler.tree;
+
+import com.wars.compiler.grammar.Lexer;
+import com.wars.compiler.grammar.Symbol;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The arena of a derivation tree: every node is an index into parallel arrays holding its label,
+// its father, first son and brother, and the range of input tokens it derives.
+// 'DTE' objects are cursors over the arena, so a tree costs a few ints per node instead of objects.
+// Leaves are the tokens of the input in order, hence the border word of a node is the text of its token range,
+// which is a slice of the source unless whitespace was removed between the tokens.
+public class ParseTree {
+
+    private static final int NONE = -1;
+
+    // Symbols in id order, as numbered by the parse table and the lexer.
+    private final List<Symbol> symbols;
+    private final Lexer.Tokens tokens;
+    private final int space;
+
+    private int[] label;
+    private int[] father;
+    private int[] firstSon;
+    private int[] brother;
+    // Nodes derive the tokens [firstToken, endToken), a leaf is its first token.
+    private int[] firstToken;
+    private int[] endToken;
+    private int size;
+
+    // breaks[t] counts the tokens before t whose text can't be joined to the next one by taking a source slice.
+    private final int[] breaks;
+
+    public ParseTree(List<Symbol> symbols, Lexer.Tokens tokens) {
+        this.symbols = symbols;
+        this.tokens = tokens;
+        this.space = symbols.indexOf(new Symbol(" ", Symbol.SymbolType.Terminal));
+
+        int capacity = 2 * tokens.size() + 1;
+        label = new int[capacity];
+        father = new int[capacity];
+        firstSon = new int[capacity];
+        brother = new int[capacity];
+        firstToken = new int[capacity];
+        endToken = new int[capacity];
+
+        breaks = new int[tokens.size() + 1];
+        for (int t = 0; t < tokens.size(); t++) {
+            boolean joined = tokens.isVerbatim(t) && (t + 1 == tokens.size() || tokens.end(t) == tokens.offset(t + 1));
+            breaks[t + 1] = breaks[t] + (joined ? 0 : 1);
+        }
+    }
+
+    // Adds the leaf of the given token and returns its node.
+    public int addLeaf(int token) {
+        int node = newNode(tokens.id(token));
+        firstToken[node] = token;
+        endToken[node] = token + 1;
+        return node;
+    }
+
+    // Adds the father of sons[from..to) labeled by the given symbol id and links the sons, returns its node.
+    // A father without sons derives no tokens at the given token position.
+    public int addFather(int symbol, int[] sons, int from, int to, int position) {
+        int node = newNode(symbol);
+        if (from < to) {
+            firstSon[node] = sons[from];
+            firstToken[node] = firstToken[sons[from]];
+            endToken[node] = endToken[sons[to - 1]];
+        } else {
+            firstToken[node] = position;
+            endToken[node] = position;
+        }
+        for (int i = from; i < to; i++) {
+            father[sons[i]] = node;
+            if (i + 1 < to) {
+                brother[sons[i]] = sons[i + 1];
+            }
+        }
+        return node;
+    }
+
+    private int newNode(int symbol) {
+        if (size == label.length) {
+            int capacity = 2 * size;
+            label = Arrays.copyOf(label, capacity);
+            father = Arrays.copyOf(father, capacity);
+            firstSon = Arrays.copyOf(firstSon, capacity);
+            brother = Arrays.copyOf(brother, capacity);
+            firstToken = Arrays.copyOf(firstToken, capacity);
+            endToken = Arrays.copyOf(endToken, capacity);
+        }
+        int node = size++;
+        label[node] = symbol;
+        father[node] = NONE;
+        firstSon[node] = NONE;
+        brother[node] = NONE;
+        return node;
+    }
+
+    // Returns a cursor on the given node.
+    public DTE node(int node) {
+        return node == NONE ? null : new DTE(this, node);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int getFather(int node) {
+        return father[node];
+    }
+
+    int getFirstSon(int node) {
+        return firstSon[node];
+    }
+
+    int getBrother(int node) {
+        return brother[node];
+    }
+
+    boolean isSpace(int node) {
+        return label[node] == space && isLeaf(node);
+    }
+
+    private boolean isLeaf(int node) {
+        return firstSon[node] == NONE && endToken[node] > firstToken[node];
+    }
+
+    // Returns the label of a node, a leaf of a token class is labeled by its lexeme.
+    Symbol getLabel(int node) {
+        return isLeaf(node) ? tokens.symbol(firstToken[node]) : symbols.get(label[node]);
+    }
+
+    String labelContent(int node) {
+        return isLeaf(node) ? tokens.text(firstToken[node]) : symbols.get(label[node]).getContent();
+    }
+
+    boolean isType(int node, String type) {
+        if (isLeaf(node) && tokens.isLexeme(firstToken[node])) {
+            return tokens.text(firstToken[node]).equals(type);
+        }
+        return symbols.get(label[node]).getContent().equals(type);
+    }
+
+    // Returns the concatenated labels of the leaves below the node.
+    String getBorderWord(int node) {
+        int from = firstToken[node];
+        int to = endToken[node];
+        if (from == to) {
+            return "";
+        }
+        if (to - from == 1) {
+            return tokens.text(from);
+        }
+        if (breaks[to - 1] == breaks[from] && tokens.isVerbatim(to - 1)) {
+            return tokens.getSource().subSequence(tokens.offset(from), tokens.end(to - 1)).toString();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int t = from; t < to; t++) {
+            sb.append(tokens.text(t));
+        }
+        return sb.toString();
+    }
+}
@@ -4,12 +4,7 @@ public class Context {
     public static int BPT = 28;
     public static int SPT = 29;
     public static int HPT = 30;
-    public static int SBASE = 0;
-    public static int SMAX = 4 * (1 << 10);
-    public static int HBASE = 8 * (1 << 10);
-    public static int HMAX = 12 * (1 << 10);
     public static int RA = 31;
-    public static boolean DEBUG = true;
     public static int programInit = 14; 
     
 }
@@ -1,8 +1,10 @@
 package com.wars.compiler.util;
 
+import com.wars.compiler.config.Configuration;
+
 public class Logger {
     public static <T> void log(T msg) {
-        if (Context.DEBUG) {
+        if (Configuration.isDebugging()) {
             System.out.println(msg);
         }
     }
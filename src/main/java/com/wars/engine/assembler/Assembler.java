@@ -1,149 +1,266 @@
 package com.wars.engine.assembler;
 
 import com.wars.engine.exception.assembler.label.UnresolvedLabelsException;
+import com.wars.engine.label.Fixup;
 import com.wars.engine.label.Label;
 import com.wars.engine.label.LabelManager;
+import com.wars.engine.operand.LineTokenizer;
 import com.wars.engine.operand.OperandParser;
 import com.wars.engine.instruction.Instruction;
 import com.wars.engine.instruction.InstructionRegistry;
-import com.wars.engine.instruction.JTypeInstruction;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Queue;
-import java.util.Scanner;
-import java.util.function.Consumer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import com.wars.engine.macro.Macro;
 import com.wars.engine.util.Log;
 
 public class Assembler {
-    private final Scanner inputScanner;
+    private static final int CHANNEL_CHUNK_BYTES = 1 << 16;
+    private static final Set<String> BRANCHES = Set.of("beq", "bne", "blez", "bgtz", "bltz", "bgez");
+    private final BufferedReader input;
     private final OutputStream outputStream;
     private final LabelManager labelManager;
-    private final Queue<Instruction> instructionsQueue;
+    // slots of emitted words that still wait for a label
+    private final TreeSet<Integer> pendingSlots;
+    private int slot;
     private long currLine;
 
     public Assembler(InputStream inputStream, OutputStream outputStream, long currLine) {
-        this.inputScanner = new Scanner(inputStream);
+        this.input = new BufferedReader(new InputStreamReader(inputStream));
         this.outputStream = outputStream;
         this.labelManager = new LabelManager(0);
-        this.instructionsQueue = new LinkedList<>();
+        this.pendingSlots = new TreeSet<>();
         this.currLine = currLine;
     }
 
     public Assembler(String codeLines, long currLine) {
-        this.inputScanner = new Scanner(codeLines);
+        this.input = new BufferedReader(new StringReader(codeLines));
         this.outputStream = OutputStream.nullOutputStream();
         this.labelManager = new LabelManager(0);
-        this.instructionsQueue = new LinkedList<>();
+        this.pendingSlots = new TreeSet<>();
         this.currLine = currLine;
     }
 
     public void assembleToBinaryString() {
         PrintStream outputPrintStream = new PrintStream(outputStream);
-        var instructionConsumer = (Consumer<Instruction>) instruction -> {
-            String binaryString = instruction.toBinaryString();
-            outputPrintStream.println(binaryString);
-        };
 
         Log.info("___ Start of Assembly Code ___");
-        while (advance()) {
-            drainInstructions(instructionConsumer);
-        }
-        drainInstructions(instructionConsumer);
+        assemble(new OrderedSink(word -> outputPrintStream.println(toBinaryString(word))));
         Log.info("___ End of Assembly Code ___");
     }
 
     public int[] toIntCodeArray() {
-        List<Integer> out = new ArrayList<>();
-        var instructionConsumer = (Consumer<Instruction>) instruction -> out.add(instruction.encode());
+        CodeBuffer out = new CodeBuffer();
+        assemble(out);
+        return out.toArray();
+    }
 
-        while (advance()) {
-            drainInstructions(instructionConsumer);
-        }
-        drainInstructions(instructionConsumer);
-        return out.stream().mapToInt(Integer::intValue).toArray();
+    // puts the words at the position of buffer and returns their number, a buffer that is too small overflows
+    public int assembleTo(IntBuffer buffer) {
+        int start = buffer.position();
+        assemble(new WordSink() {
+            @Override
+            public void put(int word) {
+                buffer.put(word);
+            }
+
+            @Override
+            public void patch(int slot, int word) {
+                buffer.put(start + slot, word);
+            }
+        });
+        return buffer.position() - start;
     }
 
-    private void drainInstructions(Consumer<Instruction> consumer) {
-        while (!instructionsQueue.isEmpty()) {
-            Instruction i = instructionsQueue.peek();
-            if (!i.isResolved()) {
-                break;
+    // streams the words big-endian to channel and returns their number; a seekable channel gets forward
+    // references patched in place, any other channel receives each word once its label is defined
+    public long assembleTo(WritableByteChannel channel) throws IOException {
+        try {
+            if (channel instanceof SeekableByteChannel seekable) {
+                ChannelSink sink = new ChannelSink(seekable);
+                assemble(sink);
+                return sink.count();
             }
-            instructionsQueue.remove();
-            consumer.accept(i);
+
+            ByteBuffer chunk = ByteBuffer.allocate(CHANNEL_CHUNK_BYTES);
+            long[] count = {0};
+            assemble(new OrderedSink(word -> {
+                if (!chunk.hasRemaining()) {
+                    flush(chunk, channel);
+                }
+                chunk.putInt(word);
+                count[0]++;
+            }));
+            flush(chunk, channel);
+            return count[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // every word goes to the sink as soon as its line is read, forward references are patched when their label is defined
+    private void assemble(WordSink sink) {
+        while (advance(sink)) {
+            sink.settle(pendingSlots.isEmpty() ? slot : pendingSlots.first());
+        }
+        List<Label> unresolvedLabels = labelManager.getUndefined();
+        if (!unresolvedLabels.isEmpty()) {
+            throw new UnresolvedLabelsException(unresolvedLabels.toString());
         }
+        sink.finish();
     }
 
-    private boolean advance() {
-        if (!inputScanner.hasNextLine()) {
-            List<Label> unresolvedLabels = labelManager.getUndefined();
-            if (!unresolvedLabels.isEmpty()) {
-                throw new UnresolvedLabelsException(unresolvedLabels.toString());
+    // assembles into an object file section loaded at loadAddress; defined labels become its symbols and
+    // labels it never defines become relocations, resolved against the other sections when the file is loaded
+    public ObjectFile.Section assembleSection(String name, int loadAddress) {
+        CodeBuffer out = new CodeBuffer();
+        while (advance(out)) {
+            out.settle(pendingSlots.isEmpty() ? slot : pendingSlots.first());
+        }
+
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        for (Label label : labelManager.getDefined()) {
+            symbols.put(label.getName(), (int) label.getAddress());
+        }
+        List<ObjectFile.Relocation> relocations = new ArrayList<>();
+        for (Label label : labelManager.getUndefined()) {
+            for (Fixup fixup : label.getFixups()) {
+                relocations.add(new ObjectFile.Relocation(fixup.getSlot(), label.getName(), fixup.isJump()));
             }
+        }
+        relocations.sort(Comparator.comparingInt(ObjectFile.Relocation::getSlot));
+        return new ObjectFile.Section(name, loadAddress, out.toArray(), symbols, relocations);
+    }
+
+    private boolean advance(WordSink sink) {
+        String line = nextLine();
+        if (line == null) {
             return false;
         }
 
-        String line = inputScanner.nextLine().trim();
+        line = line.trim();
         currLine++;
 
         if (line.isBlank() || line.startsWith("#")) {
             return true;
         }
 
-        String[] split = line.split("\\s+");
+        String[] split = LineTokenizer.split(line);
 
         if (split.length == 1 && split[0].endsWith(":")) {
-            labelManager.define(split[0].substring(0, split[0].length() - 1),
+            List<Fixup> fixups = labelManager.define(split[0].substring(0, split[0].length() - 1),
                     currLine);
+            for (Fixup fixup : fixups) {
+                sink.patch(fixup.getSlot(), fixup.resolve(labelManager.getCurrAddress()));
+                pendingSlots.remove(fixup.getSlot());
+            }
             return true;
         }
 
         if (split[0].equals("macro:")) {
-            return handleMacro(line);
+            return handleMacro(line, sink);
         }
 
         String mnemonic = split[0];
         String[] operands = Arrays.copyOfRange(split, 1, split.length);
-        Instruction instruction;
 
-        if ((mnemonic.equals("j") || mnemonic.equals("jal"))
-                && isJumpLabeled(operands)) {
-            instruction = handleJType(mnemonic, operands);
+        if (isLabeled(mnemonic, operands)) {
+            handleLabeled(mnemonic, operands, sink);
         } else {
             var expectedOperandTypes = InstructionRegistry.getOperandTypes(mnemonic);
             int[] parsedOperands = OperandParser.parseAll(operands, expectedOperandTypes);
-            instruction = InstructionRegistry.createForEncoder(mnemonic, parsedOperands);
+            emit(InstructionRegistry.createForEncoder(mnemonic, parsedOperands).encode(), sink);
         }
-
-        instructionsQueue.add(instruction);
-        labelManager.increaseAddress(4);
         return true;
     }
 
-    private boolean handleMacro(String line) {
+    private String nextLine() {
+        try {
+            return input.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean handleMacro(String line, WordSink sink) {
         List<Instruction> instructions = Macro.evaluate(line);
-        instructionsQueue.addAll(instructions);
-        labelManager.increaseAddress(4 * instructions.size());
+        for (Instruction instruction : instructions) {
+            emit(instruction.encode(), sink);
+        }
         return true;
-        
+
+    }
+
+    // the offset of j/jal and of the branches is encoded as zero and filled in from the label address
+    private void handleLabeled(String mnemonic, String[] operands, WordSink sink) {
+        String label = operands[operands.length - 1];
+        String[] unlabeled = Arrays.copyOf(operands, operands.length);
+        unlabeled[unlabeled.length - 1] = "0";
+
+        var expectedOperandTypes = InstructionRegistry.getOperandTypes(mnemonic);
+        int[] parsedOperands = OperandParser.parseAll(unlabeled, expectedOperandTypes);
+        int word = InstructionRegistry.createForEncoder(mnemonic, parsedOperands).encode();
+
+        Fixup fixup = new Fixup(slot, word, labelManager.getCurrAddress(), !BRANCHES.contains(mnemonic));
+        long labelAddress = labelManager.resolve(label, fixup);
+        if (labelAddress < 0) {
+            pendingSlots.add(slot);
+            emit(word, sink);
+        } else {
+            emit(fixup.resolve(labelAddress), sink);
+        }
     }
 
-    private JTypeInstruction handleJType(String mnemonic, String[] operands) {
-        JTypeInstruction result = new JTypeInstruction(mnemonic.equals("j") ? 0b000010 : 0b000011, labelManager.getCurrAddress());
-        labelManager.resolve(operands[0], result);
-        return result;
+    private void emit(int word, WordSink sink) {
+        sink.put(word);
+        slot++;
+        labelManager.increaseAddress(4);
+    }
+
+    private boolean isLabeled(String mnemonic, String[] operands) {
+        if (operands.length == 0 || !Label.isReference(operands[operands.length - 1])) {
+            return false;
+        }
+        if (mnemonic.equals("j") || mnemonic.equals("jal")) {
+            return operands.length == 1;
+        }
+        return BRANCHES.contains(mnemonic);
+    }
+
+    private static void flush(ByteBuffer chunk, WritableByteChannel channel) {
+        chunk.flip();
+        try {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
     }
 
-    private boolean isJumpLabeled(String[] operands) {
-        return operands.length == 1 && Label.isValidName(operands[0]);
+    private static String toBinaryString(int word) {
+        String bits = Integer.toBinaryString(word);
+        return "0".repeat(32 - bits.length()) + bits;
     }
 
 }
@@ -0,0 +1,78 @@
+package com.wars.engine.assembler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+// writes big-endian words in chunks and patches words already written at their position in the channel
+class ChannelSink implements WordSink {
+    private static final int CHUNK_BYTES = 1 << 16;
+    private final SeekableByteChannel channel;
+    private final long start;
+    private final ByteBuffer chunk;
+    private final ByteBuffer single;
+    private int chunkSlot;
+    private long count;
+
+    ChannelSink(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.start = channel.position();
+        this.chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        this.single = ByteBuffer.allocate(4);
+        this.chunkSlot = 0;
+        this.count = 0;
+    }
+
+    @Override
+    public void put(int word) {
+        if (!chunk.hasRemaining()) {
+            flush();
+        }
+        chunk.putInt(word);
+        count++;
+    }
+
+    @Override
+    public void patch(int slot, int word) {
+        if (slot >= chunkSlot) {
+            chunk.putInt(4 * (slot - chunkSlot), word);
+            return;
+        }
+
+        try {
+            long end = channel.position();
+            single.clear();
+            single.putInt(word).flip();
+            channel.position(start + 4L * slot);
+            while (single.hasRemaining()) {
+                channel.write(single);
+            }
+            channel.position(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void finish() {
+        flush();
+    }
+
+    long count() {
+        return count;
+    }
+
+    private void flush() {
+        chunkSlot += chunk.position() / 4;
+        chunk.flip();
+        try {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package com.wars.engine.assembler;
+
+import java.util.Arrays;
+
+// growable array of encoded instruction words
+class CodeBuffer implements WordSink {
+    private int[] words;
+    private int size;
+
+    CodeBuffer() {
+        this.words = new int[1024];
+        this.size = 0;
+    }
+
+    @Override
+    public void put(int word) {
+        if (size == words.length) {
+            words = Arrays.copyOf(words, size * 2);
+        }
+        words[size++] = word;
+    }
+
+    @Override
+    public void patch(int slot, int word) {
+        words[slot] = word;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(words, size);
+    }
+}
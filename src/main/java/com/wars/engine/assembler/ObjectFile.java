@@ -0,0 +1,329 @@
+package com.wars.engine.assembler;
+
+import com.wars.engine.exception.assembler.InvalidObjectFileException;
+import com.wars.engine.exception.assembler.label.UnresolvedLabelsException;
+import com.wars.engine.label.Fixup;
+import com.wars.engine.simulator.Configuration;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// assembled code together with the addresses it is loaded at, stored big-endian as
+//   magic "WOBJ", version, section count, entry address
+//   per section: load address, word count, symbol count, relocation count, name, the words,
+//                (name, byte offset) per symbol and (slot, kind, symbol) per relocation
+// a name is its UTF-8 length followed by the bytes padded to a word, so the words of a section stay aligned in the file
+public class ObjectFile {
+    private static final int MAGIC = 0x574F424A;
+    private static final int VERSION = 1;
+    private static final int RELOCATE_BRANCH = 0;
+    private static final int RELOCATE_JUMP = 1;
+
+    private final List<Section> sections;
+    private final int entry;
+
+    public ObjectFile(int entry) {
+        this.sections = new ArrayList<>();
+        this.entry = entry;
+    }
+
+    public void addSection(Section section) {
+        for (Section other : sections) {
+            if (other.name.equals(section.name)) {
+                throw new InvalidObjectFileException("duplicate section " + section.name);
+            }
+            if (other.overlaps(section)) {
+                throw new InvalidObjectFileException("section " + section.name + " overlaps section " + other.name);
+            }
+        }
+        sections.add(section);
+    }
+
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    public Section getSection(String name) {
+        for (Section section : sections) {
+            if (section.name.equals(name)) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    // returns the load address of a symbol defined in any section, or -1
+    public long getSymbolAddress(String symbol) {
+        for (Section section : sections) {
+            Integer offset = section.symbols.get(symbol);
+            if (offset != null) {
+                return Integer.toUnsignedLong(section.loadAddress + offset);
+            }
+        }
+        return -1;
+    }
+
+    // copies every section to its load address, fills in the relocations and sets the PC to the entry address
+    public void load(Configuration c) {
+        for (Section section : sections) {
+            c.loadBytes(section.loadAddress, section.code.duplicate());
+        }
+
+        for (Section section : sections) {
+            for (Relocation relocation : section.relocations) {
+                long target = getSymbolAddress(relocation.symbol);
+                if (target < 0) {
+                    throw new UnresolvedLabelsException(relocation.symbol + " in section " + section.name);
+                }
+                int address = section.loadAddress + 4 * relocation.slot;
+                Fixup fixup = new Fixup(relocation.slot, section.words.get(relocation.slot), address, relocation.jump);
+                c.setWord(address, fixup.resolve(target));
+            }
+        }
+
+        c.setPC(entry);
+    }
+
+    public void write(Path path) throws IOException {
+        int size = 16;
+        for (Section section : sections) {
+            size += section.encodedSize();
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(sections.size()).putInt(entry);
+        for (Section section : sections) {
+            section.writeTo(out);
+        }
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    // maps the file read-only, the words of every section are read from the mapping when they are loaded
+    public static ObjectFile read(Path path) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(in, path.toString());
+    }
+
+    // reads an object file from the position of in, source names it in error messages
+    public static ObjectFile read(ByteBuffer in, String source) {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new InvalidObjectFileException(source + " is not an object file");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new InvalidObjectFileException("unsupported version " + version);
+            }
+
+            int sectionCount = in.getInt();
+            ObjectFile file = new ObjectFile(in.getInt());
+            for (int i = 0; i < sectionCount; i++) {
+                file.addSection(Section.readFrom(in));
+            }
+            return file;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new InvalidObjectFileException(source + " is truncated or corrupt");
+        }
+    }
+
+    public static ObjectFile load(Path path, Configuration c) throws IOException {
+        ObjectFile file = read(path);
+        file.load(c);
+        return file;
+    }
+
+    private static int encodedSize(String name) {
+        return 4 + ((name.getBytes(StandardCharsets.UTF_8).length + 3) & ~3);
+    }
+
+    private static void writeName(ByteBuffer out, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+        for (int i = bytes.length; (i & 3) != 0; i++) {
+            out.put((byte) 0);
+        }
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        in.position(in.position() + (-bytes.length & 3));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final class Section {
+        private final String name;
+        private final int loadAddress;
+        // the words big-endian, a view of the mapping for a section that was read from a file
+        private final ByteBuffer code;
+        private final IntBuffer words;
+        private final Map<String, Integer> symbols;
+        private final List<Relocation> relocations;
+
+        // symbols map a label to its byte offset in the section
+        public Section(String name, int loadAddress, int[] words, Map<String, Integer> symbols,
+                       List<Relocation> relocations) {
+            this(name, loadAddress, toBytes(words), new LinkedHashMap<>(symbols), new ArrayList<>(relocations));
+        }
+
+        private Section(String name, int loadAddress, ByteBuffer code, Map<String, Integer> symbols,
+                        List<Relocation> relocations) {
+            if ((loadAddress & 3) != 0) {
+                throw new IllegalArgumentException("Section " + name + " is not word aligned");
+            }
+            for (Relocation relocation : relocations) {
+                if (relocation.slot < 0 || relocation.slot >= code.limit() / 4) {
+                    throw new IllegalArgumentException("Relocation outside of section " + name);
+                }
+            }
+            this.name = name;
+            this.loadAddress = loadAddress;
+            this.code = code;
+            this.words = code.asIntBuffer();
+            this.symbols = symbols;
+            this.relocations = relocations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLoadAddress() {
+            return loadAddress;
+        }
+
+        public int size() {
+            return words.limit();
+        }
+
+        public int[] getWords() {
+            int[] result = new int[words.limit()];
+            words.get(0, result);
+            return result;
+        }
+
+        public Map<String, Integer> getSymbols() {
+            return Collections.unmodifiableMap(symbols);
+        }
+
+        public List<Relocation> getRelocations() {
+            return Collections.unmodifiableList(relocations);
+        }
+
+        private boolean overlaps(Section other) {
+            long start = Integer.toUnsignedLong(loadAddress);
+            long otherStart = Integer.toUnsignedLong(other.loadAddress);
+            return start < otherStart + 4L * other.size() && otherStart < start + 4L * size();
+        }
+
+        private int encodedSize() {
+            int size = 16 + ObjectFile.encodedSize(name) + 4 * words.limit();
+            for (String symbol : symbols.keySet()) {
+                size += ObjectFile.encodedSize(symbol) + 4;
+            }
+            for (Relocation relocation : relocations) {
+                size += 8 + ObjectFile.encodedSize(relocation.symbol);
+            }
+            return size;
+        }
+
+        private void writeTo(ByteBuffer out) {
+            out.putInt(loadAddress).putInt(words.limit()).putInt(symbols.size()).putInt(relocations.size());
+            writeName(out, name);
+            out.put(code.duplicate());
+            for (Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+                writeName(out, symbol.getKey());
+                out.putInt(symbol.getValue());
+            }
+            for (Relocation relocation : relocations) {
+                out.putInt(relocation.slot).putInt(relocation.jump ? RELOCATE_JUMP : RELOCATE_BRANCH);
+                writeName(out, relocation.symbol);
+            }
+        }
+
+        private static Section readFrom(ByteBuffer in) {
+            int loadAddress = in.getInt();
+            int wordCount = in.getInt();
+            int symbolCount = in.getInt();
+            int relocationCount = in.getInt();
+            String name = readName(in);
+
+            // a view of the mapping, nothing is copied until the section is loaded
+            ByteBuffer code = in.slice(in.position(), 4 * wordCount);
+            in.position(in.position() + 4 * wordCount);
+
+            Map<String, Integer> symbols = new LinkedHashMap<>();
+            for (int i = 0; i < symbolCount; i++) {
+                symbols.put(readName(in), in.getInt());
+            }
+            List<Relocation> relocations = new ArrayList<>();
+            for (int i = 0; i < relocationCount; i++) {
+                int slot = in.getInt();
+                int kind = in.getInt();
+                if (kind != RELOCATE_BRANCH && kind != RELOCATE_JUMP) {
+                    throw new InvalidObjectFileException("unknown relocation kind " + kind);
+                }
+                relocations.add(new Relocation(slot, readName(in), kind == RELOCATE_JUMP));
+            }
+            return new Section(name, loadAddress, code, symbols, relocations);
+        }
+
+        private static ByteBuffer toBytes(int[] words) {
+            ByteBuffer code = ByteBuffer.allocate(4 * words.length);
+            code.asIntBuffer().put(words);
+            return code;
+        }
+    }
+
+    // a j/jal or branch word in a section whose offset field waits for a symbol of another section
+    public static final class Relocation {
+        private final int slot;
+        private final String symbol;
+        private final boolean jump;
+
+        public Relocation(int slot, String symbol, boolean jump) {
+            this.slot = slot;
+            this.symbol = symbol;
+            this.jump = jump;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public boolean isJump() {
+            return jump;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.wars.engine.assembler;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// for outputs that cannot be patched: holds the words from the oldest unresolved fixup on, passes settled words to out
+class OrderedSink implements WordSink {
+    private final IntConsumer out;
+    private int[] window;
+    private int base;
+    private int size;
+
+    OrderedSink(IntConsumer out) {
+        this.out = out;
+        this.window = new int[64];
+        this.base = 0;
+        this.size = 0;
+    }
+
+    @Override
+    public void put(int word) {
+        if (size == window.length) {
+            window = Arrays.copyOf(window, size * 2);
+        }
+        window[size++] = word;
+    }
+
+    @Override
+    public void patch(int slot, int word) {
+        window[slot - base] = word;
+    }
+
+    @Override
+    public void settle(int slot) {
+        int settled = slot - base;
+        if (settled == 0) {
+            return;
+        }
+
+        for (int i = 0; i < settled; i++) {
+            out.accept(window[i]);
+        }
+        System.arraycopy(window, settled, window, 0, size - settled);
+        size -= settled;
+        base = slot;
+    }
+
+    @Override
+    public void finish() {
+        settle(base + size);
+    }
+}
@@ -0,0 +1,16 @@
+package com.wars.engine.assembler;
+
+// receives the words of a program in order; words with a forward label reference are put
+// with an empty offset and patched once the label is defined
+interface WordSink {
+    void put(int word);
+
+    void patch(int slot, int word);
+
+    // no word before slot will be patched any more
+    default void settle(int slot) {
+    }
+
+    default void finish() {
+    }
+}
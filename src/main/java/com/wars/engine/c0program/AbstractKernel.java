@@ -59,7 +59,6 @@ public class AbstractKernel extends C0Program {
         int gammaAddress = 0;
         for (String instruction : instructions){
             if (instruction.equals("macro: save-user")) {
-                Initialize.gammaAddress = gammaAddress;
                 return gammaAddress;
             }
             gammaAddress += CodeGenerator.getInstance().instructionRealSize(instruction);
@@ -0,0 +1,242 @@
+package com.wars.engine.c0program;
+
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.SimulationOptions;
+import com.wars.engine.simulator.SimulationResult;
+import com.wars.engine.simulator.Simulator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// compiles, assembles and simulates independent C0 programs in parallel on a work-stealing pool;
+// the compiler keeps its tables and code generator per thread, so every program is compiled in isolation
+public class BatchRunner implements AutoCloseable {
+    private final ExecutorService pool;
+    private final int parallelism;
+
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchRunner(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.pool = Executors.newWorkStealingPool(parallelism);
+    }
+
+    // the results are in the order of the jobs, a job that fails does not stop the others;
+    // only a VirtualMachineError other than StackOverflowError ends the batch, rethrown as IllegalStateException
+    public BatchResult run(List<Job> jobs) {
+        long start = System.nanoTime();
+        List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            futures.add(pool.submit(() -> runJob(job)));
+        }
+
+        List<JobResult> results = new ArrayList<>(jobs.size());
+        try {
+            for (Future<JobResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch interrupted", e);
+        } catch (ExecutionException e) {
+            // runJob records its failures, anything else is a bug of the runner
+            throw new IllegalStateException(e.getCause());
+        }
+        return new BatchResult(results, parallelism, System.nanoTime() - start);
+    }
+
+    static JobResult runJob(Job job) {
+        long start = System.nanoTime();
+        long compileNanos = 0;
+        long assembleNanos = 0;
+        C0Program program = new C0Program();
+        try {
+            program.code = job.code;
+            program.mipsCode = program.mipsCode(job.code);
+            long compiled = System.nanoTime();
+            compileNanos = compiled - start;
+
+            program.byteCode = program.byteCode(program.mipsCode);
+            assembleNanos = System.nanoTime() - compiled;
+
+            Configuration c = new Configuration();
+            c.setWordArray(program.byteCode, 0);
+            job.setup.accept(c);
+            SimulationResult simulation = Simulator.run(c, job.options);
+            return new JobResult(job.name, program, simulation, compileNanos, assembleNanos, null);
+        } catch (Throwable e) {
+            // a program that overflows the compiler's stack or breaks an assertion fails alone,
+            // a virtual machine that ran out of memory can't run the other jobs either
+            if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) {
+                throw e;
+            }
+            return new JobResult(job.name, program, null, compileNanos, assembleNanos, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static final class Job {
+        private final String name;
+        private final String code;
+        private final SimulationOptions options;
+        private final Consumer<Configuration> setup;
+
+        public Job(String name, String code) {
+            this(name, code, SimulationOptions.defaults());
+        }
+
+        public Job(String name, String code, SimulationOptions options) {
+            this(name, code, options, c -> {
+            });
+        }
+
+        // setup prepares the loaded configuration before it runs, e.g. with the words a program reads
+        public Job(String name, String code, SimulationOptions options, Consumer<Configuration> setup) {
+            this.name = name;
+            this.code = code;
+            this.options = options;
+            this.setup = setup;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    public static final class JobResult {
+        private final String name;
+        private final C0Program program;
+        private final SimulationResult simulation;
+        private final long compileNanos;
+        private final long assembleNanos;
+        private final Throwable failure;
+
+        JobResult(String name, C0Program program, SimulationResult simulation, long compileNanos, long assembleNanos,
+                  Throwable failure) {
+            this.name = name;
+            this.program = program;
+            this.simulation = simulation;
+            this.compileNanos = compileNanos;
+            this.assembleNanos = assembleNanos;
+            this.failure = failure;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public C0Program getProgram() {
+            return program;
+        }
+
+        // null when the job failed
+        public SimulationResult getSimulation() {
+            return simulation;
+        }
+
+        public Configuration getConfiguration() {
+            return simulation == null ? null : simulation.getConfiguration();
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+
+        public Duration getCompileTime() {
+            return Duration.ofNanos(compileNanos);
+        }
+
+        public Duration getAssembleTime() {
+            return Duration.ofNanos(assembleNanos);
+        }
+
+        public Duration getSimulationTime() {
+            return simulation == null ? Duration.ZERO : simulation.getElapsed();
+        }
+
+        @Override
+        public String toString() {
+            return "JobResult{name = " + name + (failure == null ? ", " + simulation : ", failure = " + failure)
+                    + ", compile = " + getCompileTime() + ", assemble = " + getAssembleTime() + "}";
+        }
+    }
+
+    public static final class BatchResult {
+        private final List<JobResult> results;
+        private final int parallelism;
+        private final long elapsedNanos;
+
+        BatchResult(List<JobResult> results, int parallelism, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.parallelism = parallelism;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<JobResult> getResults() {
+            return results;
+        }
+
+        public List<JobResult> getFailures() {
+            return results.stream().filter(result -> !result.isSuccessful()).toList();
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        // wall-clock time of the whole batch
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        // the totals below add up the time every job spent in each stage, across all threads
+        public Duration getCompileTime() {
+            return results.stream().map(JobResult::getCompileTime).reduce(Duration.ZERO, Duration::plus);
+        }
+
+        public Duration getAssembleTime() {
+            return results.stream().map(JobResult::getAssembleTime).reduce(Duration.ZERO, Duration::plus);
+        }
+
+        public Duration getSimulationTime() {
+            return results.stream().map(JobResult::getSimulationTime).reduce(Duration.ZERO, Duration::plus);
+        }
+
+        public long getTotalSteps() {
+            return results.stream().filter(JobResult::isSuccessful).mapToLong(result -> result.simulation.getSteps()).sum();
+        }
+
+        @Override
+        public String toString() {
+            return "BatchResult{jobs = " + results.size() + ", failures = " + getFailures().size()
+                    + ", parallelism = " + parallelism + ", elapsed = " + getElapsed()
+                    + ", compile = " + getCompileTime() + ", assemble = " + getAssembleTime()
+                    + ", simulation = " + getSimulationTime() + ", steps = " + getTotalSteps() + "}";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.wars.engine.c0program;
+
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.assembler.ObjectFile;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.util.Initialize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// the boot loader ROM and the abstract kernel assembled into one object file, so a configuration
+// can be booted from it without compiling or assembling either program again
+public class BootImage {
+
+    // written into the classes by the build, see the bundle-boot-image execution of the pom
+    public static final String RESOURCE = "/com/wars/engine/c0program/BootImage";
+
+    public static final String ROM_SECTION = "rom";
+    public static final String KERNEL_SECTION = "kernel";
+
+    // the kernel is placed in [a : b] directly instead of being fetched from the disk by the ROM,
+    // so the image starts at the first kernel instruction
+    public static ObjectFile generateBootImage() {
+        BootLoader bootLoader = BootLoader.generateBootLoader();
+        AbstractKernel kernel = AbstractKernel.generateAbstractKernel();
+
+        ObjectFile image = new ObjectFile(Initialize.a);
+        image.addSection(new Assembler(bootLoader.getMipsCode(), 0).assembleSection(ROM_SECTION, Initialize.ROMSTART));
+        image.addSection(new Assembler(kernel.getMipsCode(), 0).assembleSection(KERNEL_SECTION, Initialize.a));
+        return image;
+    }
+
+    public static void writeBootImage(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        generateBootImage().write(path);
+    }
+
+    // loads the image bundled by the build; without it, e.g. when the classes were compiled by an IDE,
+    // both programs are compiled and assembled first
+    public static ObjectFile boot(Configuration c) throws IOException {
+        ObjectFile image;
+        try (InputStream in = BootImage.class.getResourceAsStream(RESOURCE)) {
+            image = in == null ? generateBootImage() : ObjectFile.read(ByteBuffer.wrap(in.readAllBytes()), RESOURCE);
+        }
+        image.load(c);
+        return image;
+    }
+
+    // Arguments: <output file>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: BootImage <output file>");
+        }
+        writeBootImage(Path.of(args[0]));
+    }
+}
@@ -2,7 +2,7 @@ package com.wars.engine.c0program;
 
 import com.wars.engine.util.CodeTranslation;
 import com.wars.engine.util.Initialize;
-import com.wars.compiler.util.Context;
+import com.wars.compiler.config.MemoryLayout;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -58,12 +58,9 @@ public class BootLoader extends C0Program {
     public String mipsCode(String code){
 
         String adjustedCode = toC0Grammar(code);
-        Context.SBASE = this.SBASE;
-        Context.HBASE = this.HBASE;
-        Context.SMAX = this.SMAX;
-        Context.HMAX = this.HMAX;
+        MemoryLayout layout = new MemoryLayout(this.SBASE, this.SMAX, this.HBASE, this.HMAX);
 
-        String mipsInstructions = CodeTranslation.C0Translation(adjustedCode);
+        String mipsInstructions = CodeTranslation.C0Translation(adjustedCode, layout);
         List<String> instructions = new ArrayList<>(Arrays.asList(mipsInstructions.split("\n")));
         int beforeJumpToGamma = 0;
         boolean main = false;
@@ -94,7 +91,7 @@ public class BootLoader extends C0Program {
 
         // Initialize gammaAddress
         AbstractKernel ab = AbstractKernel.generateAbstractKernel();
-        ab.findGammaAddress();
+        int gammaAddress = ab.findGammaAddress();
         System.out.println();
         
         int beforeJumpToKernelPC = 4 * Initialize.bootLoaderInit + 4 * beforeJumpToGamma;
@@ -104,14 +101,14 @@ public class BootLoader extends C0Program {
         instructions.add(0, "macro: ssave(1)");
         instructions.add(1, "movs2g 2 1");
         instructions.add(2, "andi 1 1 1");
-        instructions.add(3, "blez 1 " + (kernelFetchingSize + 2)); // additional instruction for jump to kernel;
+        instructions.add(3, "blez 1 _continue");
 
         instructions.add(4, "\n_bootloader:");
         instructions.add("\n_continue:");
         instructions.add("macro: srestore(1)");
 
         int beforeJumpToGammaPC = 4 * Initialize.bootLoaderInit + 4 * kernelFetchingSize + 8; // for srestore, and previous jump
-        int offsetGamma = this.KernelStart + 4 * Initialize.gammaAddress - 4 * beforeJumpToGammaPC;
+        int offsetGamma = this.KernelStart + 4 * gammaAddress - 4 * beforeJumpToGammaPC;
 
         instructions.add("j " + offsetGamma); 
 
@@ -1,6 +1,6 @@
 package com.wars.engine.c0program;
 
-import com.wars.compiler.util.Context;
+import com.wars.compiler.config.MemoryLayout;
 import com.wars.engine.util.CodeTranslation;
 import com.wars.engine.util.Log;
 
@@ -89,11 +89,8 @@ public class C0Program {
 
     public String mipsCode(String code) {
         String adjustedCode = toC0Grammar(code);
-        Context.SBASE = this.SBASE;
-        Context.HBASE = this.HBASE;
-        Context.SMAX = this.SMAX;
-        Context.HMAX = this.HMAX;
-        return CodeTranslation.C0Translation(adjustedCode);
+        MemoryLayout layout = new MemoryLayout(this.SBASE, this.SMAX, this.HBASE, this.HMAX);
+        return CodeTranslation.C0Translation(adjustedCode, layout);
     }
 
     public int[] byteCode(String mipsCode) {
@@ -0,0 +1,7 @@
+package com.wars.engine.exception.assembler;
+
+public class InvalidObjectFileException extends AssemblerException {
+    public InvalidObjectFileException(String message) {
+        super("Invalid object file: " + message);
+    }
+}
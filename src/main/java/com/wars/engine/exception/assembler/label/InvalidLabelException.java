@@ -0,0 +1,9 @@
+package com.wars.engine.exception.assembler.label;
+
+import com.wars.engine.exception.assembler.AssemblerException;
+
+public class InvalidLabelException extends AssemblerException {
+    public InvalidLabelException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.wars.engine.exception.simulator;
+
+public class InvalidSnapshotException extends SimulatorException {
+    public InvalidSnapshotException(String message) {
+        super("Invalid snapshot: " + message);
+    }
+}
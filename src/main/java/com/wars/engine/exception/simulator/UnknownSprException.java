@@ -0,0 +1,7 @@
+package com.wars.engine.exception.simulator;
+
+public class UnknownSprException extends SimulatorException {
+    public UnknownSprException(int index) {
+        super("Unknown special purpose register: " + index);
+    }
+}
@@ -101,7 +101,7 @@ class Initializer {
                                 throw new UnalignedMemoryAccessException(address);
                             }
 
-                            int value = c.getWord(address);
+                            int value = c.loadWord(address);
                             c.setRegister(rt, value);
                             c.setPC(c.getPC() + 4);
                         }
@@ -127,7 +127,7 @@ class Initializer {
                             }
 
                             int value = c.getRegister(rt);
-                            c.setWord(address, value);
+                            c.storeWord(address, value);
                             c.setPC(c.getPC() + 4);
                         }
                     };
@@ -711,7 +711,7 @@ class Initializer {
                 operands -> new RTypeInstruction(opcode, 0b00000, 0b00000, 0b00000, 0b00000, fun) {
                     @Override
                     public void execute(Configuration c) {
-                        c.halt();
+                        c.systemCall();
                     }
                 });
     }
@@ -724,8 +724,8 @@ class Initializer {
                 operands -> new RTypeInstruction(opcode, 0b10000, 0b00000, 0b00000, 0b00000, 0b011000) {
                     @Override
                     public void execute(Configuration c) {
-                        // PC = EPC (Exception Program Counter)
-                        // TODO
+                        // PC = EPC (Exception Program Counter), SR = ESR, MODE = EMODE
+                        c.returnFromException();
                     }
                 });
     }
@@ -740,8 +740,13 @@ class Initializer {
                     return new RTypeInstruction(opcode, 0b00100, rt, rd, 0b00000, 0b000000) {
                         @Override
                         public void execute(Configuration c) {
-                            // spr[rd] = gpr[rt]
-                            // TODO
+                            // spr[rd] = gpr[rt], system mode only
+                            if (c.isUserMode()) {
+                                c.illegalInstruction();
+                                return;
+                            }
+                            c.setSpr(rd, c.getRegister(rt));
+                            c.setPC(c.getPC() + 4);
                         }
                     };
                 });
@@ -757,8 +762,13 @@ class Initializer {
                     return new RTypeInstruction(opcode, 0b00000, rt, rd, 0b00000, 0b000000) {
                         @Override
                         public void execute(Configuration c) {
-                            // gpr[rt] = spr[rd]
-                            // TODO
+                            // gpr[rt] = spr[rd], system mode only
+                            if (c.isUserMode()) {
+                                c.illegalInstruction();
+                                return;
+                            }
+                            c.setRegister(rt, c.getSpr(rd));
+                            c.setPC(c.getPC() + 4);
                         }
                     };
                 });
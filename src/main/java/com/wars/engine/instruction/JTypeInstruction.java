@@ -1,49 +1,25 @@
 package com.wars.engine.instruction;
 
-import com.wars.engine.exception.assembler.AssemblerException;
-
 public class JTypeInstruction extends Instruction {
-    private final long address;
-    private int iindex = -1;
-    private boolean isResolved;
-
-    public JTypeInstruction(int opcode, long address) {
-        super(opcode);
-        isResolved = false;
-        this.address = address;
-    }
+    private final int iindex;
 
     public JTypeInstruction(int opcode, int iindex) {
         super(opcode);
         this.iindex = iindex;
-        isResolved = true;
-        address = -1;
     }
 
     @Override
     public int encode() {
-        if (!isResolved) {
-            throw new AssemblerException("Attempt to encode unresolved J type instruction");
-        }
         // opcode (6) | iindex (26)
         return (opcode << 26) | (iindex & 0x03FFFFFF);
     }
 
     public boolean isResolved() {
-        return isResolved;
-    }
-
-    public void resolve(long labelAddress) {
-        isResolved = true;
-        // TODO: check that the difference fits in 26 bits
-        this.iindex = (int) (labelAddress - address);
+        return true;
     }
 
     @Override
     public String toString() {
-        if (!isResolved) {
-            return "J-Type: unresolved";
-        }
         return "J-Type: iindex: " + iindex;
     }
 }
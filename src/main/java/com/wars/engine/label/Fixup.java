@@ -0,0 +1,43 @@
+package com.wars.engine.label;
+
+import com.wars.engine.exception.assembler.operand.SignedOperandOutOfBoundsException;
+
+// an emitted word whose offset field waits for a label: the 26-bit iindex of j/jal or the 16-bit word offset of a branch
+public class Fixup {
+    private final int slot;
+    private final int word;
+    private final long address;
+    private final boolean jump;
+
+    public Fixup(int slot, int word, long address, boolean jump) {
+        this.slot = slot;
+        this.word = word;
+        this.address = address;
+        this.jump = jump;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public boolean isJump() {
+        return jump;
+    }
+
+    // returns the word with the offset from its own address to labelAddress filled in
+    public int resolve(long labelAddress) {
+        long distance = labelAddress - address;
+        if (jump) {
+            if (distance < -(1 << 25) || distance >= (1 << 25)) {
+                throw new SignedOperandOutOfBoundsException(String.valueOf(distance), 26);
+            }
+            return word | ((int) distance & 0x03FFFFFF);
+        }
+
+        long offset = distance >> 2;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new SignedOperandOutOfBoundsException(String.valueOf(offset), 16);
+        }
+        return word | ((int) offset & 0xFFFF);
+    }
+}
@@ -3,59 +3,84 @@ package com.wars.engine.label;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.wars.engine.exception.assembler.label.InvalidLabelException;
 import com.wars.engine.exception.assembler.label.LabelConflictException;
-import com.wars.engine.instruction.JTypeInstruction;
 
 public class Label {
     private final String name;
     private long line;
     private long address;
-    private List<JTypeInstruction> instructions;
+    private List<Fixup> fixups;
     
     private Label(String name) {
+        if (!isValidName(name)) {
+            throw new InvalidLabelException("Invalid label name " + name);
+        }
         this.name = name;
-        assert isValidName(name);
     }
     
-    public Label(String name, JTypeInstruction instruction) {
+    public Label(String name, Fixup fixup) {
         this(name);
         this.address = -1;
         this.line = -1;
-        this.instructions = new ArrayList<>();
-        addInstruction(instruction);
+        this.fixups = new ArrayList<>();
+        addFixup(fixup);
     }
 
     public Label(String name, long address, long line) {
         this(name);
         this.address = address;
         this.line = line;
-        this.instructions = null;
+        this.fixups = null;
     }
     
     public boolean isDefined() {
-        return instructions == null;
+        return fixups == null;
     }
     
-    public void define(long currAddress, long line) {
+    // returns the fixups that waited for this label, they can be resolved now
+    public List<Fixup> define(long currAddress, long line) {
         address = currAddress;
         this.line = line;
-        
-        instructions.forEach(i -> i.resolve(address));
-        
-        instructions = null;
+
+        List<Fixup> resolved = fixups;
+        fixups = null;
+        return resolved;
     }
 
+    // labels are letters, optionally behind an underscore; the ones without it name the functions
+    // of compiled C0 programs and can be defined but not jumped to
     public static boolean isValidName(String labelName) {
-        return labelName.matches("^_([a-z]|[A-Z])+$");
+        int start = labelName.startsWith("_") ? 1 : 0;
+        if (labelName.length() <= start) {
+            return false;
+        }
+        for (int i = start; i < labelName.length(); i++) {
+            char c = labelName.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns true if the operand of a branch or jump is a label rather than an offset
+    public static boolean isReference(String operand) {
+        return operand.startsWith("_") && isValidName(operand);
     }
     
-    public void addInstruction(JTypeInstruction instruction) {
+    public void addFixup(Fixup fixup) {
         if (isDefined()) {
-            throw new LabelConflictException("Attempt to add an instruction to defined label");
+            throw new LabelConflictException("Attempt to add a fixup to defined label");
         }
-        instructions.add(instruction);
+        fixups.add(fixup);
     }
     
+    // the fixups still waiting for this label, empty once it is defined
+    public List<Fixup> getFixups() {
+        return isDefined() ? List.of() : fixups;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,13 +1,12 @@
 package com.wars.engine.label;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import com.wars.engine.exception.assembler.AssemblerException;
 import com.wars.engine.exception.assembler.label.LabelConflictException;
-import com.wars.engine.instruction.JTypeInstruction;
 
 public class LabelManager {
     private final Map<String, Label> labels = new HashMap<>();
@@ -17,34 +16,33 @@ public class LabelManager {
         currAddress = startAddress;
     }
 
-    public void define(String label, long line) {
+    // defines the label at the current address and returns the fixups that were waiting for it
+    public List<Fixup> define(String label, long line) {
         Label l = labels.get(label);
         if (l == null) {
             l = new Label(label, currAddress, line);
             labels.put(label, l);
-            return;
+            return List.of();
         }
         if (l.isDefined()) {
             throw new LabelConflictException("Double definition of " + label
                     + " label. First time seen at line " + l.getLine());
         }
-        l.define(currAddress, line);
+        return l.define(currAddress, line);
     }
 
-    public void resolve(String label, JTypeInstruction instruction) {
-        if (instruction.isResolved()) {
-            throw new AssemblerException("Attempt to resolve resolved instruction");
-        }
-
+    // returns the address of a defined label, or -1 after recording the fixup until the label is defined
+    public long resolve(String label, Fixup fixup) {
         Label l = labels.get(label);
         if (l == null) {
-            l = new Label(label, instruction);
+            l = new Label(label, fixup);
             labels.put(label, l);
         } else if (l.isDefined()) {
-            instruction.resolve(l.getAddress());
+            return l.getAddress();
         } else {
-            l.addInstruction(instruction);
+            l.addFixup(fixup);
         }
+        return -1;
     }
     
     public List<Label> getUndefined() {
@@ -56,6 +54,16 @@ public class LabelManager {
         return result;
     }
     
+    public List<Label> getDefined() {
+        List<Label> result = new ArrayList<>();
+        for (Label l : labels.values()) {
+            if (l.isDefined())
+                result.add(l);
+        }
+        result.sort(Comparator.comparingLong(Label::getAddress));
+        return result;
+    }
+
     public void increaseAddress(int num) {
         currAddress += num;
     }
@@ -4,18 +4,19 @@ import com.wars.engine.exception.assembler.macro.InvalidMacroDefinitionException
 import com.wars.engine.exception.assembler.macro.InvalidMacroTypeException;
 import com.wars.engine.exception.assembler.macro.MacroReservedRegisterException;
 import com.wars.engine.exception.assembler.macro.MacroStoreFormatException;
+import com.wars.engine.operand.LineTokenizer;
 import com.wars.engine.operand.OperandParser;
 import com.wars.engine.instruction.Instruction;
 import com.wars.engine.instruction.InstructionRegistry;
 
 import java.util.List;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 public class Macro {
 
     public static List<Instruction> evaluate(String line){
 
-        String[] split = line.split("[\\s(),]+");
+        String[] split = LineTokenizer.splitOperands(line);
         
         if (split.length < 2) {
             throw new InvalidMacroDefinitionException(line);
@@ -151,7 +152,7 @@ public class Macro {
     }
 
     private static List<Instruction> zero(int i, int j){
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
         
         instructions.add(InstructionRegistry.createForEncoder("sw",   new int[]{0, i, 0}));
         instructions.add(InstructionRegistry.createForEncoder("addi", new int[]{i, i, 4}));
@@ -163,7 +164,7 @@ public class Macro {
 
     private static List<Instruction> mul(int k, int i, int j){
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         instructions.add(InstructionRegistry.createForEncoder("addi", new int[]{24, 0, 1}));
         instructions.add(InstructionRegistry.createForEncoder("addi", new int[]{26, i, 0}));
@@ -183,7 +184,7 @@ public class Macro {
 
     private static List<Instruction> divu(int k, int i, int j){
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         instructions.add(InstructionRegistry.createForEncoder("add",  new int[]{k, 0, 0}));
         instructions.add(InstructionRegistry.createForEncoder("sltu", new int[]{23, i, j}));
@@ -227,7 +228,7 @@ public class Macro {
 
     private static List<Instruction> divt(int k, int i, int j){
 
-        List<Instruction> instructions = new LinkedList<>(store(21, "1" + "0".repeat(31)));
+        List<Instruction> instructions = new ArrayList<>(store(21, "1" + "0".repeat(31)));
 
         instructions.add(InstructionRegistry.createForEncoder("bne",  new int[]{21, i, 5}));
         instructions.add(InstructionRegistry.createForEncoder("nor",  new int[]{21, 0, 0}));
@@ -254,7 +255,7 @@ public class Macro {
 
         private static List<Instruction> signAndAbs(int j, int k, int i){
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         instructions.add(InstructionRegistry.createForEncoder("slti", new int[]{j, i, 0}));
         instructions.add(InstructionRegistry.createForEncoder("blez", new int[]{j, 5}));
@@ -269,7 +270,7 @@ public class Macro {
 
     private static List<Instruction> ssave(int r, int k){
         
-        List<Instruction> instructions = new LinkedList<>(); 
+        List<Instruction> instructions = new ArrayList<>(); 
 
         instructions.add(InstructionRegistry.createForEncoder("sw", new int[]{r, 0, 4 * k + 8 + 4 * r}));
 
@@ -278,7 +279,7 @@ public class Macro {
 
     private static List<Instruction> srestore(int r, int k){
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         if (r == 0){
             throw new MacroReservedRegisterException("r0");
@@ -291,7 +292,7 @@ public class Macro {
 
     private static List<Instruction> restoreUser(int k){
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
         instructions.add(InstructionRegistry.createForEncoder("sw", new int[]{1, 0, 4 * k + 4}));
         instructions.add(InstructionRegistry.createForEncoder("lw", new int[]{1, 0, 4 * k}));
         
@@ -318,7 +319,7 @@ public class Macro {
 
     private static List<Instruction> saveUser(int k){
 
-        List<Instruction> instructions = new LinkedList<>(); 
+        List<Instruction> instructions = new ArrayList<>(); 
 
         instructions.add(InstructionRegistry.createForEncoder("lw", new int[]{1, 0, 4 * k + 4}));
         for(int i = 2; i <= 31; i++){
@@ -346,7 +347,7 @@ public class Macro {
     private static List<Instruction> storeInt(int reg, String val){
         int intVal = Integer.parseInt(val);
         
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         instructions.add(InstructionRegistry.createForEncoder("lui", new int[]{reg, intVal >> 16}));
         instructions.add(InstructionRegistry.createForEncoder("ori", new int[]{reg, reg, intVal & 0xFFFF}));
@@ -386,7 +387,7 @@ public class Macro {
         if (val.length() != 1){
             throw new MacroStoreFormatException("Invalid char value: " + val);
         }
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
         instructions.add(InstructionRegistry.createForEncoder("lui", new int[]{reg, (int) val.charAt(0) >> 16}));
         instructions.add(InstructionRegistry.createForEncoder("ori", new int[]{reg, reg, (int) val.charAt(0) & 0xFFFF}));
 
@@ -413,7 +414,7 @@ public class Macro {
             }
         }
 
-        List<Instruction> instructions = new LinkedList<>();
+        List<Instruction> instructions = new ArrayList<>();
 
         instructions.add(InstructionRegistry.createForEncoder("lui", new int[]{reg, TwosComplement(s.substring(0, 16))}));
         instructions.add(InstructionRegistry.createForEncoder("ori", new int[]{reg, reg, TwosComplement(s.substring(16, 32))}));
@@ -0,0 +1,48 @@
+package com.wars.engine.operand;
+
+import java.util.Arrays;
+
+// splits assembly lines without regular expressions; empty tokens are dropped
+public class LineTokenizer {
+    private LineTokenizer() {
+    }
+
+    // tokens separated by whitespace
+    public static String[] split(String line) {
+        return split(line, false);
+    }
+
+    // tokens separated by whitespace, parentheses and commas, as in "macro: mul(1, 2, 3)"
+    public static String[] splitOperands(String line) {
+        return split(line, true);
+    }
+
+    private static String[] split(String line, boolean punctuation) {
+        String[] tokens = new String[8];
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && isSeparator(line.charAt(i), punctuation)) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(line.charAt(i), punctuation)) {
+                i++;
+            }
+            if (i > start) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = line.substring(start, i);
+            }
+        }
+
+        return Arrays.copyOf(tokens, count);
+    }
+
+    private static boolean isSeparator(char c, boolean punctuation) {
+        return Character.isWhitespace(c) || punctuation && (c == '(' || c == ')' || c == ',');
+    }
+}
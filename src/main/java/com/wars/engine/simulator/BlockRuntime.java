@@ -0,0 +1,66 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.exception.simulator.UnalignedMemoryAccessException;
+
+// helpers called from translated blocks, kept branch-free on the bytecode side
+class BlockRuntime {
+    static int loadWord(Configuration c, int address) {
+        if (address % 4 != 0) {
+            throw new UnalignedMemoryAccessException(address);
+        }
+        return c.loadWord(address);
+    }
+
+    static void storeWord(Configuration c, int address, int value) {
+        if (address % 4 != 0) {
+            throw new UnalignedMemoryAccessException(address);
+        }
+
+        boolean translated = c.getTranslatedBlocks().isTranslated(address);
+        c.storeWord(address, value);
+        if (translated) {
+            throw CodeModifiedException.INSTANCE;
+        }
+    }
+
+    static int slt(int a, int b) {
+        return a < b ? 1 : 0;
+    }
+
+    static int sltu(int a, int b) {
+        return Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+    }
+
+    static long beq(int a, int b, long taken, long fallthrough) {
+        return a == b ? taken : fallthrough;
+    }
+
+    static long bne(int a, int b, long taken, long fallthrough) {
+        return a != b ? taken : fallthrough;
+    }
+
+    static long blez(int a, long taken, long fallthrough) {
+        return a <= 0 ? taken : fallthrough;
+    }
+
+    static long bgtz(int a, long taken, long fallthrough) {
+        return a > 0 ? taken : fallthrough;
+    }
+
+    static long bltz(int a, long taken, long fallthrough) {
+        return a < 0 ? taken : fallthrough;
+    }
+
+    static long bgez(int a, long taken, long fallthrough) {
+        return a >= 0 ? taken : fallthrough;
+    }
+
+    // thrown after a store into a translated page, the rest of the block may be stale
+    static final class CodeModifiedException extends RuntimeException {
+        static final CodeModifiedException INSTANCE = new CodeModifiedException();
+
+        private CodeModifiedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.wars.engine.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.wars.engine.simulator.SwitchInterpreter.*;
+
+// compiles a basic block into a hidden class whose run method keeps the guest registers in JVM locals
+class BlockTranslator {
+    static final int MAX_BLOCK_LENGTH = 64;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String BLOCK_CLASS = "com/wars/engine/simulator/TranslatedBlock";
+    private static final String SUPER_CLASS = "com/wars/engine/simulator/CompiledBlock";
+    private static final String RUNTIME_CLASS = "com/wars/engine/simulator/BlockRuntime";
+    private static final String CONFIGURATION_CLASS = "com/wars/engine/simulator/Configuration";
+    private static final String RUN_DESCRIPTOR = "([IL" + CONFIGURATION_CLASS + ";)J";
+
+    // locals: this, gpr, configuration, then one int per guest register
+    private static final int REGISTER_BASE = 3;
+    private static final int MAX_STACK = 8;
+    private static final int MAX_LOCALS = REGISTER_BASE + 32;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int IASTORE = 0x4f;
+    private static final int POP = 0x57;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IUSHR = 0x7c;
+    private static final int IAND = 0x7e;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int I2L = 0x85;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    // registers read before the block assigns them are loaded from gpr on entry
+    private final boolean[] read = new boolean[32];
+    private final boolean[] assigned = new boolean[32];
+    private final boolean[] dirty = new boolean[32];
+
+    // returns null when the first instruction at PC cannot be translated
+    static CompiledBlock translate(Configuration c, int PC) {
+        int length = 0;
+        boolean terminated = false;
+        int[] words = new int[MAX_BLOCK_LENGTH];
+
+        // blocks never cross a page, so invalidating one page drops every block that read it
+        while (length < MAX_BLOCK_LENGTH && !terminated) {
+            int address = PC + 4 * length;
+            if (length > 0 && (address & Configuration.PAGE_MASK) == 0) {
+                break;
+            }
+
+            int word = c.fetchWord(address);
+            if (!isSupported(word)) {
+                break;
+            }
+            // a block never runs into a fused macro, its first word is left to the interpreter
+            if (length > 0 && FusedMacro.startsAt(c, address, word)) {
+                break;
+            }
+            words[length++] = word;
+            terminated = isTerminator(word);
+        }
+
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] classFile = new BlockTranslator().emit(words, length, PC, terminated);
+        CompiledBlock block = define(classFile);
+        block.startPC = PC;
+        block.length = length;
+        return block;
+    }
+
+    private static CompiledBlock define(byte[] classFile) {
+        try {
+            MethodHandles.Lookup blockLookup = LOOKUP.defineHiddenClass(classFile, true);
+            return (CompiledBlock) blockLookup.findConstructor(blockLookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define translated block", e);
+        }
+    }
+
+    private static boolean isSupported(int word) {
+        return switch (dispatchKey(word)) {
+            case LW, SW, ADDI, ADDIU, SLTI, SLTIU, ANDI, ORI, XORI, LUI,
+                    BEQ, BNE, BLEZ, BGTZ, J, JAL,
+                    SRL, ADD, ADDU, SUB, SUBU, AND, OR, XOR, NOR, SLT, SLTU, JR, JALR, SYSC -> true;
+            case REGIMM -> ((word >>> 16) & 31) <= 1;
+            default -> false;
+        };
+    }
+
+    private static boolean isTerminator(int word) {
+        return switch (dispatchKey(word)) {
+            case REGIMM, BEQ, BNE, BLEZ, BGTZ, J, JAL, JR, JALR, SYSC -> true;
+            default -> false;
+        };
+    }
+
+    private byte[] emit(int[] words, int length, int startPC, boolean terminated) {
+        for (int i = 0; i < length; i++) {
+            emitInstruction(words[i], i, startPC + 4L * i);
+        }
+
+        if (!terminated) {
+            flush();
+            pushLong(startPC + 4L * length);
+            op(LRETURN);
+        }
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        for (int r = 1; r < 32; r++) {
+            if (read[r]) {
+                code.write(ALOAD_1);
+                pushInt(code, r);
+                code.write(IALOAD);
+                code.write(ISTORE);
+                code.write(REGISTER_BASE + r);
+            }
+        }
+        code.writeBytes(body.toByteArray());
+
+        return classFile(code.toByteArray());
+    }
+
+    private void emitInstruction(int word, int index, long pc) {
+        int rs = (word >>> 21) & 31;
+        int rt = (word >>> 16) & 31;
+        int rd = (word >>> 11) & 31;
+        int imm = (word << 16) >> 16;
+
+        switch (dispatchKey(word)) {
+            case LW -> {
+                beginMemoryAccess(index);
+                op(ALOAD_2);
+                address(rs, imm);
+                invokeRuntime("loadWord", "(L" + CONFIGURATION_CLASS + ";I)I");
+                store(rt);
+            }
+            case SW -> {
+                beginMemoryAccess(index);
+                op(ALOAD_2);
+                address(rs, imm);
+                load(rt);
+                invokeRuntime("storeWord", "(L" + CONFIGURATION_CLASS + ";II)V");
+            }
+            case ADDI, ADDIU -> immediateBinary(rt, rs, imm, IADD);
+            case SLTI -> {
+                load(rs);
+                pushInt(imm);
+                invokeRuntime("slt", "(II)I");
+                store(rt);
+            }
+            case SLTIU -> {
+                load(rs);
+                pushInt(imm & 0xFFFF);
+                invokeRuntime("sltu", "(II)I");
+                store(rt);
+            }
+            // andi and xori use the sign-extended immediate, as in the reference
+            case ANDI -> immediateBinary(rt, rs, imm, IAND);
+            case ORI -> immediateBinary(rt, rs, imm & 0xFFFF, IOR);
+            case XORI -> immediateBinary(rt, rs, imm, IXOR);
+            case LUI -> {
+                pushInt(imm << 16);
+                store(rt);
+            }
+            case REGIMM -> branch(rt == 0 ? "bltz" : "bgez", rs, -1, pc, imm);
+            case BEQ -> branch("beq", rs, rt, pc, imm);
+            case BNE -> branch("bne", rs, rt, pc, imm);
+            case BLEZ -> branch("blez", rs, -1, pc, imm);
+            case BGTZ -> branch("bgtz", rs, -1, pc, imm);
+            case J -> exit(pc + ((word << 6) >> 6));
+            case JAL -> {
+                pushInt((int) (pc + 4));
+                store(31);
+                exit(pc + ((word << 6) >> 6));
+            }
+            case SRL -> {
+                load(rt);
+                pushInt((word >>> 6) & 31);
+                op(IUSHR);
+                store(rd);
+            }
+            case ADD, ADDU -> registerBinary(rd, rs, rt, IADD);
+            case SUB, SUBU -> registerBinary(rd, rs, rt, ISUB);
+            case AND -> registerBinary(rd, rs, rt, IAND);
+            case OR -> registerBinary(rd, rs, rt, IOR);
+            case XOR -> registerBinary(rd, rs, rt, IXOR);
+            case NOR -> {
+                load(rs);
+                load(rt);
+                op(IOR);
+                pushInt(-1);
+                op(IXOR);
+                store(rd);
+            }
+            case SLT -> {
+                load(rs);
+                load(rt);
+                invokeRuntime("slt", "(II)I");
+                store(rd);
+            }
+            case SLTU -> {
+                load(rs);
+                load(rt);
+                invokeRuntime("sltu", "(II)I");
+                store(rd);
+            }
+            case JR -> {
+                flush();
+                load(rs);
+                op(I2L);
+                op(LRETURN);
+            }
+            case JALR -> {
+                // the link is written before rs is read, as in the reference
+                pushInt((int) (pc + 4));
+                store(rd);
+                flush();
+                load(rs);
+                op(I2L);
+                op(LRETURN);
+            }
+            case SYSC -> {
+                // blocks only run in system mode, where sysc ends the program
+                op(ALOAD_2);
+                invoke(INVOKEVIRTUAL, CONFIGURATION_CLASS, "halt", "()V");
+                exit(pc);
+            }
+            default -> throw new IllegalStateException("Untranslatable instruction word: " + word);
+        }
+    }
+
+    // memory accesses may throw, so the guest state must be exact up to this instruction
+    private void beginMemoryAccess(int index) {
+        flush();
+        op(ALOAD_0);
+        pushInt(index);
+        op(PUTFIELD);
+        u2(pool.member(9, SUPER_CLASS, "executed", "I"));
+    }
+
+    private void branch(String condition, int rs, int rt, long pc, int imm) {
+        load(rs);
+        if (rt >= 0) {
+            load(rt);
+        }
+        pushLong(pc + (imm << 2));
+        pushLong(pc + 4);
+        invokeRuntime(condition, rt >= 0 ? "(IIJJ)J" : "(IJJ)J");
+        flush();
+        op(LRETURN);
+    }
+
+    private void exit(long nextPC) {
+        flush();
+        pushLong(nextPC);
+        op(LRETURN);
+    }
+
+    private void immediateBinary(int dst, int src, int constant, int opcode) {
+        load(src);
+        pushInt(constant);
+        op(opcode);
+        store(dst);
+    }
+
+    private void registerBinary(int dst, int left, int right, int opcode) {
+        load(left);
+        load(right);
+        op(opcode);
+        store(dst);
+    }
+
+    private void load(int register) {
+        if (register == 0) {
+            op(ICONST_0);
+            return;
+        }
+        if (!assigned[register]) {
+            read[register] = true;
+        }
+        op(ILOAD);
+        op(REGISTER_BASE + register);
+    }
+
+    private void store(int register) {
+        if (register == 0) {
+            op(POP);
+            return;
+        }
+        assigned[register] = true;
+        dirty[register] = true;
+        op(ISTORE);
+        op(REGISTER_BASE + register);
+    }
+
+    private void flush() {
+        for (int r = 1; r < 32; r++) {
+            if (dirty[r]) {
+                op(ALOAD_1);
+                pushInt(r);
+                op(ILOAD);
+                op(REGISTER_BASE + r);
+                op(IASTORE);
+                dirty[r] = false;
+            }
+        }
+    }
+
+    private void address(int base, int offset) {
+        load(base);
+        pushInt(offset);
+        op(IADD);
+    }
+
+    private void invokeRuntime(String name, String descriptor) {
+        invoke(INVOKESTATIC, RUNTIME_CLASS, name, descriptor);
+    }
+
+    private void invoke(int opcode, String owner, String name, String descriptor) {
+        op(opcode);
+        u2(pool.member(10, owner, name, descriptor));
+    }
+
+    private void pushInt(int value) {
+        pushInt(body, value);
+    }
+
+    private void pushInt(ByteArrayOutputStream out, int value) {
+        if (value >= -1 && value <= 5) {
+            out.write(ICONST_0 + value);
+        } else if (value == (byte) value) {
+            out.write(BIPUSH);
+            out.write(value);
+        } else if (value == (short) value) {
+            out.write(SIPUSH);
+            out.write(value >>> 8);
+            out.write(value);
+        } else {
+            out.write(LDC_W);
+            int index = pool.integer(value);
+            out.write(index >>> 8);
+            out.write(index);
+        }
+    }
+
+    private void pushLong(long value) {
+        op(LDC2_W);
+        u2(pool.longConstant(value));
+    }
+
+    private void op(int opcode) {
+        body.write(opcode);
+    }
+
+    private void u2(int value) {
+        body.write(value >>> 8);
+        body.write(value);
+    }
+
+    private byte[] classFile(byte[] runCode) {
+        byte[] initCode = new byte[5];
+        int superConstructor = pool.member(10, SUPER_CLASS, "<init>", "()V");
+        initCode[0] = (byte) ALOAD_0;
+        initCode[1] = (byte) INVOKESPECIAL;
+        initCode[2] = (byte) (superConstructor >>> 8);
+        initCode[3] = (byte) superConstructor;
+        initCode[4] = (byte) RETURN;
+
+        int thisClass = pool.classEntry(BLOCK_CLASS);
+        int superClass = pool.classEntry(SUPER_CLASS);
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int runName = pool.utf8("run");
+        int runDescriptor = pool.utf8(RUN_DESCRIPTOR);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            // version 52 needs no StackMapTable for straight-line code
+            out.writeShort(52);
+            pool.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(2);
+            writeMethod(out, initName, initDescriptor, codeName, 1, 1, initCode);
+            writeMethod(out, runName, runDescriptor, codeName, MAX_STACK, MAX_LOCALS, runCode);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    private static class ConstantPool {
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(entries);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> out.writeUTF(value));
+        }
+
+        int integer(int value) {
+            return entry("I" + value, 3, () -> out.writeInt(value));
+        }
+
+        int longConstant(long value) {
+            Integer index = indices.get("J" + value);
+            if (index != null) {
+                return index;
+            }
+            int created = entry("J" + value, 5, () -> out.writeLong(value));
+            // long constants take two pool slots
+            count++;
+            return created;
+        }
+
+        int classEntry(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, 7, () -> out.writeShort(nameIndex));
+        }
+
+        // tag 9 for fields, 10 for methods
+        int member(int tag, String owner, String name, String descriptor) {
+            int ownerIndex = classEntry(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + ":" + descriptor, 12, () -> {
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry(tag + owner + "." + name + ":" + descriptor, tag, () -> {
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        void writeTo(DataOutputStream classOut) throws IOException {
+            out.flush();
+            classOut.writeShort(count);
+            classOut.write(entries.toByteArray());
+        }
+
+        private int entry(String key, int tag, EntryWriter writer) {
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                out.writeByte(tag);
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        private interface EntryWriter {
+            void write() throws IOException;
+        }
+    }
+}
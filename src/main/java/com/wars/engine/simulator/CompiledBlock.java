@@ -0,0 +1,12 @@
+package com.wars.engine.simulator;
+
+// superclass of the hidden classes generated by BlockTranslator
+abstract class CompiledBlock {
+    int startPC;
+    int length;
+    // number of instructions completed before the last memory access, read when run throws
+    int executed;
+
+    // executes the whole block on gpr and returns the next PC
+    abstract long run(int[] gpr, Configuration c);
+}
@@ -1,22 +1,54 @@
 package com.wars.engine.simulator;
 
+import com.wars.engine.exception.simulator.UnknownSprException;
+import com.wars.engine.util.Initialize;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 
 public class Configuration {
-    private static final int PAGE_SHIFT = 12; // 2^12 = 4096 bytes per page
-    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
-    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int PAGE_SHIFT = 12; // 2^12 = 4096 bytes per page
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    // interrupt levels besides the page faults of Mmu, bit il of ECA is set when level il is taken
+    public static final int RESET = 0;
+    public static final int ILLEGAL = 1;
+    public static final int SYSCALL = 21;
     private final int[] gpr;
-    private final Map<Integer, byte[]> memoryPaged;
+    private final int[] spr;
+    private final Memory memory;
+    private final Mmu mmu;
+    private final DecodedInstructionCache decodedInstructions;
+    private TranslatedBlockCache translatedBlocks;
     private long pc;
     private boolean isRunning;
+    // mirrors spr[MODE], read on every load, store and fetch
+    private boolean userMode;
+    // interrupts requested from outside of the running program, taken before the next instruction
+    private int pendingCauses;
+    // set while a pending cause is unmasked by SR, the only thing the engines check on every step
+    private boolean interruptPending;
 
     public Configuration() {
+        this(MemoryMode.PAGED);
+    }
+
+    public Configuration(MemoryMode memoryMode) {
+        this(memoryMode, Mmu.DEFAULT_TLB_SIZE);
+    }
+
+    public Configuration(MemoryMode memoryMode, int tlbSize) {
         this.pc = 0L;
         this.gpr = new int[32];
-        this.memoryPaged = new HashMap<>();
+        this.spr = new int[Spr.COUNT];
+        // the kernel leaves its boot code for the first user program with eret
+        this.spr[Spr.EMODE] = Spr.USER_MODE;
+        this.memory = switch (memoryMode) {
+            case PAGED -> new PagedMemory();
+            case FLAT -> new FlatMemory();
+        };
+        this.mmu = new Mmu(tlbSize);
+        this.decodedInstructions = new DecodedInstructionCache();
         this.isRunning = true;
     }
 
@@ -38,53 +70,268 @@ public class Configuration {
         }
     }
 
-    public byte getByte(int address) {
-        int pageNumber = address >>> PAGE_SHIFT;
-        int offset = address & PAGE_MASK;
+    public int getSpr(int index) {
+        checkSpr(index);
+        return spr[index];
+    }
 
-        if (!memoryPaged.containsKey(pageNumber)) {
-            return 0;
+    public void setSpr(int index, int value) {
+        checkSpr(index);
+        spr[index] = value;
+        if (index == Spr.MODE) {
+            userMode = value == Spr.USER_MODE;
+        } else if (index == Spr.PTO || index == Spr.PTL) {
+            mmu.flush();
+        } else if (index == Spr.SR) {
+            updateInterruptPending();
         }
+    }
 
-        byte[] page = memoryPaged.get(pageNumber);
-        return page[offset];
+    private static void checkSpr(int index) {
+        if (index < 0 || index >= Spr.COUNT) {
+            throw new UnknownSprException(index);
+        }
     }
 
-    public void setByte(int address, byte value) {
-        int pageNumber = address >>> PAGE_SHIFT;
-        int offset = address & PAGE_MASK;
+    public boolean isUserMode() {
+        return userMode;
+    }
+
+    public Mmu getMmu() {
+        return mmu;
+    }
+
+    int[] registers() {
+        return gpr;
+    }
 
-        byte[] page = getPage(pageNumber);
-        page[offset] = value;
+    void loadRegisters(int[] dst) {
+        System.arraycopy(gpr, 0, dst, 0, gpr.length);
     }
 
-    private byte[] getPage(int pageNumber) {
-        return memoryPaged.computeIfAbsent(pageNumber, k -> new byte[PAGE_SIZE]);
+    void storeRegisters(int[] src) {
+        System.arraycopy(src, 1, gpr, 1, gpr.length - 1);
+    }
+
+    public byte getByte(int address) {
+        return memory.getByte(address);
+    }
+
+    public void setByte(int address, byte value) {
+        memory.setByte(address, value);
+        mmu.invalidate(address);
+        decodedInstructions.invalidate(address);
+        if (translatedBlocks != null) {
+            translatedBlocks.invalidate(address);
+        }
     }
 
     public void setWordArray(int[] arr, int startIndex) {
-        for (int i = 0; i < arr.length; i++) {
-            setWord(startIndex + i * 4, arr[i]);
+        loadWords(startIndex, arr, 0, arr.length);
+    }
+
+    // stores src[off], ..., src[off + len - 1] as consecutive words from address
+    public void loadWords(int address, int[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        memory.loadWords(address, src, off, len);
+        invalidate(address, 4L * len);
+    }
+
+    // stores the remaining bytes of src from address and advances src to its limit
+    public void loadBytes(int address, ByteBuffer src) {
+        int len = src.remaining();
+        memory.loadBytes(address, src);
+        invalidate(address, len);
+    }
+
+    // fills the remaining bytes of dst from address and advances dst to its limit
+    public void copyTo(int address, ByteBuffer dst) {
+        memory.copyTo(address, dst);
+    }
+
+    // copies len bytes from src to dst, overlapping ranges are copied as if through a temporary buffer
+    public void memcpy(int dst, int src, int len) {
+        if (len < 0) {
+            throw new IllegalArgumentException("Negative length " + len);
         }
+        memory.memcpy(dst, src, len);
+        invalidate(dst, len);
     }
 
     public int getWord(int address) {
-        return ((getByte(address) & 0xFF) << 24) |
-                ((getByte(address + 1) & 0xFF) << 16) |
-                ((getByte(address + 2) & 0xFF) << 8) |
-                (getByte(address + 3) & 0xFF);
+        return memory.getWord(address);
     }
 
     public void setWord(int address, int value) {
-        setByte(address, (byte) ((value >>> 24) & 0xFF));
-        setByte(address + 1, (byte) ((value >>> 16) & 0xFF));
-        setByte(address + 2, (byte) ((value >>> 8) & 0xFF));
-        setByte(address + 3, (byte) (value & 0xFF));
+        memory.setWord(address, value);
+        mmu.invalidate(address);
+        mmu.invalidate(address + 3);
+        decodedInstructions.invalidate(address);
+        if ((address & 3) != 0) {
+            decodedInstructions.invalidate(address + 3);
+        }
+        if (translatedBlocks != null) {
+            translatedBlocks.invalidate(address);
+            translatedBlocks.invalidate(address + 3);
+        }
+    }
+
+    private void invalidate(int address, long len) {
+        if (len <= 0) {
+            return;
+        }
+        decodedInstructions.invalidate(address, len);
+        if (translatedBlocks != null) {
+            translatedBlocks.invalidate(address, len);
+        }
+        mmu.invalidate(address, len);
+    }
+
+    // lw and sw: the address is virtual in user mode, a fault throws Mmu.PageFault and leaves everything unchanged
+    public int loadWord(int address) {
+        return getAlignedWord(userMode ? mmu.translate(this, address, false) : address);
+    }
+
+    public void storeWord(int address, int value) {
+        setAlignedWord(userMode ? mmu.translate(this, address, false) : address, value);
+    }
+
+    // the physical address of the instruction at PC
+    int translateFetch(int PC) {
+        return userMode ? mmu.translate(this, PC, true) : PC;
+    }
+
+    // repeats the faulting instruction once the kernel has mapped the page: EPC is the current PC
+    void enterPageFault() {
+        int level = mmu.getFaultLevel();
+        raiseException(level, (int) pc, level == Mmu.PAGE_FAULT_LOAD_STORE ? mmu.getFaultAddress() : 0);
+    }
+
+    // latches an external interrupt, it is taken before the next instruction once SR has its bit set;
+    // reset cannot be masked
+    public void requestInterrupt(int level) {
+        pendingCauses |= 1 << level;
+        updateInterruptPending();
+    }
+
+    boolean isInterruptPending() {
+        return interruptPending;
+    }
+
+    // the interrupted instruction has not run yet, so EPC is the current PC
+    void takeInterrupt() {
+        int causes = pendingCauses & enabledCauses();
+        pendingCauses &= ~causes;
+        enterHandler(causes, (int) pc, 0);
+    }
+
+    // sysc in user mode continues after the call once the kernel returns; a program running without a kernel ends
+    public void systemCall() {
+        if (userMode) {
+            raiseException(SYSCALL, (int) pc + 4, 0);
+        } else {
+            halt();
+        }
+    }
+
+    // movg2s and movs2g in user mode: the instruction does not run, so EPC is its PC
+    public void illegalInstruction() {
+        raiseException(ILLEGAL, (int) pc, 0);
+    }
+
+    // eret: back to the interrupted program in the mode and with the status register it was running with
+    public void returnFromException() {
+        pc = spr[Spr.EPC];
+        setSpr(Spr.MODE, spr[Spr.EMODE]);
+        setSpr(Spr.SR, spr[Spr.ESR]);
+    }
+
+    void raiseException(int level, int epc, int edata) {
+        enterHandler(1 << level, epc, edata);
+    }
+
+    // jisr: masks all interrupts, latches the causes and enters the handler at the start of the ROM in system mode
+    private void enterHandler(int causes, int epc, int edata) {
+        spr[Spr.ESR] = spr[Spr.SR];
+        spr[Spr.EMODE] = spr[Spr.MODE];
+        spr[Spr.ECA] = causes;
+        spr[Spr.EPC] = epc;
+        spr[Spr.EDATA] = edata;
+        setSpr(Spr.SR, 0);
+        setSpr(Spr.MODE, Spr.SYSTEM_MODE);
+        pc = Initialize.ROMSTART;
+    }
+
+    private int enabledCauses() {
+        return spr[Spr.SR] | 1 << RESET;
+    }
+
+    private void updateInterruptPending() {
+        interruptPending = (pendingCauses & enabledCauses()) != 0;
+    }
+
+    // physical word access for callers that checked the alignment, as lw and sw do
+    public int getAlignedWord(int address) {
+        assert (address & 3) == 0;
+        return memory.getAlignedWord(address);
+    }
+
+    public void setAlignedWord(int address, int value) {
+        assert (address & 3) == 0;
+        memory.setAlignedWord(address, value);
+        mmu.invalidate(address);
+        decodedInstructions.invalidate(address);
+        if (translatedBlocks != null) {
+            translatedBlocks.invalidate(address);
+        }
+    }
+
+    public short getHalf(int address) {
+        return memory.getHalf(address);
+    }
+
+    public void setHalf(int address, short value) {
+        memory.setHalf(address, value);
+        invalidate(address, 2);
+    }
+
+    int fetchWord(int address) {
+        return memory.fetchWord(address);
     }
 
     public boolean hasWordAt(int address) {
-        int pageNumber = address >>> PAGE_SHIFT;
-        return memoryPaged.containsKey(pageNumber);
+        return memory.hasWordAt(address);
+    }
+
+    DecodedInstructionCache getDecodedInstructions() {
+        return decodedInstructions;
+    }
+
+    // created on the first translating run, so other engines skip the invalidation check
+    TranslatedBlockCache getTranslatedBlocks() {
+        if (translatedBlocks == null) {
+            translatedBlocks = new TranslatedBlockCache();
+        }
+        return translatedBlocks;
+    }
+
+    // the memory pages are shared copy-on-write, so taking a snapshot copies no page of a paged memory
+    public Snapshot snapshot() {
+        return new Snapshot(pc, isRunning, pendingCauses, gpr.clone(), spr.clone(), memory.snapshotPages());
+    }
+
+    // decoded instructions and translated blocks of pages the snapshot leaves unchanged are kept
+    public void restore(Snapshot snapshot) {
+        pc = snapshot.pc;
+        isRunning = snapshot.running;
+        System.arraycopy(snapshot.gpr, 0, gpr, 0, gpr.length);
+        System.arraycopy(snapshot.spr, 0, spr, 0, spr.length);
+        userMode = spr[Spr.MODE] == Spr.USER_MODE;
+        pendingCauses = snapshot.pendingCauses;
+        updateInterruptPending();
+
+        memory.restorePages(snapshot.pages, pageNumber -> invalidate(pageNumber << PAGE_SHIFT, PAGE_SIZE));
+        mmu.flush();
     }
 
     public void halt() {
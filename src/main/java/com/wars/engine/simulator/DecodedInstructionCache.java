@@ -0,0 +1,115 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.instruction.Instruction;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+class DecodedInstructionCache {
+    private static final int WORDS_PER_PAGE = Configuration.PAGE_SIZE >>> 2;
+    private final Map<Integer, Instruction[]> decodedPages;
+    // pages holding any word of a fused macro, whose writes must also drop the sequence cached at its first word
+    private final BitSet fusedPages;
+    private int lastPageNumber;
+    private Instruction[] lastPage;
+
+    DecodedInstructionCache() {
+        this.decodedPages = new HashMap<>();
+        this.fusedPages = new BitSet();
+        this.lastPageNumber = -1;
+        this.lastPage = null;
+    }
+
+    Instruction get(int address) {
+        Instruction[] page = findPage(address >>> Configuration.PAGE_SHIFT);
+        if (page == null) {
+            return null;
+        }
+
+        return page[(address & Configuration.PAGE_MASK) >>> 2];
+    }
+
+    void put(int address, Instruction instruction) {
+        int pageNumber = address >>> Configuration.PAGE_SHIFT;
+        Instruction[] page = findPage(pageNumber);
+
+        if (page == null) {
+            page = new Instruction[WORDS_PER_PAGE];
+            decodedPages.put(pageNumber, page);
+            lastPageNumber = pageNumber;
+            lastPage = page;
+        }
+
+        page[(address & Configuration.PAGE_MASK) >>> 2] = instruction;
+
+        if (instruction instanceof FusedMacro fused) {
+            int last = address + 4 * (fused.length() - 1);
+            fusedPages.set(address >>> Configuration.PAGE_SHIFT);
+            fusedPages.set(last >>> Configuration.PAGE_SHIFT);
+        }
+    }
+
+    void invalidate(int address) {
+        if (decodedPages.isEmpty()) {
+            return;
+        }
+
+        Instruction[] page = findPage(address >>> Configuration.PAGE_SHIFT);
+        if (page != null) {
+            page[(address & Configuration.PAGE_MASK) >>> 2] = null;
+        }
+
+        if (fusedPages.get(address >>> Configuration.PAGE_SHIFT)) {
+            invalidateFused(address);
+        }
+    }
+
+    // drops every word overlapping [address, address + len)
+    void invalidate(int address, long len) {
+        if (decodedPages.isEmpty()) {
+            return;
+        }
+
+        long start = Integer.toUnsignedLong(address) & ~3L;
+        long end = Math.min(Integer.toUnsignedLong(address) + len, 1L << 32);
+        for (long pageStart = start; pageStart < end; pageStart = (pageStart | Configuration.PAGE_MASK) + 1) {
+            Instruction[] page = findPage((int) (pageStart >>> Configuration.PAGE_SHIFT));
+            if (page != null) {
+                long pageEnd = Math.min(end, (pageStart | Configuration.PAGE_MASK) + 1);
+                int from = (int) (pageStart & Configuration.PAGE_MASK) >>> 2;
+                int to = (int) ((pageEnd - 1) & Configuration.PAGE_MASK) / 4 + 1;
+                Arrays.fill(page, from, to, null);
+            }
+        }
+
+        // sequences starting inside the range are gone, one starting before it covers its first word
+        if (fusedPages.get((int) (start >>> Configuration.PAGE_SHIFT))) {
+            invalidateFused((int) start);
+        }
+    }
+
+    private void invalidateFused(int address) {
+        int start = address & ~3;
+        for (int n = 1; n < FusedMacro.MAX_LENGTH; n++) {
+            start -= 4;
+            if (get(start) instanceof FusedMacro fused && fused.covers(start, address)) {
+                put(start, fused.getFirst());
+            }
+        }
+    }
+
+    private Instruction[] findPage(int pageNumber) {
+        if (pageNumber == lastPageNumber) {
+            return lastPage;
+        }
+
+        Instruction[] page = decodedPages.get(pageNumber);
+        if (page != null) {
+            lastPageNumber = pageNumber;
+            lastPage = page;
+        }
+        return page;
+    }
+}
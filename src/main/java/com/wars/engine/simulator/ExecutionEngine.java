@@ -0,0 +1,24 @@
+package com.wars.engine.simulator;
+
+public enum ExecutionEngine {
+    // decodes each word into an executor from instruction.Initializer; the semantic reference
+    REFERENCE(false),
+    // dispatches on opcode and function field with registers and PC held in locals;
+    // experimental, SimulatorBenchmark does not measure it faster than REFERENCE on kernelImage or tightLoop
+    SWITCH(true),
+    // interprets like REFERENCE and compiles hot basic blocks to JVM bytecode
+    TRANSLATING(false);
+
+    // set to true to make the experimental engines selectable in SimulationOptions
+    public static final String EXPERIMENTAL_PROPERTY = "wars.simulator.experimental";
+
+    private final boolean experimental;
+
+    ExecutionEngine(boolean experimental) {
+        this.experimental = experimental;
+    }
+
+    public boolean isExperimental() {
+        return experimental;
+    }
+}
@@ -0,0 +1,9 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.instruction.Instruction;
+
+@FunctionalInterface
+public interface ExecutionListener {
+    // called before the instruction at pc is executed; step counts from 0
+    void onInstruction(long step, int pc, Instruction instruction, Configuration c);
+}
@@ -0,0 +1,253 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.util.Initialize;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static com.wars.engine.simulator.Configuration.PAGE_SHIFT;
+import static com.wars.engine.simulator.Configuration.PAGE_SIZE;
+
+class FlatMemory implements Memory {
+    // ROM, kernel, stack, heap, user pages and HDBASE all live below 64K
+    static final int DEFAULT_SIZE = 64 * Initialize.K;
+    private static final int WORDS_PER_PAGE = PAGE_SIZE >>> 2;
+
+    private final int[] words;
+    private final boolean[] mappedPages;
+    private final int limit;
+    private final PagedMemory overflow;
+
+    FlatMemory() {
+        this(DEFAULT_SIZE);
+    }
+
+    FlatMemory(int size) {
+        if (size <= 0 || size % PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Flat memory size must be a positive multiple of " + PAGE_SIZE);
+        }
+
+        this.words = new int[size >>> 2];
+        this.mappedPages = new boolean[size >>> PAGE_SHIFT];
+        this.limit = size;
+        this.overflow = new PagedMemory();
+    }
+
+    @Override
+    public byte getByte(int address) {
+        if (!isFlat(address)) {
+            return overflow.getByte(address);
+        }
+
+        int shift = (3 - (address & 3)) << 3;
+        return (byte) (words[address >>> 2] >>> shift);
+    }
+
+    @Override
+    public void setByte(int address, byte value) {
+        if (!isFlat(address)) {
+            overflow.setByte(address, value);
+            return;
+        }
+
+        int index = address >>> 2;
+        int shift = (3 - (address & 3)) << 3;
+        words[index] = (words[index] & ~(0xFF << shift)) | ((value & 0xFF) << shift);
+        mappedPages[address >>> PAGE_SHIFT] = true;
+    }
+
+    @Override
+    public int getWord(int address) {
+        if ((address & 3) == 0) {
+            return isFlat(address) ? words[address >>> 2] : overflow.getWord(address);
+        }
+
+        return ((getByte(address) & 0xFF) << 24) |
+                ((getByte(address + 1) & 0xFF) << 16) |
+                ((getByte(address + 2) & 0xFF) << 8) |
+                (getByte(address + 3) & 0xFF);
+    }
+
+    @Override
+    public void setWord(int address, int value) {
+        if ((address & 3) != 0) {
+            setByte(address, (byte) (value >>> 24));
+            setByte(address + 1, (byte) (value >>> 16));
+            setByte(address + 2, (byte) (value >>> 8));
+            setByte(address + 3, (byte) value);
+            return;
+        }
+
+        if (!isFlat(address)) {
+            overflow.setWord(address, value);
+            return;
+        }
+
+        words[address >>> 2] = value;
+        mappedPages[address >>> PAGE_SHIFT] = true;
+    }
+
+    @Override
+    public int getAlignedWord(int address) {
+        return isFlat(address) ? words[address >>> 2] : overflow.getAlignedWord(address);
+    }
+
+    @Override
+    public void setAlignedWord(int address, int value) {
+        if (!isFlat(address)) {
+            overflow.setAlignedWord(address, value);
+            return;
+        }
+
+        words[address >>> 2] = value;
+        mappedPages[address >>> PAGE_SHIFT] = true;
+    }
+
+    @Override
+    public short getHalf(int address) {
+        if (!isFlat(address)) {
+            return overflow.getHalf(address);
+        }
+        if ((address & 1) != 0) {
+            return Memory.super.getHalf(address);
+        }
+
+        return (short) (words[address >>> 2] >>> ((2 - (address & 2)) << 3));
+    }
+
+    @Override
+    public void setHalf(int address, short value) {
+        if (!isFlat(address)) {
+            overflow.setHalf(address, value);
+            return;
+        }
+        if ((address & 1) != 0) {
+            Memory.super.setHalf(address, value);
+            return;
+        }
+
+        int index = address >>> 2;
+        int shift = (2 - (address & 2)) << 3;
+        words[index] = (words[index] & ~(0xFFFF << shift)) | ((value & 0xFFFF) << shift);
+        mappedPages[address >>> PAGE_SHIFT] = true;
+    }
+
+    @Override
+    public boolean hasWordAt(int address) {
+        if (!isFlat(address)) {
+            return overflow.hasWordAt(address);
+        }
+
+        return mappedPages[address >>> PAGE_SHIFT];
+    }
+
+    @Override
+    public void loadWords(int address, int[] src, int off, int len) {
+        if ((address & 3) != 0 || !isFlat(address, 4L * len)) {
+            Memory.super.loadWords(address, src, off, len);
+            return;
+        }
+
+        System.arraycopy(src, off, words, address >>> 2, len);
+        markPages(address, 4 * len);
+    }
+
+    @Override
+    public void loadBytes(int address, ByteBuffer src) {
+        int len = src.remaining();
+        if (((address | len) & 3) != 0 || !isFlat(address, len)) {
+            Memory.super.loadBytes(address, src);
+            return;
+        }
+
+        src.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(words, address >>> 2, len >>> 2);
+        src.position(src.position() + len);
+        markPages(address, len);
+    }
+
+    @Override
+    public void copyTo(int address, ByteBuffer dst) {
+        int len = dst.remaining();
+        if (((address | len) & 3) != 0 || !isFlat(address, len)) {
+            Memory.super.copyTo(address, dst);
+            return;
+        }
+
+        dst.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(words, address >>> 2, len >>> 2);
+        dst.position(dst.position() + len);
+    }
+
+    @Override
+    public void memcpy(int dst, int src, int len) {
+        if (((dst | src | len) & 3) != 0 || !isFlat(dst, len) || !isFlat(src, len)) {
+            Memory.super.memcpy(dst, src, len);
+            return;
+        }
+
+        System.arraycopy(words, src >>> 2, words, dst >>> 2, len >>> 2);
+        markPages(dst, len);
+    }
+
+    // flat pages are copied out, the overflow pages are shared copy-on-write
+    @Override
+    public Map<Integer, byte[]> snapshotPages() {
+        Map<Integer, byte[]> pages = overflow.snapshotPages();
+        for (int pageNumber = 0; pageNumber < mappedPages.length; pageNumber++) {
+            if (mappedPages[pageNumber]) {
+                byte[] page = new byte[PAGE_SIZE];
+                ByteBuffer.wrap(page).asIntBuffer().put(words, pageNumber << (PAGE_SHIFT - 2), WORDS_PER_PAGE);
+                pages.put(pageNumber, page);
+            }
+        }
+        return pages;
+    }
+
+    // a flat page is only reported when its words differ from the snapshot
+    @Override
+    public void restorePages(Map<Integer, byte[]> pages, IntConsumer changedPages) {
+        int[] restored = new int[WORDS_PER_PAGE];
+        for (int pageNumber = 0; pageNumber < mappedPages.length; pageNumber++) {
+            int from = pageNumber << (PAGE_SHIFT - 2);
+            byte[] page = pages.get(pageNumber);
+            if (page == null) {
+                Arrays.fill(restored, 0);
+            } else {
+                ByteBuffer.wrap(page).asIntBuffer().get(restored);
+            }
+
+            if (mappedPages[pageNumber] != (page != null)
+                    || !Arrays.equals(words, from, from + WORDS_PER_PAGE, restored, 0, WORDS_PER_PAGE)) {
+                System.arraycopy(restored, 0, words, from, WORDS_PER_PAGE);
+                mappedPages[pageNumber] = page != null;
+                changedPages.accept(pageNumber);
+            }
+        }
+
+        Map<Integer, byte[]> overflowPages = new HashMap<>();
+        for (Map.Entry<Integer, byte[]> entry : pages.entrySet()) {
+            if (entry.getKey() >= mappedPages.length) {
+                overflowPages.put(entry.getKey(), entry.getValue());
+            }
+        }
+        overflow.restorePages(overflowPages, changedPages);
+    }
+
+    private void markPages(int address, int len) {
+        if (len > 0) {
+            Arrays.fill(mappedPages, address >>> PAGE_SHIFT, ((address + len - 1) >>> PAGE_SHIFT) + 1, true);
+        }
+    }
+
+    // whether [address, address + len) lies in the flat words
+    private boolean isFlat(int address, long len) {
+        return isFlat(address) && Integer.toUnsignedLong(address) + len <= limit;
+    }
+
+    private boolean isFlat(int address) {
+        return Integer.compareUnsigned(address, limit) < 0;
+    }
+}
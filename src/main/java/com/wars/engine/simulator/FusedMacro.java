@@ -0,0 +1,318 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.instruction.Instruction;
+import com.wars.engine.macro.Macro;
+
+import java.util.List;
+
+// the first instruction of a mul, divu or divt expansion of Macro, recognized when the word is decoded;
+// executed as an Instruction it is only that first instruction, the engines run the whole sequence through execute(gpr, budget)
+class FusedMacro extends Instruction {
+    // runaway sequences (a divu by zero never ends) are left to the interpreter
+    private static final long STEP_CAP = 1 << 14;
+
+    private static final int RD_MASK = 31 << 11;
+    private static final int REGISTER_FIELDS = (1 << 26) - (1 << 11);
+
+    private enum Kind {
+        MUL, DIVU, DIVT;
+
+        private final List<Instruction> template = expand(this, 0, 0, 0);
+        private final int head = template.get(0).encode();
+    }
+
+    static final int MAX_LENGTH = Kind.DIVT.template.size();
+
+    private final Kind kind;
+    private final int k, i, j;
+    private final int length;
+    private final Instruction first;
+
+    private FusedMacro(Kind kind, int k, int i, int j, int length, int word, Instruction first) {
+        super(word >>> 26);
+        this.kind = kind;
+        this.k = k;
+        this.i = i;
+        this.j = j;
+        this.length = length;
+        this.first = first;
+    }
+
+    // cheap test on the first word before the sequence is read
+    static boolean isCandidate(int word) {
+        return word == Kind.MUL.head || word == Kind.DIVT.head || (word & ~RD_MASK) == Kind.DIVU.head;
+    }
+
+    // returns the fused sequence starting at PC, or first when the words there are not an exact macro expansion
+    static Instruction fuse(Configuration c, int PC, int word, Instruction first) {
+        FusedMacro fused = isCandidate(word) ? match(c, PC, word, first) : null;
+        return fused != null ? fused : first;
+    }
+
+    static boolean startsAt(Configuration c, int PC, int word) {
+        return isCandidate(word) && match(c, PC, word, null) != null;
+    }
+
+    private static FusedMacro match(Configuration c, int PC, int word, Instruction first) {
+        Kind kind = word == Kind.MUL.head ? Kind.MUL : word == Kind.DIVT.head ? Kind.DIVT : Kind.DIVU;
+        int[] code = new int[kind.template.size()];
+        for (int n = 0; n < code.length; n++) {
+            if (!c.hasWordAt(PC + 4 * n)) {
+                return null;
+            }
+            code[n] = c.fetchWord(PC + 4 * n);
+        }
+
+        // add rd, r0, r0 is common, the second word rules most of them out before the expansion is built
+        if ((code[1] & ~REGISTER_FIELDS) != (kind.template.get(1).encode() & ~REGISTER_FIELDS)) {
+            return null;
+        }
+
+        int k, i, j;
+        switch (kind) {
+            case MUL -> {
+                k = rt(code[9]);
+                i = rs(code[1]);
+                j = rs(code[3]);
+                // the closed form below assumes the operands survive the scratch register writes
+                if (isMulScratch(i) || isMulScratch(j)) {
+                    return null;
+                }
+            }
+            case DIVT -> {
+                k = rd(code[5]);
+                i = rt(code[2]);
+                j = rt(code[4]);
+            }
+            default -> {
+                k = rd(code[0]);
+                i = rs(code[1]);
+                j = rt(code[1]);
+            }
+        }
+
+        List<Instruction> expansion = expand(kind, k, i, j);
+        for (int n = 0; n < code.length; n++) {
+            if (expansion.get(n).encode() != code[n]) {
+                return null;
+            }
+        }
+
+        return new FusedMacro(kind, k, i, j, code.length, word, first);
+    }
+
+    int length() {
+        return length;
+    }
+
+    Instruction getFirst() {
+        return first;
+    }
+
+    boolean covers(int PC, int address) {
+        return Integer.compareUnsigned(address - PC, 4 * length) < 0;
+    }
+
+    // runs the whole sequence on gpr and returns the steps the expanded code takes;
+    // returns -1 and leaves gpr untouched when that exceeds budget
+    long execute(int[] gpr, long budget) {
+        if (kind == Kind.MUL) {
+            return mul(gpr, budget);
+        }
+
+        int[] r = gpr.clone();
+        long steps = kind == Kind.DIVU ? divu(r, k, i, j, 0) : divt(r);
+        if (steps < 0 || steps > budget) {
+            return -1;
+        }
+        System.arraycopy(r, 1, gpr, 1, gpr.length - 1);
+        return steps;
+    }
+
+    @Override
+    public void execute(Configuration config) {
+        first.execute(config);
+    }
+
+    @Override
+    public int encode() {
+        return first.encode();
+    }
+
+    @Override
+    public boolean isResolved() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return first.toString();
+    }
+
+    // shift-and-add over all 32 bits of j: one extra add per set bit
+    private long mul(int[] gpr, long budget) {
+        int a = gpr[i], b = gpr[j];
+        long steps = 164 + Integer.bitCount(b);
+        if (steps > budget) {
+            return -1;
+        }
+
+        set(gpr, 24, 0);
+        set(gpr, 25, b & Integer.MIN_VALUE);
+        set(gpr, 26, 0);
+        set(gpr, 27, a * b);
+        set(gpr, k, a * b);
+        return steps;
+    }
+
+    // restoring division as laid out by Macro.divu, word offsets in the comments
+    private static long divu(int[] r, int k, int i, int j, long steps) {
+        set(r, k, 0);                                   // 0
+        set(r, 23, sltu(r[i], r[j]));                   // 1
+        steps += 3;
+        if (r[23] > 0) {                                // 2 bgtz, to the end
+            return steps;
+        }
+        set(r, 23, r[i]);                               // 3..6
+        set(r, 24, r[j]);
+        set(r, 25, 1);
+        set(r, 26, 0);
+        steps += 4;
+
+        while (true) {
+            set(r, 21, Integer.MIN_VALUE);              // 7..8
+            steps += 2;
+
+            while (true) {
+                set(r, 22, r[24] & r[21]);              // 9
+                steps += 2;
+                if (r[22] < 0) {                        // 10 bltz, to 15
+                    break;
+                }
+                set(r, 25, r[25] + r[25]);              // 11..13
+                set(r, 24, r[24] + r[24]);
+                set(r, 27, sltu(r[23], r[24]));
+                steps += 4;
+                if (r[27] > 0) {                        // 14 blez, back to 9
+                    break;
+                }
+                if (steps > STEP_CAP) {
+                    return -1;
+                }
+            }
+
+            set(r, 24, r[24] - 1);                      // 15..17
+            set(r, 22, sltu(r[24], r[23]));
+            set(r, 24, r[24] + 1);
+            steps += 4;
+            if (r[22] > 0) {                            // 18 blez, to 21
+                set(r, 26, r[26] | r[25]);              // 19..20
+                set(r, 23, r[23] - r[24]);
+                steps += 2;
+            }
+            set(r, 27, sltu(r[23], r[24]));             // 21
+            steps += 2;
+            if (r[27] <= 0) {                           // 22 blez, to 31
+                break;
+            }
+
+            do {
+                set(r, 25, r[25] >>> 1);                // 23..26
+                set(r, 24, r[24] >>> 1);
+                set(r, 27, sltu(r[23], r[24]));
+                steps += 4;
+                if (steps > STEP_CAP) {
+                    return -1;
+                }
+            } while (r[27] > 0);                        // 26 bgtz, back to 23
+
+            set(r, 26, r[26] | r[25]);                  // 27..29
+            set(r, 23, r[23] - r[24]);
+            set(r, 22, sltu(r[23], r[j]));
+            steps += 4;
+            if (r[22] > 0) {                            // 30 blez, back to 7
+                break;
+            }
+            if (steps > STEP_CAP) {
+                return -1;
+            }
+        }
+
+        set(r, k, r[26]);                               // 31
+        return steps + 1;
+    }
+
+    // sign handling around Macro.divu on |i| and |j| in 19 and 18
+    private long divt(int[] r) {
+        set(r, 21, Integer.MIN_VALUE);                  // 0..1
+        long steps = 3;
+        if (r[21] == r[i]) {                            // 2 bne, to 7
+            set(r, 21, -1);                             // 3
+            steps += 2;
+            if (r[21] == r[j]) {                        // 4 bne, to 7
+                set(r, k, r[i]);                        // 5..6 beq, to the end
+                return steps + 2;
+            }
+        }
+
+        steps = abs(r, 21, 19, i, steps);               // 7..13
+        steps = abs(r, 22, 18, j, steps);               // 14..20
+        set(r, 20, r[21] ^ r[22]);                      // 21
+        steps = divu(r, k, 19, 18, steps + 1);          // 22..53
+        if (steps < 0) {
+            return -1;
+        }
+
+        steps++;
+        if (r[20] > 0) {                                // 54 blez, to the end
+            set(r, 22, -1);                             // 55..57
+            set(r, k, r[k] ^ r[22]);
+            set(r, k, r[k] + 1);
+            steps += 3;
+        }
+        return steps;
+    }
+
+    // Macro.signAndAbs: sign into s, absolute value of x into a
+    private static long abs(int[] r, int s, int a, int x, long steps) {
+        set(r, s, r[x] < 0 ? 1 : 0);
+        if (r[s] > 0) {
+            set(r, a, -1);
+            set(r, a, r[a] ^ r[x]);
+            set(r, a, r[a] + 1);
+            return steps + 6;
+        }
+        set(r, a, r[x]);
+        return steps + 3;
+    }
+
+    private static void set(int[] r, int index, int value) {
+        if (index != 0) {
+            r[index] = value;
+        }
+    }
+
+    private static int sltu(int a, int b) {
+        return Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+    }
+
+    private static boolean isMulScratch(int register) {
+        return register >= 24 && register <= 27;
+    }
+
+    private static List<Instruction> expand(Kind kind, int k, int i, int j) {
+        return Macro.evaluate("macro: " + kind.name().toLowerCase() + " " + k + " " + i + " " + j);
+    }
+
+    private static int rs(int word) {
+        return (word >>> 21) & 31;
+    }
+
+    private static int rt(int word) {
+        return (word >>> 16) & 31;
+    }
+
+    private static int rd(int word) {
+        return (word >>> 11) & 31;
+    }
+}
@@ -0,0 +1,72 @@
+package com.wars.engine.simulator;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+interface Memory {
+    byte getByte(int address);
+
+    void setByte(int address, byte value);
+
+    int getWord(int address);
+
+    void setWord(int address, int value);
+
+    default int fetchWord(int address) {
+        return getWord(address);
+    }
+
+    // callers guarantee (address & 3) == 0, as lw and sw do before they access memory
+    default int getAlignedWord(int address) {
+        return getWord(address);
+    }
+
+    default void setAlignedWord(int address, int value) {
+        setWord(address, value);
+    }
+
+    default short getHalf(int address) {
+        return (short) ((getByte(address) << 8) | (getByte(address + 1) & 0xFF));
+    }
+
+    default void setHalf(int address, short value) {
+        setByte(address, (byte) (value >>> 8));
+        setByte(address + 1, (byte) value);
+    }
+
+    boolean hasWordAt(int address);
+
+    // the bulk operations below are the byte-by-byte reference, implementations copy whole pages where they can
+
+    default void loadWords(int address, int[] src, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            setWord(address + 4 * i, src[off + i]);
+        }
+    }
+
+    default void loadBytes(int address, ByteBuffer src) {
+        while (src.hasRemaining()) {
+            setByte(address++, src.get());
+        }
+    }
+
+    default void copyTo(int address, ByteBuffer dst) {
+        while (dst.hasRemaining()) {
+            dst.put(getByte(address++));
+        }
+    }
+
+    // overlapping ranges are copied as if through a temporary buffer
+    default void memcpy(int dst, int src, int len) {
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        copyTo(src, buffer);
+        loadBytes(dst, buffer.flip());
+    }
+
+    // every stored page by page number; the arrays must not be written by the caller
+    Map<Integer, byte[]> snapshotPages();
+
+    // replaces the contents of memory by the pages, calling changedPages for every page that may differ now
+    void restorePages(Map<Integer, byte[]> pages, IntConsumer changedPages);
+}
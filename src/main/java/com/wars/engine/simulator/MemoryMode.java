@@ -0,0 +1,6 @@
+package com.wars.engine.simulator;
+
+public enum MemoryMode {
+    PAGED,
+    FLAT
+}
@@ -0,0 +1,51 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.exception.simulator.UnalignedMemoryAccessException;
+
+// host versions of the readms, writems and copyms routines of FetchKernel.c0, with the same effect on memory
+// as running their MIPS code but without stepping through it
+public final class MemoryRoutines {
+
+    private MemoryRoutines() {
+    }
+
+    // lw 2 1 0 with gpr(1) = a
+    public static int readms(Configuration c, int a) {
+        checkAligned(a);
+        return c.getWord(a);
+    }
+
+    // sw 1 2 0 with gpr(1) = x, gpr(2) = a
+    public static void writems(Configuration c, int x, int a) {
+        checkAligned(a);
+        c.setWord(a, x);
+    }
+
+    // copies L words starting from a to the L words starting from b, a word at a time and upwards like the
+    // MIPS loop, so a destination inside the source range repeats the words already copied
+    public static void copyms(Configuration c, int a, int b, int L) {
+        if (L <= 0) {
+            return;
+        }
+        checkAligned(a);
+        checkAligned(b);
+
+        long distance = Integer.toUnsignedLong(b - a);
+        if (distance == 0 || distance >= 4L * L) {
+            c.memcpy(b, a, 4 * L);
+            return;
+        }
+
+        // the source repeats every distance bytes, so it is copied in runs that never overlap
+        int run = (int) distance;
+        for (long done = 0; done < 4L * L; done += run) {
+            c.memcpy(b + (int) done, a + (int) done, (int) Math.min(run, 4L * L - done));
+        }
+    }
+
+    private static void checkAligned(int address) {
+        if ((address & 3) != 0) {
+            throw new UnalignedMemoryAccessException(address);
+        }
+    }
+}
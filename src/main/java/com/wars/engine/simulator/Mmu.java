@@ -0,0 +1,140 @@
+package com.wars.engine.simulator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.wars.engine.simulator.Configuration.PAGE_MASK;
+import static com.wars.engine.simulator.Configuration.PAGE_SHIFT;
+
+// user mode address translation through the page table of the kernel: PTO holds the address of the table,
+// PTL its number of entries, and entry vpx holds the physical page index in its upper 20 bits and the
+// valid bit 2048 (PTA[PTEIIN] = PPXIN*4096u + 2048u in AbstractKernel.c0);
+// a direct-mapped TLB keeps the translations of recently used virtual pages in front of the walk
+public class Mmu {
+    // interrupt levels the kernel's runvm reads the faulting address for, EPC for 17 and EDATA for 20
+    public static final int PAGE_FAULT_FETCH = 17;
+    public static final int PAGE_FAULT_LOAD_STORE = 20;
+
+    static final int VALID = 1 << 11;
+    static final int DEFAULT_TLB_SIZE = 64;
+
+    private final int[] tags;
+    private final int[] frames;
+    // physical pages holding a page table entry that is cached, a store into one of them flushes the TLB
+    private final BitSet tablePages;
+    private long hits;
+    private long misses;
+    private long pageFaults;
+    private int faultLevel;
+    private int faultAddress;
+
+    Mmu() {
+        this(DEFAULT_TLB_SIZE);
+    }
+
+    Mmu(int tlbSize) {
+        if (tlbSize <= 0 || Integer.bitCount(tlbSize) != 1) {
+            throw new IllegalArgumentException("TLB size must be a power of two");
+        }
+        this.tags = new int[tlbSize];
+        this.frames = new int[tlbSize];
+        this.tablePages = new BitSet();
+        flush();
+    }
+
+    // returns the physical address of va, or throws PageFault after latching the level and address of the fault
+    int translate(Configuration c, int va, boolean fetch) {
+        int vpx = va >>> PAGE_SHIFT;
+        int slot = vpx & (tags.length - 1);
+        if (tags[slot] == vpx) {
+            hits++;
+            return frames[slot] | (va & PAGE_MASK);
+        }
+
+        misses++;
+        if (Integer.compareUnsigned(vpx, c.getSpr(Spr.PTL)) >= 0) {
+            throw fault(fetch, va);
+        }
+
+        int pteAddress = c.getSpr(Spr.PTO) + 4 * vpx;
+        int pte = c.getAlignedWord(pteAddress & ~3);
+        if ((pte & VALID) == 0) {
+            throw fault(fetch, va);
+        }
+
+        tags[slot] = vpx;
+        frames[slot] = pte & ~PAGE_MASK;
+        tablePages.set(pteAddress >>> PAGE_SHIFT);
+        return frames[slot] | (va & PAGE_MASK);
+    }
+
+    private PageFault fault(boolean fetch, int va) {
+        pageFaults++;
+        faultLevel = fetch ? PAGE_FAULT_FETCH : PAGE_FAULT_LOAD_STORE;
+        faultAddress = va;
+        return PageFault.INSTANCE;
+    }
+
+    int getFaultLevel() {
+        return faultLevel;
+    }
+
+    int getFaultAddress() {
+        return faultAddress;
+    }
+
+    // called for every store, so the TLB never outlives an entry the kernel rewrites
+    void invalidate(int address) {
+        if (tablePages.get(address >>> PAGE_SHIFT)) {
+            flush();
+        }
+    }
+
+    void invalidate(int address, long len) {
+        if (tablePages.isEmpty()) {
+            return;
+        }
+        long end = Math.min(Integer.toUnsignedLong(address) + len, 1L << 32);
+        for (long pageStart = Integer.toUnsignedLong(address); pageStart < end;
+             pageStart = (pageStart | PAGE_MASK) + 1) {
+            invalidate((int) pageStart);
+        }
+    }
+
+    public void flush() {
+        Arrays.fill(tags, -1);
+        tablePages.clear();
+    }
+
+    public int getTlbSize() {
+        return tags.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getPageFaults() {
+        return pageFaults;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        pageFaults = 0;
+    }
+
+    // thrown out of a user mode fetch, load or store that faults; the instruction has no effect and the
+    // engine enters the exception handler through Configuration.enterPageFault
+    static final class PageFault extends RuntimeException {
+        static final PageFault INSTANCE = new PageFault();
+
+        private PageFault() {
+            super(null, null, false, false);
+        }
+    }
+}
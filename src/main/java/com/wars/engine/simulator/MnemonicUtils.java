@@ -63,7 +63,7 @@ class MnemonicUtils {
             return switch (rs) {
                 case 0b10000 -> "eret";
                 case 0b00100 -> "movg2s";
-                case 0b00000 -> "mov2gs";
+                case 0b00000 -> "movs2g";
                 default -> throw new UnknownOpcodeException("Unknown R-type function code for opcode 010000: " + fun);
             };
         }
@@ -0,0 +1,256 @@
+package com.wars.engine.simulator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import static com.wars.engine.simulator.Configuration.PAGE_MASK;
+import static com.wars.engine.simulator.Configuration.PAGE_SHIFT;
+import static com.wars.engine.simulator.Configuration.PAGE_SIZE;
+
+class PagedMemory implements Memory {
+    private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle HALF = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+    private static final int PAGE_CACHE_SIZE = 16;
+    private final Map<Integer, byte[]> memoryPaged;
+    // pages whose array is also held by a snapshot, copied before the first write to them
+    private final Set<Integer> sharedPages;
+    // pages are only removed by a restore, which empties the cache, so a cached page stays valid; direct-mapped
+    // by page number so that a loop reading one region and writing another does not go back to the map on every
+    // access; a page cached by a read may be shared and is only written through once writablePage has checked it
+    private final int[] cachedPageNumbers;
+    private final byte[][] cachedPages;
+    private final boolean[] cachedWritable;
+
+    PagedMemory() {
+        this.memoryPaged = new HashMap<>();
+        this.sharedPages = new HashSet<>();
+        this.cachedPageNumbers = new int[PAGE_CACHE_SIZE];
+        this.cachedPages = new byte[PAGE_CACHE_SIZE][];
+        this.cachedWritable = new boolean[PAGE_CACHE_SIZE];
+        Arrays.fill(cachedPageNumbers, -1);
+    }
+
+    @Override
+    public byte getByte(int address) {
+        byte[] page = findPage(address >>> PAGE_SHIFT);
+        if (page == null) {
+            return 0;
+        }
+
+        return page[address & PAGE_MASK];
+    }
+
+    @Override
+    public void setByte(int address, byte value) {
+        byte[] page = writablePage(address >>> PAGE_SHIFT);
+        page[address & PAGE_MASK] = value;
+    }
+
+    @Override
+    public int getWord(int address) {
+        // any word inside one page is read with a single view access, only the last three bytes of a page split
+        if ((address & PAGE_MASK) > PAGE_SIZE - 4) {
+            return ((getByte(address) & 0xFF) << 24) |
+                    ((getByte(address + 1) & 0xFF) << 16) |
+                    ((getByte(address + 2) & 0xFF) << 8) |
+                    (getByte(address + 3) & 0xFF);
+        }
+
+        byte[] page = findPage(address >>> PAGE_SHIFT);
+        return page == null ? 0 : (int) WORD.get(page, address & PAGE_MASK);
+    }
+
+    @Override
+    public int getAlignedWord(int address) {
+        byte[] page = findPage(address >>> PAGE_SHIFT);
+        return page == null ? 0 : (int) WORD.get(page, address & PAGE_MASK);
+    }
+
+    @Override
+    public void setWord(int address, int value) {
+        if ((address & PAGE_MASK) > PAGE_SIZE - 4) {
+            setByte(address, (byte) (value >>> 24));
+            setByte(address + 1, (byte) (value >>> 16));
+            setByte(address + 2, (byte) (value >>> 8));
+            setByte(address + 3, (byte) value);
+            return;
+        }
+
+        WORD.set(writablePage(address >>> PAGE_SHIFT), address & PAGE_MASK, value);
+    }
+
+    @Override
+    public void setAlignedWord(int address, int value) {
+        WORD.set(writablePage(address >>> PAGE_SHIFT), address & PAGE_MASK, value);
+    }
+
+    @Override
+    public short getHalf(int address) {
+        if ((address & PAGE_MASK) == PAGE_MASK) {
+            return (short) ((getByte(address) << 8) | (getByte(address + 1) & 0xFF));
+        }
+
+        byte[] page = findPage(address >>> PAGE_SHIFT);
+        return page == null ? 0 : (short) HALF.get(page, address & PAGE_MASK);
+    }
+
+    @Override
+    public void setHalf(int address, short value) {
+        if ((address & PAGE_MASK) == PAGE_MASK) {
+            setByte(address, (byte) (value >>> 8));
+            setByte(address + 1, (byte) value);
+            return;
+        }
+
+        HALF.set(writablePage(address >>> PAGE_SHIFT), address & PAGE_MASK, value);
+    }
+
+    @Override
+    public boolean hasWordAt(int address) {
+        return memoryPaged.containsKey(address >>> PAGE_SHIFT);
+    }
+
+    @Override
+    public void loadWords(int address, int[] src, int off, int len) {
+        if ((address & 3) != 0) {
+            Memory.super.loadWords(address, src, off, len);
+            return;
+        }
+
+        while (len > 0) {
+            int offset = address & PAGE_MASK;
+            int n = Math.min(len, (PAGE_SIZE - offset) >>> 2);
+            ByteBuffer.wrap(getPage(address >>> PAGE_SHIFT), offset, 4 * n).asIntBuffer().put(src, off, n);
+            address += 4 * n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void loadBytes(int address, ByteBuffer src) {
+        while (src.hasRemaining()) {
+            int offset = address & PAGE_MASK;
+            int n = Math.min(src.remaining(), PAGE_SIZE - offset);
+            src.get(getPage(address >>> PAGE_SHIFT), offset, n);
+            address += n;
+        }
+    }
+
+    @Override
+    public void copyTo(int address, ByteBuffer dst) {
+        while (dst.hasRemaining()) {
+            int offset = address & PAGE_MASK;
+            int n = Math.min(dst.remaining(), PAGE_SIZE - offset);
+            byte[] page = memoryPaged.get(address >>> PAGE_SHIFT);
+            if (page == null) {
+                dst.put(ZERO_PAGE, offset, n);
+            } else {
+                dst.put(page, offset, n);
+            }
+            address += n;
+        }
+    }
+
+    @Override
+    public void memcpy(int dst, int src, int len) {
+        // a backward overlap would read bytes this copy already wrote
+        if (Integer.compareUnsigned(dst - src, len) < 0 && dst != src) {
+            Memory.super.memcpy(dst, src, len);
+            return;
+        }
+
+        while (len > 0) {
+            int srcOffset = src & PAGE_MASK;
+            int dstOffset = dst & PAGE_MASK;
+            int n = Math.min(len, PAGE_SIZE - Math.max(srcOffset, dstOffset));
+            byte[] srcPage = memoryPaged.get(src >>> PAGE_SHIFT);
+            byte[] dstPage = getPage(dst >>> PAGE_SHIFT);
+            System.arraycopy(srcPage == null ? ZERO_PAGE : srcPage, srcOffset, dstPage, dstOffset, n);
+            src += n;
+            dst += n;
+            len -= n;
+        }
+    }
+
+    // the page holding a word access, null when nothing was stored in it yet
+    private byte[] findPage(int pageNumber) {
+        int slot = pageNumber & (PAGE_CACHE_SIZE - 1);
+        if (cachedPageNumbers[slot] == pageNumber) {
+            return cachedPages[slot];
+        }
+
+        byte[] page = memoryPaged.get(pageNumber);
+        if (page != null) {
+            cachedPageNumbers[slot] = pageNumber;
+            cachedPages[slot] = page;
+            cachedWritable[slot] = false;
+        }
+        return page;
+    }
+
+    private byte[] writablePage(int pageNumber) {
+        int slot = pageNumber & (PAGE_CACHE_SIZE - 1);
+        if (cachedPageNumbers[slot] == pageNumber && cachedWritable[slot]) {
+            return cachedPages[slot];
+        }
+
+        return getPage(pageNumber);
+    }
+
+    // the page a write goes to, created when missing and copied when a snapshot shares it
+    private byte[] getPage(int pageNumber) {
+        byte[] page = memoryPaged.get(pageNumber);
+        if (page == null) {
+            page = new byte[PAGE_SIZE];
+            memoryPaged.put(pageNumber, page);
+        } else if (sharedPages.remove(pageNumber)) {
+            page = page.clone();
+            memoryPaged.put(pageNumber, page);
+        }
+
+        int slot = pageNumber & (PAGE_CACHE_SIZE - 1);
+        cachedPageNumbers[slot] = pageNumber;
+        cachedPages[slot] = page;
+        cachedWritable[slot] = true;
+        return page;
+    }
+
+    // the pages stay shared with the returned map until this memory writes to them
+    @Override
+    public Map<Integer, byte[]> snapshotPages() {
+        sharedPages.addAll(memoryPaged.keySet());
+        Arrays.fill(cachedWritable, false);
+        return new HashMap<>(memoryPaged);
+    }
+
+    // shares the arrays of the snapshot in turn, so only the pages whose array changed are reported
+    @Override
+    public void restorePages(Map<Integer, byte[]> pages, IntConsumer changedPages) {
+        for (Map.Entry<Integer, byte[]> entry : memoryPaged.entrySet()) {
+            if (pages.get(entry.getKey()) != entry.getValue()) {
+                changedPages.accept(entry.getKey());
+            }
+        }
+        for (Integer pageNumber : pages.keySet()) {
+            if (!memoryPaged.containsKey(pageNumber)) {
+                changedPages.accept(pageNumber);
+            }
+        }
+
+        memoryPaged.clear();
+        memoryPaged.putAll(pages);
+        sharedPages.clear();
+        sharedPages.addAll(pages.keySet());
+        Arrays.fill(cachedPageNumbers, -1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.wars.engine.simulator;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+public class SimulationOptions {
+    public static final long UNLIMITED = -1;
+    public static final long DEFAULT_MAX_STEPS = 1 << 15;
+
+    private final long maxSteps;
+    private final long timeLimitNanos;
+    private final long untilPC;
+    private final Predicate<Configuration> untilPredicate;
+    private final ExecutionListener listener;
+    private final ExecutionEngine engine;
+    private final boolean macroFusion;
+
+    private SimulationOptions(Builder builder) {
+        this.maxSteps = builder.maxSteps;
+        this.timeLimitNanos = builder.timeLimitNanos;
+        this.untilPC = builder.untilPC;
+        this.untilPredicate = builder.untilPredicate;
+        this.listener = builder.listener;
+        this.engine = builder.engine;
+        this.macroFusion = builder.macroFusion;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // runs until the machine halts or leaves mapped memory, without any budget
+    public static SimulationOptions untilHalt() {
+        return builder().unlimitedSteps().build();
+    }
+
+    public static SimulationOptions defaults() {
+        return builder().build();
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public long getTimeLimitNanos() {
+        return timeLimitNanos;
+    }
+
+    public long getUntilPC() {
+        return untilPC;
+    }
+
+    public Predicate<Configuration> getUntilPredicate() {
+        return untilPredicate;
+    }
+
+    public ExecutionListener getListener() {
+        return listener;
+    }
+
+    public ExecutionEngine getEngine() {
+        return engine;
+    }
+
+    public boolean isMacroFusion() {
+        return macroFusion;
+    }
+
+    // fused macros report the steps of their expansion, but hooks could not observe the steps inside them
+    boolean fusesMacros() {
+        return macroFusion && listener == null && untilPredicate == null && untilPC == UNLIMITED;
+    }
+
+    public static class Builder {
+        private long maxSteps = DEFAULT_MAX_STEPS;
+        private long timeLimitNanos = UNLIMITED;
+        private long untilPC = UNLIMITED;
+        private Predicate<Configuration> untilPredicate;
+        private ExecutionListener listener;
+        private ExecutionEngine engine = ExecutionEngine.REFERENCE;
+        private boolean macroFusion = true;
+
+        private Builder() {
+        }
+
+        public Builder maxSteps(long maxSteps) {
+            if (maxSteps < 0) {
+                throw new IllegalArgumentException("Step budget must not be negative: " + maxSteps);
+            }
+            this.maxSteps = maxSteps;
+            return this;
+        }
+
+        public Builder unlimitedSteps() {
+            this.maxSteps = UNLIMITED;
+            return this;
+        }
+
+        public Builder timeLimit(Duration timeLimit) {
+            if (timeLimit.isNegative()) {
+                throw new IllegalArgumentException("Time limit must not be negative: " + timeLimit);
+            }
+            this.timeLimitNanos = timeLimit.toNanos();
+            return this;
+        }
+
+        public Builder untilPC(int pc) {
+            this.untilPC = Integer.toUnsignedLong(pc);
+            return this;
+        }
+
+        public Builder until(Predicate<Configuration> predicate) {
+            this.untilPredicate = predicate;
+            return this;
+        }
+
+        public Builder listener(ExecutionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public Builder engine(ExecutionEngine engine) {
+            if (engine.isExperimental() && !Boolean.getBoolean(ExecutionEngine.EXPERIMENTAL_PROPERTY)) {
+                throw new IllegalArgumentException("Experimental engine " + engine + " needs -D"
+                        + ExecutionEngine.EXPERIMENTAL_PROPERTY + "=true");
+            }
+            this.engine = engine;
+            return this;
+        }
+
+        // mul, divu and divt expansions of Macro run as one host operation; off for runs that step through them
+        public Builder macroFusion(boolean macroFusion) {
+            this.macroFusion = macroFusion;
+            return this;
+        }
+
+        public SimulationOptions build() {
+            return new SimulationOptions(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.wars.engine.simulator;
+
+import java.time.Duration;
+
+public class SimulationResult {
+    private final Configuration configuration;
+    private final long steps;
+    private final StopReason stopReason;
+    private final long elapsedNanos;
+
+    SimulationResult(Configuration configuration, long steps, StopReason stopReason, long elapsedNanos) {
+        this.configuration = configuration;
+        this.steps = steps;
+        this.stopReason = stopReason;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    public double getInstructionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : steps * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationResult{steps = " + steps + ", stopReason = " + stopReason
+                + ", elapsed = " + getElapsed() + "}";
+    }
+}
@@ -1,10 +1,13 @@
 package com.wars.engine.simulator;
 
 import com.wars.engine.exception.simulator.UnalignedMemoryAccessException;
+import com.wars.engine.instruction.Instruction;
 import com.wars.engine.instruction.InstructionRegistry;
-import com.wars.engine.util.Log;
+
+import java.util.function.Predicate;
 
 public class Simulator {
+    private static final long CLOCK_CHECK_INTERVAL = 1 << 10;
 
     public static Configuration simulate(int[] instructions) {
         Configuration c = new Configuration();
@@ -13,50 +16,151 @@ public class Simulator {
     }
 
     public static Configuration simulate(Configuration c) {
-        int steps = 0;
-        int max_steps = (1 << 15);
+        return run(c, SimulationOptions.defaults()).getConfiguration();
+    }
+
+    public static Configuration simulate(Configuration c, ExecutionListener listener) {
+        return run(c, SimulationOptions.builder().listener(listener).build()).getConfiguration();
+    }
+
+    public static SimulationResult run(Configuration c, SimulationOptions options) {
+        return switch (options.getEngine()) {
+            case REFERENCE -> runReference(c, options);
+            case SWITCH -> SwitchInterpreter.run(c, options);
+            case TRANSLATING -> TranslatingInterpreter.run(c, options);
+        };
+    }
+
+    static SimulationResult runReference(Configuration c, SimulationOptions options) {
+        DecodedInstructionCache decodedInstructions = c.getDecodedInstructions();
+        ExecutionListener listener = options.getListener();
+        Predicate<Configuration> untilPredicate = options.getUntilPredicate();
+        long maxSteps = options.getMaxSteps() == SimulationOptions.UNLIMITED ? Long.MAX_VALUE : options.getMaxSteps();
+        long untilPC = options.getUntilPC();
+        boolean timed = options.getTimeLimitNanos() != SimulationOptions.UNLIMITED;
+        boolean fuse = options.fusesMacros();
+
+        long start = System.nanoTime();
+        long deadline = start + options.getTimeLimitNanos();
+        long nextClockCheck = 0;
+        long steps = 0;
+        StopReason stopReason;
+
+        while (true) {
+            if (!c.isRunning()) {
+                stopReason = StopReason.HALTED;
+                break;
+            }
+
+            if (steps >= maxSteps) {
+                stopReason = StopReason.STEP_LIMIT;
+                break;
+            }
+
+            // reading the clock every step would cost more than most instructions; fused macros add many
+            // steps at once, so the clock is read once steps passed the next check rather than at multiples
+            if (timed && steps >= nextClockCheck) {
+                if (System.nanoTime() - deadline >= 0) {
+                    stopReason = StopReason.TIME_LIMIT;
+                    break;
+                }
+                nextClockCheck = steps + CLOCK_CHECK_INTERVAL;
+            }
+
+            if (c.isInterruptPending()) {
+                c.takeInterrupt();
+            }
 
-        while (steps < max_steps &&
-                c.hasWordAt((int) c.getPC()) &&
-                c.isRunning()) {
             int PC = (int) c.getPC();
 
-            if (PC % 4 != 0) {
-                throw new UnalignedMemoryAccessException(PC);
+            if (untilPC != SimulationOptions.UNLIMITED && Integer.toUnsignedLong(PC) == untilPC) {
+                stopReason = StopReason.PC_REACHED;
+                break;
             }
 
-            int instr = c.getWord(PC);
-            simulateStep(c, instr);
+            if (untilPredicate != null && untilPredicate.test(c)) {
+                stopReason = StopReason.PREDICATE;
+                break;
+            }
+
+            try {
+                Instruction instruction = fetch(c, decodedInstructions, PC);
+
+                if (instruction == null) {
+                    stopReason = StopReason.UNMAPPED_PC;
+                    break;
+                }
+
+                if (instruction instanceof FusedMacro fused) {
+                    // consecutive virtual words need not be consecutive physical words
+                    long fusedSteps = fuse && !c.isUserMode() ? fused.execute(c.registers(), maxSteps - steps) : -1;
+                    if (fusedSteps >= 0) {
+                        c.setPC(c.getPC() + 4L * fused.length());
+                        steps += fusedSteps;
+                        continue;
+                    }
+                    instruction = fused.getFirst();
+                }
+
+                if (listener != null) {
+                    listener.onInstruction(steps, PC, instruction, c);
+                }
+                instruction.execute(c);
+            } catch (Mmu.PageFault e) {
+                c.enterPageFault();
+            }
 
             steps++;
         }
 
-        return c;
+        return new SimulationResult(c, steps, stopReason, System.nanoTime() - start);
     }
 
-    private static void simulateStep(Configuration configuration, int instructionWord) {
+    // returns null when PC lies outside mapped memory; instructions are cached by physical address
+    static Instruction fetch(Configuration c, DecodedInstructionCache decodedInstructions, int PC) {
+        int address = c.translateFetch(PC);
+        Instruction instruction = (address & 3) == 0 ? decodedInstructions.get(address) : null;
+
+        if (instruction == null) {
+            if (!c.hasWordAt(address)) {
+                return null;
+            }
+
+            if (address % 4 != 0) {
+                throw new UnalignedMemoryAccessException(PC);
+            }
+
+            int word = c.fetchWord(address);
+            instruction = c.isUserMode() ? decode(word) : FusedMacro.fuse(c, address, word, decode(word));
+            decodedInstructions.put(address, instruction);
+        }
+
+        return instruction;
+    }
+
+    static Instruction decode(int instructionWord) {
         int opcode = (instructionWord >>> 26);
 
         if (opcode == 0b000000 || opcode == 0b010000) {
-            simulateRType(configuration, opcode, instructionWord);
+            return decodeRType(opcode, instructionWord);
         } else if (opcode == 0b000010 || opcode == 0b000011) {
-            simulateJType(configuration, opcode, instructionWord);
+            return decodeJType(opcode, instructionWord);
         } else {
-            simulateIType(configuration, opcode, instructionWord);
+            return decodeIType(opcode, instructionWord);
         }
     }
 
-    private static void simulateIType(Configuration configuration, int opcode, int instructionWord) {
+    private static Instruction decodeIType(int opcode, int instructionWord) {
         int rs = (instructionWord >>> 21) & 31;
         int rt = (instructionWord >>> 16) & 31;
         int imm = (instructionWord << 16) >> 16;
         int[] operands = {rs, rt, imm};
 
         String mnemonic = MnemonicUtils.getMnemonicForIType(opcode, rt);
-        executeInstruction(configuration, mnemonic, operands);
+        return InstructionRegistry.createForExecutor(mnemonic, operands);
     }
 
-    private static void simulateRType(Configuration configuration, int opcode, int instructionWord) {
+    private static Instruction decodeRType(int opcode, int instructionWord) {
         int rs = (instructionWord >>> 21) & 31;
         int rt = (instructionWord >>> 16) & 31;
         int rd = (instructionWord >>> 11) & 31;
@@ -65,21 +169,15 @@ public class Simulator {
         int[] operands = {rs, rt, rd, sa, fun};
 
         String mnemonic = MnemonicUtils.getMnemonicForRType(opcode, fun, rs);
-        executeInstruction(configuration, mnemonic, operands);
+        return InstructionRegistry.createForExecutor(mnemonic, operands);
     }
 
-    private static void simulateJType(Configuration configuration, int opcode, int instructionWord) {
+    private static Instruction decodeJType(int opcode, int instructionWord) {
         int iindex = (instructionWord << 6) >> 6;
         int[] operands = {iindex};
 
         String mnemonic = MnemonicUtils.getMnemonicForJType(opcode);
-        executeInstruction(configuration, mnemonic, operands);
-    }
-
-    private static void executeInstruction(Configuration configuration, String mnemonic, int[] operands) {
-        Log.info("Executing instruction: " + mnemonic + " with operands: " + java.util.Arrays.toString(operands));
-        var instruction = InstructionRegistry.createForExecutor(mnemonic, operands);
-        instruction.execute(configuration);
+        return InstructionRegistry.createForExecutor(mnemonic, operands);
     }
 
 }
@@ -0,0 +1,134 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.exception.simulator.InvalidSnapshotException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.wars.engine.simulator.Configuration.PAGE_SIZE;
+
+// the state of a configuration at one point of a run, taken by Configuration.snapshot and put back by restore;
+// the memory pages are shared with the configuration it was taken from and with every configuration restored
+// from it, each of them copies a page before writing to it, so the arrays held here never change
+// stored big-endian as
+//   magic "WSNP", version, pc, running, pending interrupt causes, the gprs, spr count, the sprs
+//   page count, then (page number, the 4096 bytes) per page in increasing page order
+public final class Snapshot {
+    private static final int MAGIC = 0x57534E50;
+    private static final int VERSION = 1;
+
+    final long pc;
+    final boolean running;
+    final int pendingCauses;
+    final int[] gpr;
+    final int[] spr;
+    final Map<Integer, byte[]> pages;
+
+    Snapshot(long pc, boolean running, int pendingCauses, int[] gpr, int[] spr, Map<Integer, byte[]> pages) {
+        this.pc = pc;
+        this.running = running;
+        this.pendingCauses = pendingCauses;
+        this.gpr = gpr;
+        this.spr = spr;
+        this.pages = Collections.unmodifiableMap(pages);
+    }
+
+    public long getPC() {
+        return pc;
+    }
+
+    public int getRegister(int index) {
+        return gpr[index];
+    }
+
+    public int getSpr(int index) {
+        return spr[index];
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public void write(Path path) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(32 + 4 * gpr.length + 4 * spr.length + pages.size() * (4 + PAGE_SIZE));
+        out.putInt(MAGIC).putInt(VERSION).putLong(pc).putInt(running ? 1 : 0).putInt(pendingCauses);
+        for (int value : gpr) {
+            out.putInt(value);
+        }
+        out.putInt(spr.length);
+        for (int value : spr) {
+            out.putInt(value);
+        }
+
+        out.putInt(pages.size());
+        for (Map.Entry<Integer, byte[]> page : new TreeMap<>(pages).entrySet()) {
+            out.putInt(page.getKey()).put(page.getValue());
+        }
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    public static Snapshot read(Path path) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new InvalidSnapshotException(path + " is not a snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new InvalidSnapshotException("unsupported version " + version);
+            }
+
+            long pc = in.getLong();
+            boolean running = in.getInt() != 0;
+            int pendingCauses = in.getInt();
+            int[] gpr = new int[32];
+            in.asIntBuffer().get(gpr);
+            in.position(in.position() + 4 * gpr.length);
+
+            int sprCount = in.getInt();
+            if (sprCount != Spr.COUNT) {
+                throw new InvalidSnapshotException("expected " + Spr.COUNT + " special purpose registers, found " + sprCount);
+            }
+            int[] spr = new int[sprCount];
+            in.asIntBuffer().get(spr);
+            in.position(in.position() + 4 * spr.length);
+
+            int pageCount = in.getInt();
+            Map<Integer, byte[]> pages = new HashMap<>();
+            for (int i = 0; i < pageCount; i++) {
+                int pageNumber = in.getInt();
+                if (pageNumber >>> (32 - Configuration.PAGE_SHIFT) != 0) {
+                    throw new InvalidSnapshotException("page number " + pageNumber + " out of range");
+                }
+                byte[] page = new byte[PAGE_SIZE];
+                in.get(page);
+                if (pages.put(pageNumber, page) != null) {
+                    throw new InvalidSnapshotException("duplicate page " + pageNumber);
+                }
+            }
+            return new Snapshot(pc, running, pendingCauses, gpr, spr, pages);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new InvalidSnapshotException(path + " is truncated or corrupt");
+        }
+    }
+}
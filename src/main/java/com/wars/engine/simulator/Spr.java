@@ -0,0 +1,24 @@
+package com.wars.engine.simulator;
+
+// indices of the special purpose registers, in the order the kernel's pcb keeps them (SPR[0..7])
+public final class Spr {
+    public static final int SR = 0;
+    public static final int ESR = 1;
+    public static final int ECA = 2;
+    public static final int EPC = 3;
+    public static final int EDATA = 4;
+    public static final int PTO = 5;
+    public static final int PTL = 6;
+    public static final int MODE = 7;
+    // the mode an interrupt was taken in, restored by eret; not kept in the pcb
+    public static final int EMODE = 8;
+
+    public static final int COUNT = 9;
+
+    // MODE values
+    public static final int SYSTEM_MODE = 0;
+    public static final int USER_MODE = 1;
+
+    private Spr() {
+    }
+}
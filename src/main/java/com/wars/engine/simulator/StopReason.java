@@ -0,0 +1,10 @@
+package com.wars.engine.simulator;
+
+public enum StopReason {
+    HALTED,
+    UNMAPPED_PC,
+    STEP_LIMIT,
+    TIME_LIMIT,
+    PC_REACHED,
+    PREDICATE
+}
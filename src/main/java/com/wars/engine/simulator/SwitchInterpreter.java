@@ -0,0 +1,297 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.exception.simulator.UnalignedMemoryAccessException;
+import com.wars.engine.instruction.Instruction;
+
+import java.util.function.Predicate;
+
+import static com.wars.engine.simulator.Configuration.PAGE_SHIFT;
+
+class SwitchInterpreter {
+    private static final long CLOCK_CHECK_INTERVAL = 1 << 10;
+    // opcode 0 instructions are dispatched on FUNCT | fun, all others on their opcode
+    static final int FUNCT = 1 << 6;
+
+    static final int LW = 0b100011;
+    static final int SW = 0b101011;
+    static final int ADDI = 0b001000;
+    static final int ADDIU = 0b001001;
+    static final int SLTI = 0b001010;
+    static final int SLTIU = 0b001011;
+    static final int ANDI = 0b001100;
+    static final int ORI = 0b001101;
+    static final int XORI = 0b001110;
+    static final int LUI = 0b001111;
+    static final int REGIMM = 0b000001;
+    static final int BEQ = 0b000100;
+    static final int BNE = 0b000101;
+    static final int BLEZ = 0b000110;
+    static final int BGTZ = 0b000111;
+    static final int J = 0b000010;
+    static final int JAL = 0b000011;
+
+    static final int SRL = FUNCT | 0b000010;
+    static final int ADD = FUNCT | 0b100000;
+    static final int ADDU = FUNCT | 0b100001;
+    static final int SUB = FUNCT | 0b100010;
+    static final int SUBU = FUNCT | 0b100011;
+    static final int AND = FUNCT | 0b100100;
+    static final int OR = FUNCT | 0b100101;
+    static final int XOR = FUNCT | 0b100110;
+    static final int NOR = FUNCT | 0b100111;
+    static final int SLT = FUNCT | 0b101010;
+    static final int SLTU = FUNCT | 0b101011;
+    static final int JR = FUNCT | 0b001000;
+    static final int JALR = FUNCT | 0b001001;
+    static final int SYSC = FUNCT | 0b001100;
+
+    static SimulationResult run(Configuration c, SimulationOptions options) {
+        ExecutionListener listener = options.getListener();
+        Predicate<Configuration> untilPredicate = options.getUntilPredicate();
+        long maxSteps = options.getMaxSteps() == SimulationOptions.UNLIMITED ? Long.MAX_VALUE : options.getMaxSteps();
+        long untilPC = options.getUntilPC();
+        boolean timed = options.getTimeLimitNanos() != SimulationOptions.UNLIMITED;
+        boolean hooked = timed || untilPC != SimulationOptions.UNLIMITED || untilPredicate != null;
+        boolean fuse = options.fusesMacros();
+        DecodedInstructionCache decodedInstructions = c.getDecodedInstructions();
+
+        int[] gpr = new int[32];
+        c.loadRegisters(gpr);
+        long pc = c.getPC();
+        int mappedPage = -1;
+
+        long start = System.nanoTime();
+        long deadline = start + options.getTimeLimitNanos();
+        long nextClockCheck = 0;
+        long steps = 0;
+        StopReason stopReason;
+
+        try {
+            while (true) {
+                if (!c.isRunning()) {
+                    stopReason = StopReason.HALTED;
+                    break;
+                }
+
+                if (steps >= maxSteps) {
+                    stopReason = StopReason.STEP_LIMIT;
+                    break;
+                }
+
+                if (c.isInterruptPending()) {
+                    writeBack(c, gpr, pc);
+                    c.takeInterrupt();
+                    pc = c.getPC();
+                }
+
+                int PC = (int) pc;
+
+                if (hooked) {
+                    if (timed && steps >= nextClockCheck) {
+                        if (System.nanoTime() - deadline >= 0) {
+                            stopReason = StopReason.TIME_LIMIT;
+                            break;
+                        }
+                        nextClockCheck = steps + CLOCK_CHECK_INTERVAL;
+                    }
+
+                    if (untilPC != SimulationOptions.UNLIMITED && Integer.toUnsignedLong(PC) == untilPC) {
+                        stopReason = StopReason.PC_REACHED;
+                        break;
+                    }
+
+                    if (untilPredicate != null) {
+                        writeBack(c, gpr, pc);
+                        if (untilPredicate.test(c)) {
+                            stopReason = StopReason.PREDICATE;
+                            break;
+                        }
+                        mappedPage = -1;
+                    }
+                }
+
+                try {
+                    int fetchAddress = c.translateFetch(PC);
+                    // the program never unmaps pages, so only a page change needs the lookup; callbacks may
+                    // restore a snapshot with other pages, so the page is looked up again after each of them
+                    if ((fetchAddress >>> PAGE_SHIFT) != mappedPage) {
+                        if (!c.hasWordAt(fetchAddress)) {
+                            stopReason = StopReason.UNMAPPED_PC;
+                            break;
+                        }
+                        mappedPage = fetchAddress >>> PAGE_SHIFT;
+                    }
+
+                    if (PC % 4 != 0) {
+                        throw new UnalignedMemoryAccessException(PC);
+                    }
+
+                    int word = c.fetchWord(fetchAddress);
+
+                    if (listener != null) {
+                        writeBack(c, gpr, pc);
+                        listener.onInstruction(steps, PC, Simulator.decode(word), c);
+                        mappedPage = -1;
+                    }
+
+                    if (fuse && !c.isUserMode() && FusedMacro.isCandidate(word)
+                            && Simulator.fetch(c, decodedInstructions, PC) instanceof FusedMacro fused) {
+                        long fusedSteps = fused.execute(gpr, maxSteps - steps);
+                        if (fusedSteps >= 0) {
+                            pc += 4L * fused.length();
+                            steps += fusedSteps;
+                            continue;
+                        }
+                    }
+
+                    int rs = (word >>> 21) & 31;
+                    int rt = (word >>> 16) & 31;
+                    int rd = (word >>> 11) & 31;
+                    int imm = (word << 16) >> 16;
+
+                    switch (dispatchKey(word)) {
+                        case LW -> {
+                            int address = gpr[rs] + imm;
+                            if (address % 4 != 0) {
+                                throw new UnalignedMemoryAccessException(address);
+                            }
+                            gpr[rt] = c.loadWord(address);
+                            pc += 4;
+                        }
+                        case SW -> {
+                            int address = gpr[rs] + imm;
+                            if (address % 4 != 0) {
+                                throw new UnalignedMemoryAccessException(address);
+                            }
+                            c.storeWord(address, gpr[rt]);
+                            pc += 4;
+                        }
+                        case ADDI, ADDIU -> {
+                            gpr[rt] = gpr[rs] + imm;
+                            pc += 4;
+                        }
+                        case SLTI -> {
+                            gpr[rt] = gpr[rs] < imm ? 1 : 0;
+                            pc += 4;
+                        }
+                        case SLTIU -> {
+                            gpr[rt] = Integer.toUnsignedLong(gpr[rs]) < (imm & 0xFFFF) ? 1 : 0;
+                            pc += 4;
+                        }
+                        case ANDI -> {
+                            // andi and xori use the sign-extended immediate, as in the reference
+                            gpr[rt] = gpr[rs] & imm;
+                            pc += 4;
+                        }
+                        case ORI -> {
+                            gpr[rt] = gpr[rs] | (imm & 0xFFFF);
+                            pc += 4;
+                        }
+                        case XORI -> {
+                            gpr[rt] = gpr[rs] ^ imm;
+                            pc += 4;
+                        }
+                        case LUI -> {
+                            gpr[rt] = imm << 16;
+                            pc += 4;
+                        }
+                        case REGIMM -> {
+                            if (rt == 0b00000) {
+                                pc += gpr[rs] < 0 ? imm << 2 : 4;
+                            } else if (rt == 0b00001) {
+                                pc += gpr[rs] >= 0 ? imm << 2 : 4;
+                            } else {
+                                pc = executeReference(c, gpr, pc, word);
+                            }
+                        }
+                        case BEQ -> pc += gpr[rs] == gpr[rt] ? imm << 2 : 4;
+                        case BNE -> pc += gpr[rs] != gpr[rt] ? imm << 2 : 4;
+                        case BLEZ -> pc += gpr[rs] <= 0 ? imm << 2 : 4;
+                        case BGTZ -> pc += gpr[rs] > 0 ? imm << 2 : 4;
+                        case J -> pc += (word << 6) >> 6;
+                        case JAL -> {
+                            gpr[31] = (int) (pc + 4);
+                            pc += (word << 6) >> 6;
+                        }
+                        case SRL -> {
+                            gpr[rd] = gpr[rt] >>> ((word >>> 6) & 31);
+                            pc += 4;
+                        }
+                        case ADD, ADDU -> {
+                            gpr[rd] = gpr[rs] + gpr[rt];
+                            pc += 4;
+                        }
+                        case SUB, SUBU -> {
+                            gpr[rd] = gpr[rs] - gpr[rt];
+                            pc += 4;
+                        }
+                        case AND -> {
+                            gpr[rd] = gpr[rs] & gpr[rt];
+                            pc += 4;
+                        }
+                        case OR -> {
+                            gpr[rd] = gpr[rs] | gpr[rt];
+                            pc += 4;
+                        }
+                        case XOR -> {
+                            gpr[rd] = gpr[rs] ^ gpr[rt];
+                            pc += 4;
+                        }
+                        case NOR -> {
+                            gpr[rd] = ~(gpr[rs] | gpr[rt]);
+                            pc += 4;
+                        }
+                        case SLT -> {
+                            gpr[rd] = gpr[rs] < gpr[rt] ? 1 : 0;
+                            pc += 4;
+                        }
+                        case SLTU -> {
+                            gpr[rd] = Integer.compareUnsigned(gpr[rs], gpr[rt]) < 0 ? 1 : 0;
+                            pc += 4;
+                        }
+                        case JR -> pc = gpr[rs];
+                        case JALR -> {
+                            // the link is written before rs is read, as in the reference
+                            gpr[rd] = (int) (pc + 4);
+                            gpr[0] = 0;
+                            pc = gpr[rs];
+                        }
+                        default -> pc = executeReference(c, gpr, pc, word);
+                    }
+
+                } catch (Mmu.PageFault e) {
+                    writeBack(c, gpr, pc);
+                    c.enterPageFault();
+                    pc = c.getPC();
+                }
+
+                gpr[0] = 0;
+                steps++;
+            }
+        } finally {
+            writeBack(c, gpr, pc);
+        }
+
+        return new SimulationResult(c, steps, stopReason, System.nanoTime() - start);
+    }
+
+    static int dispatchKey(int word) {
+        int opcode = word >>> 26;
+        return opcode == 0 ? FUNCT | (word & 0x3F) : opcode;
+    }
+
+    // rare instructions (sysc, eret, movg2s, movs2g) and invalid words go through the reference executors,
+    // which also raise the exceptions of sysc and of movg2s and movs2g in user mode
+    private static long executeReference(Configuration c, int[] gpr, long pc, int word) {
+        writeBack(c, gpr, pc);
+        Instruction instruction = Simulator.decode(word);
+        instruction.execute(c);
+        c.loadRegisters(gpr);
+        return c.getPC();
+    }
+
+    private static void writeBack(Configuration c, int[] gpr, long pc) {
+        c.storeRegisters(gpr);
+        c.setPC(pc);
+    }
+}
@@ -0,0 +1,90 @@
+package com.wars.engine.simulator;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+class TranslatedBlockCache {
+    private static final int WORDS_PER_PAGE = Configuration.PAGE_SIZE >>> 2;
+    static final int HOT_THRESHOLD = 256;
+    private final Map<Integer, Page> pages;
+    private final BitSet translatedPages;
+    private int lastPageNumber;
+    private Page lastPage;
+
+    TranslatedBlockCache() {
+        this.pages = new HashMap<>();
+        this.translatedPages = new BitSet();
+        this.lastPageNumber = -1;
+        this.lastPage = null;
+    }
+
+    // counts entries at PC and returns its block once it is hot, null while still cold
+    CompiledBlock lookup(Configuration c, int PC) {
+        if ((PC & 3) != 0) {
+            return null;
+        }
+
+        Page page = findPage(PC >>> Configuration.PAGE_SHIFT);
+        int index = (PC & Configuration.PAGE_MASK) >>> 2;
+        CompiledBlock block = page.blocks[index];
+
+        if (block == null && page.counters[index] < HOT_THRESHOLD && ++page.counters[index] == HOT_THRESHOLD) {
+            if (!c.hasWordAt(PC)) {
+                return null;
+            }
+
+            // untranslatable starts keep their counter above the threshold and are not retried
+            block = BlockTranslator.translate(c, PC);
+            if (block != null) {
+                page.blocks[index] = block;
+                translatedPages.set(PC >>> Configuration.PAGE_SHIFT);
+            }
+        }
+
+        return block;
+    }
+
+    boolean isTranslated(int address) {
+        return translatedPages.get(address >>> Configuration.PAGE_SHIFT);
+    }
+
+    // drops every block and hotness counter of the page, so it is interpreted until hot again
+    void invalidate(int address) {
+        int pageNumber = address >>> Configuration.PAGE_SHIFT;
+        if (!translatedPages.get(pageNumber)) {
+            return;
+        }
+
+        translatedPages.clear(pageNumber);
+        pages.remove(pageNumber);
+        if (pageNumber == lastPageNumber) {
+            lastPageNumber = -1;
+            lastPage = null;
+        }
+    }
+
+    void invalidate(int address, long len) {
+        long end = Math.min(Integer.toUnsignedLong(address) + len, 1L << 32);
+        for (long pageStart = Integer.toUnsignedLong(address); pageStart < end;
+             pageStart = (pageStart | Configuration.PAGE_MASK) + 1) {
+            invalidate((int) pageStart);
+        }
+    }
+
+    private Page findPage(int pageNumber) {
+        if (pageNumber == lastPageNumber) {
+            return lastPage;
+        }
+
+        Page page = pages.computeIfAbsent(pageNumber, k -> new Page());
+        lastPageNumber = pageNumber;
+        lastPage = page;
+        return page;
+    }
+
+    private static class Page {
+        private final CompiledBlock[] blocks = new CompiledBlock[WORDS_PER_PAGE];
+        private final int[] counters = new int[WORDS_PER_PAGE];
+    }
+}
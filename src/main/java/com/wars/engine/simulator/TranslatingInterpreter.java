@@ -0,0 +1,106 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.instruction.Instruction;
+
+class TranslatingInterpreter {
+    private static final long CLOCK_CHECK_INTERVAL = 1 << 10;
+
+    static SimulationResult run(Configuration c, SimulationOptions options) {
+        // blocks run many instructions per dispatch, per-step hooks need the reference loop
+        if (options.getListener() != null || options.getUntilPredicate() != null
+                || options.getUntilPC() != SimulationOptions.UNLIMITED) {
+            return Simulator.runReference(c, options);
+        }
+
+        DecodedInstructionCache decodedInstructions = c.getDecodedInstructions();
+        TranslatedBlockCache translatedBlocks = c.getTranslatedBlocks();
+        int[] gpr = c.registers();
+        long maxSteps = options.getMaxSteps() == SimulationOptions.UNLIMITED ? Long.MAX_VALUE : options.getMaxSteps();
+        boolean timed = options.getTimeLimitNanos() != SimulationOptions.UNLIMITED;
+        boolean fuse = options.fusesMacros();
+
+        long start = System.nanoTime();
+        long deadline = start + options.getTimeLimitNanos();
+        long nextClockCheck = 0;
+        long steps = 0;
+        StopReason stopReason;
+
+        while (true) {
+            if (!c.isRunning()) {
+                stopReason = StopReason.HALTED;
+                break;
+            }
+
+            if (steps >= maxSteps) {
+                stopReason = StopReason.STEP_LIMIT;
+                break;
+            }
+
+            if (timed && steps >= nextClockCheck) {
+                if (System.nanoTime() - deadline >= 0) {
+                    stopReason = StopReason.TIME_LIMIT;
+                    break;
+                }
+                nextClockCheck = steps + CLOCK_CHECK_INTERVAL;
+            }
+
+            // blocks end at every branch, so an interrupt waits at most one block
+            if (c.isInterruptPending()) {
+                c.takeInterrupt();
+            }
+
+            long pc = c.getPC();
+            int PC = (int) pc;
+            // blocks and fused macros are laid out by physical address, user mode code is interpreted
+            boolean system = !c.isUserMode();
+
+            // fused macros go first, so their start never becomes hot enough to be translated;
+            // one is found once its first word was interpreted and decoded
+            if (system && fuse && pc == PC && (PC & 3) == 0
+                    && decodedInstructions.get(PC) instanceof FusedMacro fused) {
+                long fusedSteps = fused.execute(gpr, maxSteps - steps);
+                if (fusedSteps >= 0) {
+                    c.setPC(pc + 4L * fused.length());
+                    steps += fusedSteps;
+                    continue;
+                }
+            }
+
+            CompiledBlock block = system && pc == PC ? translatedBlocks.lookup(c, PC) : null;
+
+            // a block is only entered when the whole of it fits in the step budget
+            if (block != null && maxSteps - steps >= block.length) {
+                try {
+                    c.setPC(block.run(gpr, c));
+                    steps += block.length;
+                } catch (BlockRuntime.CodeModifiedException e) {
+                    // the store itself completed, the rest of the block is interpreted
+                    steps += block.executed + 1;
+                    c.setPC(block.startPC + 4L * (block.executed + 1));
+                } catch (RuntimeException e) {
+                    steps += block.executed;
+                    c.setPC(block.startPC + 4L * block.executed);
+                    throw e;
+                }
+                continue;
+            }
+
+            try {
+                Instruction instruction = Simulator.fetch(c, decodedInstructions, PC);
+
+                if (instruction == null) {
+                    stopReason = StopReason.UNMAPPED_PC;
+                    break;
+                }
+
+                instruction.execute(c);
+            } catch (Mmu.PageFault e) {
+                c.enterPageFault();
+            }
+
+            steps++;
+        }
+
+        return new SimulationResult(c, steps, stopReason, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,57 @@
+package com.wars.engine.trace;
+
+import com.wars.engine.instruction.Instruction;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.ExecutionListener;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+public class BinaryTraceWriter implements ExecutionListener, Closeable {
+    // header: MAGIC, VERSION; then one (pc, instruction word) pair of big-endian ints per step
+    public static final int MAGIC = 0x57545243; // "WTRC"
+    public static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private long records;
+
+    public BinaryTraceWriter(OutputStream outputStream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        this.records = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void onInstruction(long step, int pc, Instruction instruction, Configuration c) {
+        try {
+            out.writeInt(pc);
+            out.writeInt(instruction.encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        records++;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
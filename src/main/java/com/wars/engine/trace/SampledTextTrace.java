@@ -0,0 +1,28 @@
+package com.wars.engine.trace;
+
+import com.wars.engine.instruction.Instruction;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.ExecutionListener;
+import com.wars.engine.util.Log;
+
+public class SampledTextTrace implements ExecutionListener {
+    private final long period;
+
+    public SampledTextTrace() {
+        this(1);
+    }
+
+    public SampledTextTrace(long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Sampling period must be positive: " + period);
+        }
+        this.period = period;
+    }
+
+    @Override
+    public void onInstruction(long step, int pc, Instruction instruction, Configuration c) {
+        if (step % period == 0) {
+            Log.info("Executing instruction at " + pc + " (step " + step + "): " + instruction);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.wars.engine.util;
 
 import com.wars.compiler.codegen.CodeGenerator;
+import com.wars.compiler.codegen.CompilationCache;
 import com.wars.compiler.config.Configuration;
-import com.wars.compiler.dk.DK1;
+import com.wars.compiler.config.MemoryLayout;
 import com.wars.compiler.dk.GenerateAutomaton;
+import com.wars.compiler.dk.ParseTable;
 import com.wars.compiler.grammar.Grammar;
 import com.wars.compiler.table.FunctionTable;
 import com.wars.compiler.table.MemoryTable;
@@ -15,15 +17,18 @@ import com.wars.engine.assembler.Assembler;
 import java.util.List;
 import java.util.LinkedList;
 
-import static com.wars.compiler.util.Context.DEBUG;
-
 public class CodeTranslation {
 
-    public static String grammarFilePath = "src/main/java/com/wars/compiler/grammar/Grammar.txt";
-    public static String terminalsFilePath = "src/main/java/com/wars/compiler/grammar/Terminals.txt";
-    public static boolean generated = false; 
-    public static Grammar g;
-    public static DK1 dk1; 
+    public static final String grammarFilePath = "src/main/java/com/wars/compiler/grammar/Grammar.txt";
+    public static final String terminalsFilePath = "src/main/java/com/wars/compiler/grammar/Terminals.txt";
+    // parse names, numbers and asm bodies as single tokens instead of character by character, read by initialize
+    private static boolean tokenClasses = true;
+    // the grammar and parse table are built once and only read afterwards, so every thread shares them;
+    // they are published together, so a translation never mixes the tables of two lexer modes
+    private static volatile Tables tables;
+
+    private record Tables(Grammar g, ParseTable parseTable) {
+    }
 
     public static void fillTables(DTE program) {
         TypeUtils.checkTokenType(program, "<prog>");
@@ -43,7 +48,7 @@ public class CodeTranslation {
             FunctionTable.getInstance().fillTable(current);
         }
 
-        if (DEBUG) {
+        if (Configuration.getInstance().isDebug()) {
             TypeTable.getInstance().printTable();
             MemoryTable.getInstance().printTable();
             FunctionTable.getInstance().printTable();
@@ -51,43 +56,80 @@ public class CodeTranslation {
     }
 
     public static void initialize() throws Exception {
-        if (!generated){
-            g = new Grammar(grammarFilePath, terminalsFilePath);
-            dk1 = GenerateAutomaton.generateAutomaton(grammarFilePath, terminalsFilePath, g);
-            generated = true; 
-        }
+        load();
     }
-    
-    public static String C0Translation(String code) {
 
-        try{ 
-            initialize();
+    private static synchronized Tables load() throws Exception {
+        if (tables == null) {
+            Grammar g = new Grammar(grammarFilePath, terminalsFilePath, tokenClasses);
+            tables = new Tables(g, GenerateAutomaton.generateParseTable(g));
         }
-        catch(Exception e){
-            throw new RuntimeException(e);
+        return tables;
+    }
+
+    // the tables of the other lexer mode are built by the next initialize
+    public static synchronized void setTokenClasses(boolean tokenClasses) {
+        if (CodeTranslation.tokenClasses != tokenClasses) {
+            CodeTranslation.tokenClasses = tokenClasses;
+            tables = null;
         }
+    }
 
-        DTE parsedT = dk1.parseString(code);
-        fillTables(parsedT);
-        
-        CodeGenerator.getInstance().setGrammar(g);
-        CodeGenerator.getInstance().generateCode();
+    public static ParseTable getParseTable() {
+        return tables().parseTable();
+    }
 
-        String translation;
-        try {
-            translation = CodeGenerator.getInstance().getInstructions(true);
-        }
-        catch(Exception e){
-            throw new RuntimeException(e);
+    private static Tables tables() {
+        Tables current = tables;
+        if (current == null) {
+            try {
+                current = load();
+            }
+            catch(Exception e){
+                throw new RuntimeException(e);
+            }
         }
+        return current;
+    }
+    
+    public static String C0Translation(String code) {
+        return C0Translation(code, MemoryLayout.DEFAULT);
+    }
+
+    public static String C0Translation(String code, MemoryLayout layout) {
+        return C0Translation(code, layout, null);
+    }
 
-        TypeTable.reset();
-        MemoryTable.reset();
-        FunctionTable.reset();
-        Configuration.reset();
-        CodeGenerator.reset();
+    // the tables, configuration and code generator belong to the calling thread and are reset even when the
+    // code does not compile, so programs can be translated on several threads at once.
+    // debugging is off unless turned on in the thread's configuration before the call, and only for that call.
+    // with a cache, only the functions that changed since the last translation with it are generated again
+    public static String C0Translation(String code, MemoryLayout layout, CompilationCache cache) {
 
-        return translation;
+        try {
+            Configuration.getInstance().setLayout(layout);
+            Tables current = tables();
+
+            DTE parsedT = current.parseTable().parseString(code);
+            fillTables(parsedT);
+
+            CodeGenerator.getInstance().setGrammar(current.g());
+            CodeGenerator.getInstance().setCache(cache);
+            CodeGenerator.getInstance().generateCode();
+
+            try {
+                return CodeGenerator.getInstance().getInstructions(true);
+            }
+            catch(Exception e){
+                throw new RuntimeException(e);
+            }
+        } finally {
+            TypeTable.reset();
+            MemoryTable.reset();
+            FunctionTable.reset();
+            Configuration.reset();
+            CodeGenerator.reset();
+        }
 
     }
     
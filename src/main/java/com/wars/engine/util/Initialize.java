@@ -24,6 +24,5 @@ public class Initialize {
     public static final int SMBASE = (SMSIZE - p * SMUSERPAGE);
     
     public static final int bootLoaderInit = 4;
-    public static int gammaAddress = 1255; 
     
 }
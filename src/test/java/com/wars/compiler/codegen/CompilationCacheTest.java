@@ -0,0 +1,63 @@
+package com.wars.compiler.codegen;
+
+import com.wars.compiler.config.MemoryLayout;
+import com.wars.engine.c0program.C0Program;
+import com.wars.engine.util.CodeTranslation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompilationCacheTest {
+
+    private static String program(String f, String globals) {
+        return C0Program.toC0Grammar(globals + "int g;"
+                + " " + f + ";"
+                + " void h(){g = f(2)};"
+                + " int main(){h(); g = f(g); return g}~");
+    }
+
+    private static final String F = "int f(int a){return a + 1}";
+
+    private static String translate(String code, CompilationCache cache) {
+        return CodeTranslation.C0Translation(code, MemoryLayout.DEFAULT, cache);
+    }
+
+    // Translates the program with the cache and checks the code is the same as without it,
+    // returns the number of functions generated.
+    private static int generated(String code, CompilationCache cache) {
+        int before = cache.getGeneratedCount();
+        assertEquals(translate(code, null), translate(code, cache));
+        return cache.getGeneratedCount() - before;
+    }
+
+    @Test
+    void test_unchanged_program_reuses_every_function() {
+        CompilationCache cache = new CompilationCache();
+        String code = program(F, "");
+
+        assertEquals(3, generated(code, cache));
+        assertEquals(0, generated(code, cache));
+        assertEquals(3, cache.getReusedCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void test_changed_body_regenerates_only_its_function() {
+        CompilationCache cache = new CompilationCache();
+        generated(program(F, ""), cache);
+
+        assertEquals(1, generated(program("int f(int a){return a + 2}", ""), cache));
+        assertEquals(1, generated(program(F, ""), cache));
+    }
+
+    @Test
+    void test_changed_declarations_regenerate_their_readers() {
+        CompilationCache cache = new CompilationCache();
+        generated(program(F, ""), cache);
+
+        // a local variable changes the frame of 'f', which its callers set up
+        assertEquals(3, generated(program("int f(int a){int b; b = a; return b + 1}", ""), cache));
+        // global declarations are read by every function
+        assertEquals(3, generated(program(F, "int k;"), cache));
+    }
+}
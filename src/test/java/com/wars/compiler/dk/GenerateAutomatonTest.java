@@ -0,0 +1,64 @@
+package com.wars.compiler.dk;
+
+import com.wars.compiler.grammar.Grammar;
+import com.wars.engine.util.CodeTranslation;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerateAutomatonTest {
+
+    private static Grammar grammar(boolean tokenClasses) throws Exception {
+        return new Grammar(CodeTranslation.grammarFilePath, CodeTranslation.terminalsFilePath, tokenClasses);
+    }
+
+    private static void assertSameTable(ParseTable expected, ParseTable actual) {
+        assertEquals(expected.getStateCount(), actual.getStateCount());
+        assertEquals(expected.getEntryCount(), actual.getEntryCount());
+        for (int state = 0; state < expected.getStateCount(); state++) {
+            assertEquals(expected.endAction(state), actual.endAction(state));
+            for (int symbol = 0; symbol < expected.getSymbolCount(); symbol++) {
+                assertEquals(expected.action(state, symbol), actual.action(state, symbol));
+            }
+        }
+    }
+
+    @Test
+    void test_cache_key_depends_on_the_grammar() throws Exception {
+        assertEquals(GenerateAutomaton.cacheKey(grammar(true)), GenerateAutomaton.cacheKey(grammar(true)));
+        assertNotEquals(GenerateAutomaton.cacheKey(grammar(false)), GenerateAutomaton.cacheKey(grammar(true)));
+        assertEquals(64, GenerateAutomaton.cacheKey(grammar(true)).length());
+    }
+
+    @Test
+    void test_generated_tables_are_stored_and_loaded() throws Exception {
+        String previous = System.getProperty(GenerateAutomaton.CACHE_PROPERTY);
+        Path directory = Files.createTempDirectory("dk1-cache");
+        System.setProperty(GenerateAutomaton.CACHE_PROPERTY, directory.toString());
+        try {
+            Grammar g = grammar(true);
+            String key = GenerateAutomaton.cacheKey(g);
+            ParseTable generated = GenerateAutomaton.generateForGrammar(g);
+            Path file = directory.resolve(key + ".table");
+            assertTrue(Files.exists(file));
+
+            assertSameTable(generated, ParseTable.load(file, GenerateAutomaton.fingerprint(key)));
+            // the build bundles tables on the classpath, which are looked up before the cache directory
+            assertSameTable(generated, GenerateAutomaton.generateParseTable(g));
+            try (var files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty(GenerateAutomaton.CACHE_PROPERTY);
+            } else {
+                System.setProperty(GenerateAutomaton.CACHE_PROPERTY, previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.wars.compiler.grammar;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexerTest {
+    private static final String GRAMMAR = "src/main/java/com/wars/compiler/grammar/Grammar.txt";
+    private static final String TERMINALS = "src/main/java/com/wars/compiler/grammar/Terminals.txt";
+
+    private static Lexer lexer(String... terminals) {
+        List<Symbol> symbols = new ArrayList<>();
+        Stream.of(terminals).forEach(t -> symbols.add(new Symbol(t, Symbol.SymbolType.Terminal)));
+        symbols.add(new Symbol("<E>", Symbol.SymbolType.Nonterminal));
+        return new Lexer(symbols);
+    }
+
+    private static List<String> contents(Lexer.Tokens tokens) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            result.add(tokens.symbol(i).getContent());
+        }
+        return result;
+    }
+
+    @Test
+    void test_longest_symbol_wins() {
+        Lexer lexer = lexer("i", "n", "t", "int", "<", "=", "<=", "E", ">", " ");
+        Lexer.Tokens tokens = lexer.tokenize("int<=<E>in<E");
+
+        assertEquals(List.of("int", "<=", "<E>", "i", "n", "<", "E"), contents(tokens));
+        assertEquals(List.of(0, 3, 5, 8, 9, 10, 11),
+                Stream.iterate(0, i -> i + 1).limit(tokens.size()).map(tokens::offset).toList());
+    }
+
+    @Test
+    void test_extra_whitespace_is_removed() {
+        Lexer lexer = lexer("a", "b", "=", "(", " ", "\t", "\n");
+
+        assertEquals(List.of("a", " ", "b"), contents(lexer.tokenize("\ta  \n b ")));
+        assertEquals(List.of("a", "=", "b"), contents(lexer.tokenize("a = b")));
+        assertEquals(List.of("a", " ", "(", "b"), contents(lexer.tokenize("a (b")));
+
+        Lexer.Tokens tokens = lexer.tokenize("\n\na  b");
+        assertEquals(2, tokens.offset(0));
+        assertEquals(4, tokens.offset(1));
+        assertEquals(5, tokens.offset(2));
+    }
+
+    @Test
+    void test_unknown_character_fails_with_its_offset() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> lexer("a").tokenize("aa?a"));
+        assertEquals("Can't find the first symbol at offset 2 in this string:  ?a", e.getMessage());
+    }
+
+    @Test
+    void test_productions_share_the_symbols_of_the_grammar() throws Exception {
+        Grammar g = new Grammar(GRAMMAR, TERMINALS);
+        Production first = g.getProductions().get(0);
+
+        assertEquals("<prog> -> [<TyDS>, ;, <VaDS>, ;, <FuDS>, ~]", first.toString());
+        assertSame(g.getProductions().get(2).getRight().get(0), first.getRight().get(0));
+    }
+
+    @Test
+    void test_token_classes_carry_their_lexeme() throws Exception {
+        Grammar g = new Grammar(GRAMMAR, TERMINALS, true);
+        List<Symbol> symbols = new ArrayList<>(g.getTerminals());
+        symbols.addAll(g.getNonterminals());
+        Lexer lexer = new Lexer(symbols);
+
+        Lexer.Tokens tokens = lexer.tokenize("int integer;x1=12u;asm( lw 2 1 0 ,  4 );y=gpr(3)");
+        assertEquals(List.of("int", " ", "integer", ";", "x1", "=", "12", "u", ";", "asm", "(", " ", "lw 2 1 0, 4", " ",
+                ")", ";", "y", "=", "gpr", "(", "3", ")"), contents(tokens));
+        assertEquals(TokenClass.NAME.getTerminal(), symbols.get(tokens.id(2)));
+        assertEquals(TokenClass.DIGITS.getTerminal(), symbols.get(tokens.id(6)));
+        assertEquals(TokenClass.ASM.getTerminal(), symbols.get(tokens.id(12)));
+        assertEquals(24, tokens.offset(12));
+    }
+
+    @Test
+    void test_reduced_grammar_derives_token_classes_in_one_step() throws Exception {
+        Grammar g = new Grammar(GRAMMAR, TERMINALS, true);
+
+        assertEquals(List.of(List.of(TokenClass.NAME.getTerminal())), g.getProductions().stream()
+                .filter(p -> p.getLeft().equals(TokenClass.NAME.getNonterminal())).map(Production::getRight).toList());
+        assertFalse(g.getNonterminals().contains(new Symbol("<Le>", Symbol.SymbolType.Nonterminal)));
+        assertFalse(g.getTerminals().contains(new Symbol("x", Symbol.SymbolType.Terminal)));
+        assertTrue(g.getTerminals().contains(new Symbol("u", Symbol.SymbolType.Terminal)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.wars.compiler.tree;
+
+import com.wars.engine.util.CodeTranslation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseTreeTest {
+    private static final String PROGRAM = "int x;int main(){x = 7 + 35;asm( addi 1 1 , 2 );return x}~";
+
+    private static DTE parse(String code) {
+        return CodeTranslation.getParseTable().parseString(code);
+    }
+
+    @Test
+    void test_border_words_follow_the_removed_whitespace() {
+        DTE prog = parse(PROGRAM);
+        assertEquals(PROGRAM.replace(" = ", "=").replace(" + ", "+").replace("1 , 2", "1,2"), prog.getBorderWord());
+
+        DTE vad = prog.getFirstSon().getFirstSon();
+        assertTrue(vad.isType("<VaD>"));
+        assertEquals("int x", vad.getBorderWord());
+        // the blank between the type and the name is skipped by the cursors
+        assertEquals("x", vad.getNthSon(2).getBorderWord());
+        assertTrue(vad.getNthSon(2).isType("<Na>"));
+        assertTrue(vad.getNthSon(2).getFirstSon().isType("x"));
+        assertNull(vad.getNthSon(2).getBrother());
+    }
+
+    @Test
+    void test_cursors_on_the_same_node_are_equal() {
+        DTE prog = parse(PROGRAM);
+        DTE first = prog.getFirstSon();
+        DTE again = first.getBrother().getFather().getFirstSon();
+
+        assertNotSame(first, again);
+        assertEquals(first, again);
+        assertEquals(first.hashCode(), again.hashCode());
+        assertEquals(prog, first.getFather());
+        assertNull(prog.getFather());
+    }
+
+    @Test
+    void test_asm_body_is_one_leaf() {
+        DTE content = find(parse(PROGRAM), "<ASM>");
+
+        assertEquals("addi 1 1,2", content.getBorderWord());
+        assertEquals("addi 1 1,2", content.getFirstSon().labelContent());
+        assertNull(content.getFirstSon().getFirstSon());
+        assertEquals(1, content.getFirstSon().getSiblingCount());
+        assertTrue(content.getFather().getFirstSon().isType("asm"));
+    }
+
+    private static DTE find(DTE dte, String type) {
+        if (dte.isType(type)) {
+            return dte;
+        }
+        for (DTE son = dte.getFirstSon(); son != null; son = son.getBrother()) {
+            DTE found = find(son, type);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,213 @@
+package com.wars.engine.assembler;
+
+import com.wars.engine.exception.assembler.InvalidObjectFileException;
+import com.wars.engine.exception.assembler.label.InvalidLabelException;
+import com.wars.engine.exception.assembler.operand.SignedOperandOutOfBoundsException;
+import com.wars.engine.label.Fixup;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.Simulator;
+import com.wars.engine.util.Initialize;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AssemblerTest {
+    private static final String MIPS_PROGRAMS = "src/main/resources/mips programs/";
+
+    @ParameterizedTest
+    @MethodSource("providePrograms")
+    void test_buffer_and_channel_output_match_code_array(String program) throws IOException {
+        String source = Files.readString(Path.of(MIPS_PROGRAMS + program));
+        int[] expected = new Assembler(source, 0).toIntCodeArray();
+
+        IntBuffer buffer = IntBuffer.allocate(expected.length + 3);
+        buffer.position(3);
+        assertEquals(expected.length, new Assembler(source, 0).assembleTo(buffer));
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 3, buffer.position()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(expected.length, new Assembler(source, 0).assembleTo(Channels.newChannel(bytes)));
+        assertArrayEquals(expected, toWords(bytes.toByteArray()));
+    }
+
+    @Test
+    void test_tokenizer_accepts_tabs_and_macro_punctuation() {
+        int[] spaced = new Assembler("addi 1 0 5\nmacro: mul 3 1 1\n_end:\nj _end", 0).toIntCodeArray();
+        int[] punctuated = new Assembler("\taddi\t1  0 5\n  macro: mul(3,1, 1)  \n_end:\n\tj   _end\n", 0).toIntCodeArray();
+
+        assertArrayEquals(spaced, punctuated);
+        assertEquals(12, spaced.length);
+    }
+
+    @Test
+    void test_function_labels_are_defined_and_invalid_labels_rejected() {
+        int[] underscored = new Assembler("_copy:\naddi 1 0 5\nsysc", 0).toIntCodeArray();
+        assertArrayEquals(underscored, new Assembler("copy:\naddi 1 0 5\nsysc", 0).toIntCodeArray());
+
+        assertThrows(InvalidLabelException.class, () -> new Assembler("addi 1 0 5\n_loop1:\nsysc", 0).toIntCodeArray());
+        assertThrows(InvalidLabelException.class, () -> new Assembler("_:\nsysc", 0).toIntCodeArray());
+    }
+
+    @Test
+    void test_label_offsets_out_of_range_are_rejected() {
+        int j = new Assembler("j 0", 0).toIntCodeArray()[0];
+        int beq = new Assembler("beq 0 0 0", 0).toIntCodeArray()[0];
+
+        assertEquals(j | ((1 << 25) - 4), new Fixup(0, j, 0, true).resolve((1 << 25) - 4));
+        assertEquals(j | (1 << 25), new Fixup(0, j, 1 << 25, true).resolve(0));
+        assertThrows(SignedOperandOutOfBoundsException.class, () -> new Fixup(0, j, 0, true).resolve(1 << 25));
+        assertThrows(SignedOperandOutOfBoundsException.class, () -> new Fixup(0, j, 1 << 25, true).resolve(-4));
+        assertThrows(SignedOperandOutOfBoundsException.class, () -> new Fixup(0, beq, 0, false).resolve(1 << 17));
+    }
+
+    @Test
+    void test_labels_on_branches_and_jumps_match_numeric_offsets() {
+        String labeled = String.join("\n",
+                "j _end",
+                "_loop:",
+                "beq 1 2 _end",
+                "bne 1 2 _loop",
+                "blez 1 _end",
+                "bgtz 1 _loop",
+                "bltz 1 _end",
+                "bgez 1 _loop",
+                "jal _loop",
+                "_end:",
+                "sysc");
+        String numeric = String.join("\n",
+                "j 32",
+                "beq 1 2 7",
+                "bne 1 2 -1",
+                "blez 1 5",
+                "bgtz 1 -3",
+                "bltz 1 3",
+                "bgez 1 -5",
+                "jal " + (-24 & 0x03FFFFFF),
+                "sysc");
+
+        assertArrayEquals(new Assembler(numeric, 0).toIntCodeArray(), new Assembler(labeled, 0).toIntCodeArray());
+    }
+
+    @Test
+    void test_forward_reference_is_patched_in_every_output() throws IOException {
+        StringBuilder source = new StringBuilder("blez 0 _end\n");
+        for (int i = 0; i < 30_000; i++) {
+            source.append("addi 1 1 1\n");
+        }
+        source.append("_end:\nsysc\n");
+        int[] expected = new Assembler(source.toString(), 0).toIntCodeArray();
+        assertEquals(30_001, expected[0] & 0xFFFF);
+
+        IntBuffer buffer = IntBuffer.allocate(expected.length);
+        new Assembler(source.toString(), 0).assembleTo(buffer);
+        assertArrayEquals(expected, buffer.array());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new Assembler(source.toString(), 0).assembleTo(Channels.newChannel(bytes));
+        assertArrayEquals(expected, toWords(bytes.toByteArray()));
+
+        Path file = Files.createTempFile("assembler", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8));
+            assertEquals(expected.length, new Assembler(source.toString(), 0).assembleTo(channel));
+        } finally {
+            byte[] written = Files.readAllBytes(file);
+            Files.delete(file);
+            assertArrayEquals(expected, toWords(Arrays.copyOfRange(written, 8, written.length)));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("providePrograms")
+    void test_object_file_loads_the_assembled_words(String program) throws IOException {
+        String source = Files.readString(Path.of(MIPS_PROGRAMS + program));
+        int[] expected = new Assembler(source, 0).toIntCodeArray();
+
+        ObjectFile image = new ObjectFile(Initialize.a);
+        image.addSection(new Assembler(source, 0).assembleSection("code", Initialize.a));
+        Path file = Files.createTempFile("assembler", ".obj");
+        try {
+            image.write(file);
+            Configuration c = new Configuration();
+            ObjectFile loaded = ObjectFile.load(file, c);
+
+            assertArrayEquals(expected, loaded.getSection("code").getWords());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], c.getWord(Initialize.a + 4 * i));
+            }
+            assertEquals(Initialize.a, c.getPC());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void test_object_file_relocates_jumps_and_branches_between_sections() throws IOException {
+        String rom = String.join("\n",
+                "addi 1 0 5",
+                "j _kernel",
+                "_back:",
+                "addi 3 0 7",
+                "sysc");
+        String kernel = String.join("\n",
+                "_kernel:",
+                "addi 2 1 1",
+                "beq 0 0 _back");
+
+        ObjectFile image = new ObjectFile(Initialize.ROMSTART);
+        image.addSection(new Assembler(rom, 0).assembleSection("rom", Initialize.ROMSTART));
+        image.addSection(new Assembler(kernel, 0).assembleSection("kernel", Initialize.a));
+        assertEquals(1, image.getSection("rom").getRelocations().size());
+        assertEquals(Initialize.a, image.getSymbolAddress("_kernel"));
+        assertEquals(8, image.getSymbolAddress("_back"));
+
+        Path file = Files.createTempFile("assembler", ".obj");
+        try {
+            image.write(file);
+            Configuration c = new Configuration();
+            ObjectFile.load(file, c);
+            Simulator.simulate(c);
+            assertEquals(6, c.getRegister(2));
+            assertEquals(7, c.getRegister(3));
+
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+            assertThrows(InvalidObjectFileException.class, () -> ObjectFile.read(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static int[] toWords(byte[] bytes) {
+        int[] words = new int[bytes.length / 4];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(words);
+        return words;
+    }
+
+    private static Stream<Arguments> providePrograms() {
+        return Stream.of(
+                Arguments.of("KernelMips"),
+                Arguments.of("ROM"),
+                Arguments.of("condition"),
+                Arguments.of("copyms"),
+                Arguments.of("readms"),
+                Arguments.of("writems")
+        );
+    }
+}
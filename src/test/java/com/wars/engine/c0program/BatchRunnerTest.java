@@ -0,0 +1,89 @@
+package com.wars.engine.c0program;
+
+import com.wars.engine.simulator.SimulationOptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTest {
+
+    private static String program(int i) {
+        // every program declares its own type, variable and function names, so tables shared between threads clash
+        String n = name(i);
+        return "typedef int[" + (i % 5 + 1) + "] t" + n + "; t" + n + " a; int b" + n + ";"
+                + " int f" + n + "(int x){return x*2+" + i + "};"
+                + " int main(){a[0] = f" + n + "(" + i + "); b" + n + " = a[0]+1; return 1}~";
+    }
+
+    // labels of functions may not contain digits
+    private static String name(int i) {
+        StringBuilder name = new StringBuilder();
+        for (char digit : String.valueOf(i).toCharArray()) {
+            name.append((char) ('a' + digit - '0'));
+        }
+        return name.toString();
+    }
+
+    @Test
+    void test_parallel_batch_matches_sequential_compilation() {
+        List<BatchRunner.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 48; i++) {
+            jobs.add(new BatchRunner.Job("program " + i, program(i), SimulationOptions.untilHalt()));
+        }
+        jobs.add(new BatchRunner.Job("syntax error", "int main(){return 1 +}~"));
+
+        BatchRunner.BatchResult batch;
+        try (BatchRunner runner = new BatchRunner(4)) {
+            batch = runner.run(jobs);
+        }
+
+        assertEquals(49, batch.getResults().size());
+        assertEquals(1, batch.getFailures().size());
+        assertEquals("syntax error", batch.getFailures().get(0).getName());
+        assertTrue(batch.getTotalSteps() > 0);
+
+        for (int i = 0; i < 48; i++) {
+            BatchRunner.JobResult result = batch.getResults().get(i);
+            assertEquals("program " + i, result.getName());
+            assertTrue(result.isSuccessful());
+
+            C0Program sequential = new C0Program(program(i));
+            assertEquals(sequential.getMipsCode(), result.getProgram().getMipsCode());
+
+            int words = i % 5 + 1;
+            assertEquals(1, result.getConfiguration().getRegister(1));
+            assertEquals(3 * i, result.getConfiguration().getWord(sequential.SBASE));
+            assertEquals(3 * i + 1, result.getConfiguration().getWord(sequential.SBASE + 4 * words));
+        }
+        assertFalse(batch.getResults().get(48).isSuccessful());
+    }
+
+    @Test
+    void test_errors_of_a_job_are_recorded_as_its_failure() {
+        List<BatchRunner.Job> jobs = List.of(
+                new BatchRunner.Job("assertion", program(1), SimulationOptions.untilHalt(), c -> {
+                    throw new AssertionError("broken invariant");
+                }),
+                new BatchRunner.Job("overflow", program(2), SimulationOptions.untilHalt(), c -> recurse(0)),
+                new BatchRunner.Job("program", program(3), SimulationOptions.untilHalt()));
+
+        BatchRunner.BatchResult batch;
+        try (BatchRunner runner = new BatchRunner(2)) {
+            batch = runner.run(jobs);
+        }
+
+        assertEquals(3, batch.getResults().size());
+        assertTrue(batch.getResults().get(0).getFailure() instanceof AssertionError);
+        assertTrue(batch.getResults().get(1).getFailure() instanceof StackOverflowError);
+        assertTrue(batch.getResults().get(2).isSuccessful());
+    }
+
+    private static int recurse(int depth) {
+        return recurse(depth + 1) + 1;
+    }
+}
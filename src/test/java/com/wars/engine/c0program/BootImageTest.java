@@ -0,0 +1,36 @@
+package com.wars.engine.c0program;
+
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.assembler.ObjectFile;
+import com.wars.engine.simulator.Configuration;
+import com.wars.engine.util.Initialize;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class BootImageTest {
+
+    @Test
+    void test_boot_loads_the_bundled_image() throws IOException {
+        assertNotNull(BootImage.class.getResource(BootImage.RESOURCE), "the build bundles the boot image");
+
+        Configuration c = new Configuration();
+        ObjectFile image = BootImage.boot(c);
+        assertEquals(Initialize.a, c.getPC());
+
+        // the bundled kernel is the one assembled from the current sources
+        int[] kernel = new Assembler(AbstractKernel.generateAbstractKernel().getMipsCode(), 0).toIntCodeArray();
+        assertArrayEquals(kernel, image.getSection(BootImage.KERNEL_SECTION).getWords());
+        for (int i = 0; i < kernel.length; i++) {
+            assertEquals(kernel[i], c.getWord(Initialize.a + 4 * i));
+        }
+
+        ObjectFile.Section rom = image.getSection(BootImage.ROM_SECTION);
+        assertEquals(Initialize.ROMSTART, rom.getLoadAddress());
+        assertEquals(rom.getWords()[0], c.getWord(Initialize.ROMSTART));
+    }
+}
@@ -1,13 +1,21 @@
 package com.wars.engine.c0program;
 
 import com.wars.engine.simulator.Configuration;
+import com.wars.engine.simulator.ExecutionEngine;
+import com.wars.engine.simulator.SimulationOptions;
 import com.wars.engine.simulator.Simulator;
 import com.wars.engine.util.CodeTranslation;
 import com.wars.engine.util.Log;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class C0ProgramTest {
 
@@ -1210,10 +1218,53 @@ class C0ProgramTest {
     }
 
 
+    @Test
+    void test_translation_prints_only_when_debugging_is_turned_on_for_it() {
+        String code = C0Program.toC0Grammar("int main(){return 1}~");
+        CodeTranslation.C0Translation(code);
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            CodeTranslation.C0Translation(code);
+            assertEquals(0, printed.size());
+
+            com.wars.compiler.config.Configuration.getInstance().setDebug(true);
+            CodeTranslation.C0Translation(code);
+            assertTrue(printed.size() > 0);
+            assertFalse(com.wars.compiler.config.Configuration.isDebugging());
+        } finally {
+            System.setOut(out);
+        }
+    }
+
     private void simulateProgram(C0Program pr) {
         int[] byteCode = CodeTranslation.MIPSTranslation(pr.getMipsCode());
         config.setWordArray(byteCode, 0);
         Simulator.simulate(config);
+
+        // cross-check the faster engines against the reference engine
+        for (ExecutionEngine engine : List.of(ExecutionEngine.SWITCH, ExecutionEngine.TRANSLATING)) {
+            Configuration fast = new Configuration();
+            fast.setWordArray(byteCode, 0);
+            Simulator.run(fast, SimulationOptions.builder().engine(engine).build());
+            assertSameState(pr, config, fast);
+        }
+    }
+
+    private static void assertSameState(C0Program pr, Configuration expected, Configuration actual) {
+        assertEquals(expected.getPC(), actual.getPC());
+        assertEquals(expected.isRunning(), actual.isRunning());
+        for (int i = 0; i < 32; i++) {
+            assertEquals(expected.getRegister(i), actual.getRegister(i), "gpr " + i);
+        }
+        for (int address = pr.SBASE; address < pr.SMAX; address += 4) {
+            assertEquals(expected.getWord(address), actual.getWord(address), "stack word at " + address);
+        }
+        for (int address = pr.HBASE; address < pr.HMAX; address += 4) {
+            assertEquals(expected.getWord(address), actual.getWord(address), "heap word at " + address);
+        }
     }
 
 }
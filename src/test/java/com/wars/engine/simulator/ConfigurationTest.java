@@ -1,14 +1,36 @@
 package com.wars.engine.simulator;
 
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.exception.simulator.InvalidSnapshotException;
 import com.wars.engine.instruction.Instruction;
 import com.wars.engine.instruction.InstructionRegistry;
+import com.wars.engine.util.Initialize;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ConfigurationTest {
+    // stores 1, 2, ..., 3000 to the words from 8192 on, across three pages
+    private static final String COUNTING_STORES = String.join("\n",
+            "addi 2 0 8192",
+            "_loop:",
+            "addi 1 1 1",
+            "sw 1 2 0",
+            "addi 2 2 4",
+            "slti 3 1 3000",
+            "bne 3 0 _loop",
+            "sysc");
+
     private Configuration config;
 
     @BeforeEach
@@ -1329,5 +1351,230 @@ class ConfigurationTest {
         assertEquals(expectedPC, config.getPC());
     }
 
-
+    @Test
+    void test_flat_memory_matches_paged_memory() {
+        Configuration flat = new Configuration(MemoryMode.FLAT);
+        int[] addresses = {0, 4, 100, 4092, 12 * 1024, 65532, 65536, Initialize.SMBASE, -4};
+
+        for (int address : addresses) {
+            config.setWord(address, 0x12345678 ^ address);
+            flat.setWord(address, 0x12345678 ^ address);
+        }
+        config.setByte(4093, (byte) 0xAB);
+        flat.setByte(4093, (byte) 0xAB);
+        config.setWord(4094, 0xCAFEBABE);
+        flat.setWord(4094, 0xCAFEBABE);
+
+        for (int address : addresses) {
+            assertEquals(config.getWord(address), flat.getWord(address));
+            assertEquals(config.hasWordAt(address), flat.hasWordAt(address));
+        }
+        for (int address = 4088; address < 4104; address++) {
+            assertEquals(config.getByte(address), flat.getByte(address));
+        }
+        assertEquals(0xCAFEBABE, flat.getWord(4094));
+        assertEquals(false, flat.hasWordAt(8 * 1024));
+    }
+
+    @Test
+    void test_halfwords_and_unaligned_words_match_bytes() {
+        for (MemoryMode mode : MemoryMode.values()) {
+            Configuration c = new Configuration(mode);
+            // inside a page, across a page boundary and across the end of flat memory
+            int[] addresses = {100, 4094, 4095, 65534, 65535, Initialize.SMBASE + 4095};
+
+            for (int address : addresses) {
+                c.setHalf(address, (short) 0xBEEF);
+                assertEquals((byte) 0xBE, c.getByte(address));
+                assertEquals((byte) 0xEF, c.getByte(address + 1));
+                assertEquals((short) 0xBEEF, c.getHalf(address));
+
+                c.setWord(address + 1, 0x01234567);
+                assertEquals(0x01234567, c.getWord(address + 1));
+                assertEquals((short) 0xBE01, c.getHalf(address));
+                assertEquals((short) 0x4567, c.getHalf(address + 3));
+            }
+
+            c.setAlignedWord(8192, 0xCAFEBABE);
+            assertEquals(0xCAFEBABE, c.getAlignedWord(8192));
+            assertEquals((short) 0xBABE, c.getHalf(8194));
+        }
+    }
+
+    @Test
+    void test_bulk_operations_match_byte_stores() {
+        Random random = new Random(15);
+        for (MemoryMode mode : MemoryMode.values()) {
+            Configuration bulk = new Configuration(mode);
+            Configuration bytes = new Configuration(mode);
+
+            for (int trial = 0; trial < 200; trial++) {
+                // around page boundaries, the end of flat memory and the swap region
+                int[] bases = {4096, 12 * 1024, 64 * 1024, Initialize.SMBASE};
+                int address = bases[random.nextInt(bases.length)] + random.nextInt(64) - 32;
+                int len = random.nextInt(48);
+
+                switch (random.nextInt(3)) {
+                    case 0 -> {
+                        address &= ~3;
+                        int[] src = random.ints(len + 2).toArray();
+                        bulk.loadWords(address, src, 1, len);
+                        for (int i = 0; i < len; i++) {
+                            bytes.setWord(address + 4 * i, src[1 + i]);
+                        }
+                    }
+                    case 1 -> {
+                        byte[] src = new byte[len];
+                        random.nextBytes(src);
+                        bulk.loadBytes(address, ByteBuffer.wrap(src));
+                        for (int i = 0; i < len; i++) {
+                            bytes.setByte(address + i, src[i]);
+                        }
+                    }
+                    default -> {
+                        int src = address + random.nextInt(16) - 8;
+                        byte[] copy = new byte[len];
+                        for (int i = 0; i < len; i++) {
+                            copy[i] = bytes.getByte(src + i);
+                        }
+                        bulk.memcpy(address, src, len);
+                        for (int i = 0; i < len; i++) {
+                            bytes.setByte(address + i, copy[i]);
+                        }
+                    }
+                }
+
+                ByteBuffer read = ByteBuffer.allocate(len + 8);
+                bulk.copyTo(address - 4, read);
+                assertEquals(false, read.hasRemaining());
+                for (int i = 0; i < len + 8; i++) {
+                    assertEquals(bytes.getByte(address - 4 + i), read.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void test_bulk_load_replaces_decoded_code() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            // addi 1 1 k in a loop of two instructions, 1000 steps add k 500 times
+            int[] five = {encode("addi", 1, 1, 5), encode("beq", 0, 0, -1)};
+            int[] nine = {encode("addi", 1, 1, 9)};
+
+            c.setWordArray(five, 0);
+            assertEquals(2500, runLoop(c, engine));
+
+            ByteBuffer code = ByteBuffer.allocate(4);
+            code.putInt(0, nine[0]);
+            c.loadBytes(0, code);
+            assertEquals(4500, runLoop(c, engine));
+
+            c.loadWords(64, five, 0, 1);
+            c.memcpy(0, 64, 4);
+            assertEquals(2500, runLoop(c, engine));
+        }
+    }
+
+    @Test
+    void test_copyms_repeats_words_when_destination_overlaps_source() {
+        int a = 4080;
+        config.loadWords(a, new int[]{1, 2, 3}, 0, 3);
+        MemoryRoutines.copyms(config, a, a + 8, 6);
+
+        int[] expected = {1, 2, 1, 2, 1, 2, 1, 2};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], MemoryRoutines.readms(config, a + 4 * i));
+        }
+
+        MemoryRoutines.copyms(config, a + 4, a - 4, 3);
+        assertEquals(2, config.getWord(a - 4));
+        assertEquals(1, config.getWord(a));
+        assertEquals(2, config.getWord(a + 4));
+    }
+
+    @Test
+    void test_restore_returns_to_the_snapshot_state() {
+        for (MemoryMode mode : MemoryMode.values()) {
+            for (ExecutionEngine engine : ExecutionEngine.values()) {
+                Configuration c = new Configuration(mode);
+                c.setWordArray(new Assembler(COUNTING_STORES, 0).toIntCodeArray(), 0);
+                Simulator.run(c, SimulationOptions.builder().engine(engine).maxSteps(5000).build());
+
+                Snapshot snapshot = c.snapshot();
+                int stored = snapshot.getRegister(1);
+                Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+                assertEquals(3000, c.getRegister(1));
+                assertEquals(3000, c.getWord(8192 + 4 * 2999));
+
+                // the stores after the snapshot went to copies of its pages
+                c.restore(snapshot);
+                assertEquals(snapshot.getPC(), c.getPC());
+                assertEquals(stored, c.getRegister(1));
+                assertEquals(stored, c.getWord(8192 + 4 * (stored - 1)));
+                assertEquals(0, c.getWord(8192 + 4 * stored));
+                assertEquals(true, c.isRunning());
+
+                Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+                assertEquals(3000, c.getRegister(1));
+                assertEquals(3000, c.getWord(8192 + 4 * 2999));
+
+                for (MemoryMode forkMode : MemoryMode.values()) {
+                    Configuration fork = new Configuration(forkMode);
+                    fork.restore(snapshot);
+                    fork.setWord(8192, -1);
+                    Simulator.run(fork, SimulationOptions.builder().engine(engine).build());
+                    assertEquals(3000, fork.getWord(8192 + 4 * 2999));
+                    assertEquals(-1, fork.getWord(8192));
+                    assertEquals(1, c.getWord(8192));
+                }
+            }
+        }
+    }
+
+    @Test
+    void test_snapshot_round_trips_through_a_file() throws IOException {
+        Configuration c = new Configuration();
+        c.setWordArray(new Assembler(COUNTING_STORES, 0).toIntCodeArray(), 0);
+        c.setSpr(Spr.EPC, 77);
+        c.requestInterrupt(3);
+        Simulator.run(c, SimulationOptions.builder().maxSteps(5000).build());
+        Snapshot snapshot = c.snapshot();
+
+        Path file = Files.createTempFile("configuration", ".snapshot");
+        try {
+            snapshot.write(file);
+            Snapshot read = Snapshot.read(file);
+            assertEquals(snapshot.getPC(), read.getPC());
+            assertEquals(snapshot.getPageCount(), read.getPageCount());
+
+            Configuration restored = new Configuration(MemoryMode.FLAT);
+            restored.restore(read);
+            assertEquals(77, restored.getSpr(Spr.EPC));
+            assertEquals(snapshot.getRegister(2), restored.getRegister(2));
+            restored.setSpr(Spr.SR, 1 << 3);
+            assertEquals(true, restored.isInterruptPending());
+
+            restored.setSpr(Spr.SR, 0);
+            Simulator.simulate(restored);
+            assertEquals(3000, restored.getRegister(1));
+
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            assertThrows(InvalidSnapshotException.class, () -> Snapshot.read(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static int runLoop(Configuration c, ExecutionEngine engine) {
+        c.setPC(0);
+        c.setRegister(1, 0);
+        Simulator.run(c, SimulationOptions.builder().engine(engine).maxSteps(1000).build());
+        return c.getRegister(1);
+    }
+
+    private static int encode(String mnemonic, int... operands) {
+        return InstructionRegistry.createForEncoder(mnemonic, operands).encode();
+    }
 }
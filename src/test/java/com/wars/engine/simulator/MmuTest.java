@@ -0,0 +1,121 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.util.Initialize;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MmuTest {
+    private static final int PTO = 8 * Initialize.K;
+    private static final int PTL = 4;
+    private static final int CODE_PAGE = Initialize.UPBASE / 4096;
+
+    // virtual page 0 holds the code, page 1 the data, pages 2 and 3 are not present
+    private static Configuration userConfiguration(MemoryMode mode, int tlbSize, String code) {
+        Configuration c = new Configuration(mode, tlbSize);
+        c.setWordArray(new Assembler("sysc", 0).toIntCodeArray(), Initialize.ROMSTART);
+        c.setWordArray(new Assembler(code, 0).toIntCodeArray(), CODE_PAGE * 4096);
+        c.setWord(PTO, CODE_PAGE * 4096 + Mmu.VALID);
+        c.setWord(PTO + 4, (CODE_PAGE + 1) * 4096 + Mmu.VALID);
+        c.setWord(PTO + 8, (CODE_PAGE + 2) * 4096);
+        c.setWord((CODE_PAGE + 1) * 4096, 41);
+
+        c.setSpr(Spr.PTO, PTO);
+        c.setSpr(Spr.PTL, PTL);
+        c.setSpr(Spr.SR, -1);
+        c.setSpr(Spr.MODE, Spr.USER_MODE);
+        c.setPC(0);
+        return c;
+    }
+
+    @Test
+    void test_user_loads_and_stores_are_translated_until_a_page_fault() {
+        String code = String.join("\n",
+                "lw 1 0 4096",
+                "addi 1 1 1",
+                "sw 1 0 4100",
+                "lw 2 0 8192",
+                "addi 3 0 1");
+
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            for (MemoryMode mode : MemoryMode.values()) {
+                Configuration c = userConfiguration(mode, Mmu.DEFAULT_TLB_SIZE, code);
+                SimulationResult result = Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+
+                assertEquals(StopReason.HALTED, result.getStopReason());
+                assertEquals(42, c.getRegister(1));
+                assertEquals(42, c.getWord((CODE_PAGE + 1) * 4096 + 4));
+                assertEquals(0, c.getRegister(2));
+                assertEquals(0, c.getRegister(3));
+
+                // the faulting lw is repeated after the handler, so EPC is its own address
+                assertEquals(12, c.getSpr(Spr.EPC));
+                assertEquals(1 << Mmu.PAGE_FAULT_LOAD_STORE, c.getSpr(Spr.ECA));
+                assertEquals(8192, c.getSpr(Spr.EDATA));
+                assertEquals(-1, c.getSpr(Spr.ESR));
+                assertEquals(0, c.getSpr(Spr.SR));
+                assertFalse(c.isUserMode());
+
+                Mmu mmu = c.getMmu();
+                assertEquals(1, mmu.getPageFaults());
+                assertEquals(3, mmu.getMisses());
+                assertEquals(4, mmu.getHits());
+            }
+        }
+    }
+
+    @Test
+    void test_fetch_outside_the_page_table_faults_with_the_fetch_level() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = userConfiguration(MemoryMode.PAGED, Mmu.DEFAULT_TLB_SIZE, "j " + (PTL * 4096));
+            Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+
+            assertEquals(PTL * 4096, c.getSpr(Spr.EPC));
+            assertEquals(1 << Mmu.PAGE_FAULT_FETCH, c.getSpr(Spr.ECA));
+            assertEquals(0, c.getSpr(Spr.EDATA));
+            assertFalse(c.isRunning());
+        }
+    }
+
+    @Test
+    void test_rewritten_page_table_entry_flushes_the_tlb() {
+        Configuration c = userConfiguration(MemoryMode.PAGED, Mmu.DEFAULT_TLB_SIZE, "sysc");
+        c.setWord((CODE_PAGE + 2) * 4096, 7);
+        assertEquals(41, c.loadWord(4096));
+        assertEquals(41, c.loadWord(4096));
+        assertThrows(Mmu.PageFault.class, () -> c.loadWord(8192));
+
+        // the kernel swaps the data page out and page 2 in
+        c.setSpr(Spr.MODE, Spr.SYSTEM_MODE);
+        c.setWord(PTO + 4, (CODE_PAGE + 1) * 4096);
+        c.setWord(PTO + 8, (CODE_PAGE + 2) * 4096 + Mmu.VALID);
+        c.setSpr(Spr.MODE, Spr.USER_MODE);
+
+        assertEquals(7, c.loadWord(8192));
+        assertThrows(Mmu.PageFault.class, () -> c.loadWord(4096));
+        assertEquals(1, c.getMmu().getHits());
+        assertEquals(2, c.getMmu().getPageFaults());
+    }
+
+    @Test
+    void test_pages_sharing_a_tlb_slot_evict_each_other() {
+        Configuration c = userConfiguration(MemoryMode.FLAT, 1, "sysc");
+        for (int i = 0; i < 10; i++) {
+            c.loadWord(4096);
+            c.loadWord(0);
+        }
+        assertEquals(0, c.getMmu().getHits());
+        assertEquals(20, c.getMmu().getMisses());
+
+        c.getMmu().resetCounters();
+        c.storeWord(4096, 5);
+        c.storeWord(4100, 6);
+        assertEquals(1, c.getMmu().getHits());
+        assertTrue(c.getMmu().getTlbSize() == 1);
+        assertEquals(6, c.getWord((CODE_PAGE + 1) * 4096 + 4));
+    }
+}
@@ -0,0 +1,636 @@
+package com.wars.engine.simulator;
+
+import com.wars.engine.assembler.Assembler;
+import com.wars.engine.exception.simulator.UnalignedMemoryAccessException;
+import com.wars.engine.exception.simulator.UnknownSprException;
+import com.wars.engine.instruction.Instruction;
+import com.wars.engine.instruction.InstructionRegistry;
+import com.wars.engine.macro.Macro;
+import com.wars.engine.operand.OperandType;
+import com.wars.engine.trace.BinaryTraceWriter;
+import com.wars.engine.util.Initialize;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SimulatorTest {
+    private Configuration config;
+
+    @BeforeEach
+    void setUp() {
+        config = new Configuration();
+    }
+
+    @Test
+    void test_loop_reuses_decoded_instructions() {
+        int[] program = {
+                encode("addi", 1, 0, 100),
+                encode("addi", 2, 2, 3),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -2),
+                encode("sysc")
+        };
+        config.setWordArray(program, 0);
+
+        Simulator.simulate(config);
+
+        assertEquals(0, config.getRegister(1));
+        assertEquals(300, config.getRegister(2));
+        assertEquals(false, config.isRunning());
+    }
+
+    @Test
+    void test_self_modifying_code_invalidates_decoded_instruction() {
+        int[] program = {
+                encode("addi", 3, 0, 2),
+                encode("addi", 1, 1, 1),
+                encode("sw", 2, 0, 4),
+                encode("addi", 3, 3, -1),
+                encode("bgtz", 3, -3),
+                encode("sysc")
+        };
+        config.setWordArray(program, 0);
+        config.setRegister(2, encode("addi", 1, 1, 10));
+
+        Simulator.simulate(config);
+
+        // first pass executes the original addi, second pass the overwritten one
+        assertEquals(11, config.getRegister(1));
+    }
+
+    @Test
+    void test_binary_trace_records_every_step() throws IOException {
+        int[] program = {
+                encode("addi", 1, 0, 2),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -1),
+                encode("sysc")
+        };
+        config.setWordArray(program, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (BinaryTraceWriter trace = new BinaryTraceWriter(out)) {
+            Simulator.simulate(config, trace);
+            assertEquals(6, trace.getRecords());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(BinaryTraceWriter.MAGIC, in.readInt());
+        assertEquals(BinaryTraceWriter.VERSION, in.readInt());
+        int[] expectedPCs = {0, 4, 8, 4, 8, 12};
+        for (int expectedPC : expectedPCs) {
+            int pc = in.readInt();
+            assertEquals(expectedPC, pc);
+            assertEquals(program[pc / 4], in.readInt());
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void test_run_unlimited_until_halt() {
+        int[] program = {
+                encode("lui", 1, 2),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -1),
+                encode("sysc")
+        };
+        config.setWordArray(program, 0);
+
+        SimulationResult result = Simulator.run(config, SimulationOptions.untilHalt());
+
+        assertEquals(StopReason.HALTED, result.getStopReason());
+        assertEquals(0, config.getRegister(1));
+        assertEquals(2 + 2 * 131072, result.getSteps());
+    }
+
+    @Test
+    void test_run_stops_on_budget_pc_and_predicate() {
+        int[] program = {
+                encode("addi", 1, 0, 1000),
+                encode("addi", 2, 2, 1),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -2),
+                encode("sysc")
+        };
+
+        Configuration budget = new Configuration();
+        budget.setWordArray(program, 0);
+        SimulationResult stepLimited = Simulator.run(budget, SimulationOptions.builder().maxSteps(10).build());
+        assertEquals(StopReason.STEP_LIMIT, stepLimited.getStopReason());
+        assertEquals(10, stepLimited.getSteps());
+        assertEquals(true, budget.isRunning());
+
+        Configuration untilPC = new Configuration();
+        untilPC.setWordArray(program, 0);
+        SimulationResult pcReached = Simulator.run(untilPC, SimulationOptions.builder().unlimitedSteps().untilPC(16).build());
+        assertEquals(StopReason.PC_REACHED, pcReached.getStopReason());
+        assertEquals(16, untilPC.getPC());
+        assertEquals(1000, untilPC.getRegister(2));
+
+        Configuration predicate = new Configuration();
+        predicate.setWordArray(program, 0);
+        SimulationResult predicateMet = Simulator.run(predicate,
+                SimulationOptions.builder().unlimitedSteps().until(c -> c.getRegister(2) == 7).build());
+        assertEquals(StopReason.PREDICATE, predicateMet.getStopReason());
+        assertEquals(7, predicate.getRegister(2));
+    }
+
+    @Test
+    void test_pages_removed_by_a_callback_stop_at_the_next_fetch() {
+        int[] program = {
+                encode("addi", 1, 0, 1000),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -1),
+                encode("sysc")
+        };
+        Snapshot empty = new Configuration(MemoryMode.PAGED).snapshot();
+
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration byPredicate = new Configuration(MemoryMode.PAGED);
+            byPredicate.setWordArray(program, 0);
+            int[] calls = {0};
+            SimulationResult predicateRun = Simulator.run(byPredicate, SimulationOptions.builder().engine(engine)
+                    .unlimitedSteps().until(c -> {
+                        if (++calls[0] == 10) {
+                            c.restore(empty);
+                        }
+                        return false;
+                    }).build());
+            assertEquals(StopReason.UNMAPPED_PC, predicateRun.getStopReason(), engine.name());
+
+            Configuration byListener = new Configuration(MemoryMode.PAGED);
+            byListener.setWordArray(program, 0);
+            SimulationResult listenerRun = Simulator.run(byListener, SimulationOptions.builder().engine(engine)
+                    .unlimitedSteps().listener((step, pc, instruction, c) -> {
+                        if (step == 10) {
+                            c.restore(empty);
+                        }
+                    }).build());
+            assertEquals(StopReason.UNMAPPED_PC, listenerRun.getStopReason(), engine.name());
+        }
+    }
+
+    @Test
+    void test_switch_engine_matches_reference_engine_per_instruction() {
+        String[] mnemonics = {
+                "lw", "sw", "addi", "addiu", "slti", "sltiu", "andi", "ori", "xori", "lui",
+                "bltz", "bgez", "beq", "bne", "blez", "bgtz",
+                "srl", "add", "addu", "sub", "subu", "and", "or", "xor", "nor", "slt", "sltu",
+                "jr", "jalr", "sysc", "j", "jal"
+        };
+        Random random = new Random(42);
+
+        for (int trial = 0; trial < 5000; trial++) {
+            String mnemonic = mnemonics[random.nextInt(mnemonics.length)];
+            List<OperandType> types = InstructionRegistry.getOperandTypes(mnemonic);
+            int[] operands = new int[types.size()];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = switch (types.get(i)) {
+                    case REG5 -> random.nextInt(32);
+                    case IMM16 -> mnemonic.equals("lw") || mnemonic.equals("sw")
+                            ? 4 * (random.nextInt(64) - 32)
+                            : random.nextInt(1 << 16) - (1 << 15);
+                    case IINDEX26 -> random.nextInt(1 << 26);
+                };
+            }
+
+            Configuration reference = new Configuration();
+            Configuration fast = new Configuration();
+            int pc = 4 * random.nextInt(1024);
+            for (Configuration c : List.of(reference, fast)) {
+                c.setPC(pc);
+                c.setWord(pc, encode(mnemonic, operands));
+                c.setWord(2048, 0x5A5A5A5A);
+            }
+            for (int i = 1; i < 32; i++) {
+                int value = random.nextBoolean() ? 2048 + 4 * (random.nextInt(64) - 32) : random.nextInt();
+                reference.setRegister(i, value);
+                fast.setRegister(i, value);
+            }
+
+            String message = mnemonic + " " + Arrays.toString(operands);
+            Class<?> referenceException = runOneStep(reference, ExecutionEngine.REFERENCE);
+            Class<?> fastException = runOneStep(fast, ExecutionEngine.SWITCH);
+
+            assertEquals(referenceException, fastException, message);
+            assertEquals(reference.getPC(), fast.getPC(), message);
+            assertEquals(reference.isRunning(), fast.isRunning(), message);
+            for (int i = 0; i < 32; i++) {
+                assertEquals(reference.getRegister(i), fast.getRegister(i), message + " gpr " + i);
+            }
+            for (int address = 1920; address < 2176; address += 4) {
+                assertEquals(reference.getWord(address), fast.getWord(address), message + " word " + address);
+            }
+        }
+    }
+
+    @Test
+    void test_translating_engine_matches_reference_engine_on_hot_loops() {
+        String[] mnemonics = {
+                "lw", "sw", "addi", "addiu", "slti", "sltiu", "andi", "ori", "xori", "lui",
+                "srl", "add", "addu", "sub", "subu", "and", "or", "xor", "nor", "slt", "sltu", "bne"
+        };
+        Random random = new Random(7);
+
+        for (int trial = 0; trial < 100; trial++) {
+            // r28 holds the data base address and r30 the loop counter, neither is ever a destination
+            int length = 1 + random.nextInt(40);
+            int[] program = new int[length + 4];
+            program[0] = encode("addi", 30, 0, 300);
+            for (int i = 1; i <= length; i++) {
+                // a trailing bne would skip the counter decrement
+                String mnemonic = mnemonics[random.nextInt(i < length ? mnemonics.length : mnemonics.length - 1)];
+                List<OperandType> types = InstructionRegistry.getOperandTypes(mnemonic);
+                int[] operands = new int[types.size()];
+                for (int k = 0; k < operands.length; k++) {
+                    operands[k] = switch (types.get(k)) {
+                        case REG5 -> random.nextInt(28);
+                        case IMM16 -> random.nextInt(1 << 16) - (1 << 15);
+                        case IINDEX26 -> 0;
+                    };
+                }
+                if (mnemonic.equals("lw") || mnemonic.equals("sw")) {
+                    operands[1] = 28;
+                    operands[2] = 4 * (random.nextInt(64) - 32);
+                } else if (mnemonic.equals("bne")) {
+                    operands[2] = 2;
+                }
+                program[i] = encode(mnemonic, operands);
+            }
+            program[length + 1] = encode("addi", 30, 30, -1);
+            program[length + 2] = encode("bgtz", 30, -(length + 1));
+            program[length + 3] = encode("sysc");
+
+            Configuration reference = new Configuration();
+            Configuration translated = new Configuration();
+            for (Configuration c : List.of(reference, translated)) {
+                c.setWordArray(program, 0);
+                c.setRegister(28, 8192);
+            }
+            for (int i = 1; i < 28; i++) {
+                int value = random.nextInt();
+                reference.setRegister(i, value);
+                translated.setRegister(i, value);
+            }
+
+            String message = "trial " + trial;
+            SimulationResult expected = Simulator.run(reference, SimulationOptions.untilHalt());
+            SimulationResult actual = Simulator.run(translated,
+                    SimulationOptions.builder().unlimitedSteps().engine(ExecutionEngine.TRANSLATING).build());
+
+            assertEquals(expected.getSteps(), actual.getSteps(), message);
+            assertEquals(reference.getPC(), translated.getPC(), message);
+            assertEquals(false, translated.isRunning(), message);
+            for (int i = 0; i < 32; i++) {
+                assertEquals(reference.getRegister(i), translated.getRegister(i), message + " gpr " + i);
+            }
+            for (int address = 8192 - 128; address < 8192 + 128; address += 4) {
+                assertEquals(reference.getWord(address), translated.getWord(address), message + " word " + address);
+            }
+        }
+    }
+
+    @Test
+    void test_translated_block_restores_state_on_fault() {
+        int[] program = {
+                encode("addi", 1, 0, 1000),
+                encode("addi", 2, 2, 1),
+                encode("slti", 4, 1, 2),
+                encode("lw", 5, 4, 0),
+                encode("addi", 1, 1, -1),
+                encode("bgtz", 1, -4),
+                encode("sysc")
+        };
+        Configuration reference = new Configuration();
+        Configuration translated = new Configuration();
+        reference.setWordArray(program, 0);
+        translated.setWordArray(program, 0);
+
+        Class<?> expected = runUntilHalt(reference, ExecutionEngine.REFERENCE);
+        Class<?> actual = runUntilHalt(translated, ExecutionEngine.TRANSLATING);
+
+        // the lw faults once r1 reaches 1 and r4 becomes an unaligned address
+        assertEquals(UnalignedMemoryAccessException.class, expected);
+        assertEquals(expected, actual);
+        assertEquals(12, translated.getPC());
+        for (int i = 0; i < 32; i++) {
+            assertEquals(reference.getRegister(i), translated.getRegister(i), "gpr " + i);
+        }
+    }
+
+    @Test
+    void test_store_into_translated_block_falls_back_to_interpreter() {
+        int[] program = {
+                encode("addi", 3, 0, 1000),
+                encode("addi", 1, 1, 1),
+                encode("addi", 3, 3, -1),
+                encode("bne", 3, 4, 2),
+                encode("addi", 2, 5, 0),
+                encode("sw", 2, 0, 4),
+                encode("bgtz", 3, -5),
+                encode("sysc")
+        };
+
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            c.setWordArray(program, 0);
+            c.setRegister(2, encode("addi", 1, 1, 1));
+            c.setRegister(4, 500);
+            c.setRegister(5, encode("addi", 1, 1, 10));
+
+            Simulator.run(c, SimulationOptions.builder().unlimitedSteps().engine(engine).build());
+
+            // the first 500 iterations run the original addi, the rest the patched one
+            assertEquals(500 + 500 * 10, c.getRegister(1), engine.name());
+        }
+    }
+
+    @Test
+    void test_fused_macros_match_expanded_code() {
+        String[] macros = {"mul", "divu", "divt"};
+        int[] specials = {0, 1, -1, 2, 7, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        Random random = new Random(11);
+
+        for (int trial = 0; trial < 150; trial++) {
+            String macro = macros[trial % macros.length];
+            // operands may alias each other and the scratch registers 18 to 27
+            int k = 1 + random.nextInt(29), i = 1 + random.nextInt(29), j = 1 + random.nextInt(29);
+            List<Instruction> expansion = Macro.evaluate("macro: " + macro + " " + k + " " + i + " " + j);
+
+            // the macro runs in a loop of 300 iterations with operands that change on every pass
+            int[] program = new int[expansion.size() + 6];
+            program[0] = encode("addi", 30, 0, 300);
+            for (int n = 0; n < expansion.size(); n++) {
+                program[1 + n] = expansion.get(n).encode();
+            }
+            int tail = expansion.size() + 1;
+            program[tail] = encode("addi", 28, 28, 12345);
+            program[tail + 1] = encode("xor", i, i, 28);
+            program[tail + 2] = encode("addi", 30, 30, -1);
+            program[tail + 3] = encode("bgtz", 30, -(tail + 2));
+            program[tail + 4] = encode("sysc");
+
+            int[] registers = new int[32];
+            for (int r = 1; r < 32; r++) {
+                registers[r] = trial % 2 == 0 ? specials[random.nextInt(specials.length)] : random.nextInt();
+            }
+
+            Configuration reference = new Configuration();
+            reference.setWordArray(program, 0);
+            for (int r = 1; r < 32; r++) {
+                reference.setRegister(r, registers[r]);
+            }
+            // a divisor of zero never ends, so every run has the same budget
+            SimulationResult expected = Simulator.run(reference,
+                    SimulationOptions.builder().maxSteps(200_000).macroFusion(false).build());
+            boolean fusable = !macro.equals("mul") || (i < 24 || i > 27) && (j < 24 || j > 27);
+            assertEquals(fusable, FusedMacro.startsAt(reference, 4, program[1]), "trial " + trial);
+
+            for (ExecutionEngine engine : ExecutionEngine.values()) {
+                Configuration fused = new Configuration();
+                fused.setWordArray(program, 0);
+                for (int r = 1; r < 32; r++) {
+                    fused.setRegister(r, registers[r]);
+                }
+                SimulationResult actual = Simulator.run(fused,
+                        SimulationOptions.builder().maxSteps(200_000).engine(engine).build());
+
+                String message = "trial " + trial + " " + engine + " " + macro + "(" + k + ", " + i + ", " + j + ")";
+                assertEquals(expected.getStopReason(), actual.getStopReason(), message);
+                assertEquals(expected.getSteps(), actual.getSteps(), message);
+                assertEquals(reference.getPC(), fused.getPC(), message);
+                for (int r = 0; r < 32; r++) {
+                    assertEquals(reference.getRegister(r), fused.getRegister(r), message + " gpr " + r);
+                }
+            }
+        }
+    }
+
+    @Test
+    void test_store_into_fused_macro_falls_back_to_expanded_code() {
+        List<Instruction> expansion = Macro.evaluate("macro: mul 3 1 2");
+        int[] program = new int[expansion.size() + 1];
+        for (int n = 0; n < expansion.size(); n++) {
+            program[n] = expansion.get(n).encode();
+        }
+        program[expansion.size()] = encode("sysc");
+        config.setWordArray(program, 0);
+
+        assertEquals(true, Simulator.fetch(config, config.getDecodedInstructions(), 0) instanceof FusedMacro);
+
+        // the last word becomes addi 3 27 1
+        config.setWord(4 * (expansion.size() - 1), encode("addi", 3, 27, 1));
+        config.setRegister(1, 6);
+        config.setRegister(2, 7);
+        Simulator.run(config, SimulationOptions.untilHalt());
+
+        assertEquals(false, Simulator.fetch(config, config.getDecodedInstructions(), 0) instanceof FusedMacro);
+        assertEquals(43, config.getRegister(3));
+    }
+
+    @Test
+    void test_kernel_enters_user_mode_and_handles_system_calls() {
+        // the handler at 0 boots the user on reset and resumes it after each system call until the second one
+        String kernel = String.join("\n",
+                "movs2g 2 3",
+                "bne 3 0 _handler",
+                "addi 4 0 8192",
+                "movg2s 5 4",
+                "addi 4 0 1",
+                "movg2s 6 4",
+                "addi 4 0 -1",
+                "movg2s 1 4",
+                "movg2s 3 0",
+                "eret",
+                "_handler:",
+                "addi 10 10 1",
+                "slti 5 10 2",
+                "bne 5 0 _resume",
+                "sysc",
+                "_resume:",
+                "eret");
+        String user = String.join("\n",
+                "addi 1 0 5",
+                "sysc",
+                "addi 2 0 7",
+                "sysc",
+                "addi 2 0 9");
+
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            c.setWordArray(new Assembler(kernel, 0).toIntCodeArray(), Initialize.ROMSTART);
+            c.setWordArray(new Assembler(user, 0).toIntCodeArray(), Initialize.UPBASE);
+            c.setWord(8192, Initialize.UPBASE + Mmu.VALID);
+
+            SimulationResult result = Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+
+            assertEquals(StopReason.HALTED, result.getStopReason());
+            assertEquals(5, c.getRegister(1));
+            assertEquals(7, c.getRegister(2));
+            assertEquals(1 << Configuration.SYSCALL, c.getRegister(3));
+            assertEquals(2, c.getRegister(10));
+            assertEquals(16, c.getSpr(Spr.EPC));
+            assertEquals(-1, c.getSpr(Spr.ESR));
+            assertEquals(0, c.getSpr(Spr.SR));
+            assertEquals(Spr.SYSTEM_MODE, c.getSpr(Spr.MODE));
+            assertEquals(26, result.getSteps());
+        }
+    }
+
+    @Test
+    void test_requested_interrupt_waits_until_status_register_unmasks_it() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            c.setWordArray(new int[]{encode("sysc")}, Initialize.ROMSTART);
+            c.setWordArray(new int[]{encode("addi", 1, 1, 1), encode("beq", 0, 0, -1)}, 64);
+            c.setPC(64);
+
+            c.requestInterrupt(5);
+            Simulator.run(c, SimulationOptions.builder().engine(engine).maxSteps(100).build());
+            assertEquals(50, c.getRegister(1));
+            assertEquals(0, c.getSpr(Spr.ECA));
+
+            c.setSpr(Spr.SR, 1 << 5 | 1 << 6);
+            SimulationResult result = Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+            assertEquals(StopReason.HALTED, result.getStopReason());
+            assertEquals(1, result.getSteps());
+            assertEquals(64, c.getSpr(Spr.EPC));
+            assertEquals(1 << 5, c.getSpr(Spr.ECA));
+            assertEquals(1 << 5 | 1 << 6, c.getSpr(Spr.ESR));
+            assertEquals(0, c.getSpr(Spr.SR));
+        }
+    }
+
+    @Test
+    void test_interrupt_taken_in_system_mode_returns_to_system_mode() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            c.setWordArray(new int[]{encode("addi", 5, 5, 1), encode("eret")}, Initialize.ROMSTART);
+            c.setWordArray(new int[]{encode("addi", 1, 1, 1), encode("beq", 0, 0, -1)}, 64);
+            c.setPC(64);
+            c.setSpr(Spr.SR, 1 << 5);
+
+            c.requestInterrupt(5);
+            Simulator.run(c, SimulationOptions.builder().engine(engine).maxSteps(10).build());
+
+            assertEquals(1, c.getRegister(5));
+            assertEquals(4, c.getRegister(1));
+            assertEquals(Spr.SYSTEM_MODE, c.getSpr(Spr.MODE));
+            assertEquals(Spr.SYSTEM_MODE, c.getSpr(Spr.EMODE));
+            assertEquals(1 << 5, c.getSpr(Spr.SR));
+        }
+    }
+
+    @Test
+    void test_reset_cannot_be_masked() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Configuration c = new Configuration();
+            c.setWordArray(new int[]{encode("sysc")}, Initialize.ROMSTART);
+            c.setWordArray(new int[]{encode("addi", 1, 1, 1), encode("beq", 0, 0, -1)}, 64);
+            c.setPC(64);
+
+            c.requestInterrupt(6);
+            c.requestInterrupt(Configuration.RESET);
+            Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+
+            assertEquals(0, c.getRegister(1));
+            assertEquals(64, c.getSpr(Spr.EPC));
+            assertEquals(1 << Configuration.RESET, c.getSpr(Spr.ECA));
+            assertFalse(c.isInterruptPending());
+        }
+    }
+
+    @Test
+    void test_special_purpose_register_moves_are_illegal_in_user_mode() {
+        for (String move : new String[]{"movg2s 7 0", "movs2g 5 2"}) {
+            for (ExecutionEngine engine : ExecutionEngine.values()) {
+                Configuration c = new Configuration();
+                c.setWordArray(new int[]{encode("sysc")}, Initialize.ROMSTART);
+                c.setWordArray(new Assembler(move + "\naddi 1 0 1", 0).toIntCodeArray(), Initialize.UPBASE);
+                c.setWord(8192, Initialize.UPBASE + Mmu.VALID);
+                c.setSpr(Spr.PTO, 8192);
+                c.setSpr(Spr.PTL, 1);
+                c.setSpr(Spr.MODE, Spr.USER_MODE);
+
+                SimulationResult result = Simulator.run(c, SimulationOptions.builder().engine(engine).build());
+
+                assertEquals(StopReason.HALTED, result.getStopReason());
+                assertEquals(1 << Configuration.ILLEGAL, c.getSpr(Spr.ECA));
+                assertEquals(0, c.getSpr(Spr.EPC));
+                assertEquals(0, c.getRegister(1));
+                assertEquals(0, c.getRegister(2));
+                assertEquals(Spr.SYSTEM_MODE, c.getSpr(Spr.MODE));
+            }
+        }
+    }
+
+    @Test
+    void test_negative_budgets_are_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> SimulationOptions.builder().maxSteps(-1));
+        assertThrows(IllegalArgumentException.class, () -> SimulationOptions.builder().timeLimit(Duration.ofNanos(-1)));
+        assertThrows(IllegalArgumentException.class, () -> SimulationOptions.builder().timeLimit(Duration.ofSeconds(-5)));
+
+        config.setWordArray(new int[]{encode("beq", 0, 0, 0)}, 0);
+        SimulationResult result = Simulator.run(config, SimulationOptions.builder().timeLimit(Duration.ZERO).build());
+        assertEquals(StopReason.TIME_LIMIT, result.getStopReason());
+    }
+
+    @Test
+    void test_experimental_engines_need_the_property() {
+        String previous = System.getProperty(ExecutionEngine.EXPERIMENTAL_PROPERTY);
+        System.clearProperty(ExecutionEngine.EXPERIMENTAL_PROPERTY);
+        try {
+            for (ExecutionEngine engine : ExecutionEngine.values()) {
+                if (engine.isExperimental()) {
+                    assertThrows(IllegalArgumentException.class, () -> SimulationOptions.builder().engine(engine));
+                } else {
+                    assertEquals(engine, SimulationOptions.builder().engine(engine).build().getEngine());
+                }
+            }
+        } finally {
+            if (previous != null) {
+                System.setProperty(ExecutionEngine.EXPERIMENTAL_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    void test_move_to_unknown_special_purpose_register_fails() {
+        config.setWordArray(new int[]{encode("movg2s", Spr.COUNT, 1)}, 0);
+        assertThrows(UnknownSprException.class, () -> Simulator.simulate(config));
+    }
+
+    private static Class<?> runOneStep(Configuration c, ExecutionEngine engine) {
+        try {
+            Simulator.run(c, SimulationOptions.builder().maxSteps(1).engine(engine).build());
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Class<?> runUntilHalt(Configuration c, ExecutionEngine engine) {
+        try {
+            Simulator.run(c, SimulationOptions.builder().unlimitedSteps().engine(engine).build());
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static int encode(String mnemonic, int... operands) {
+        return InstructionRegistry.createForEncoder(mnemonic, operands).encode();
+    }
+}